@@ -0,0 +1,68 @@
+package fr.louisbl.cordova.gpslocation;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import android.location.Location;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivery of one fix to every watch, as FusedLocationHelper.win does on the
+ * location thread: gates, payload sharing and one bridge result per watch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FanOutBenchmark {
+
+    @Param({ "1", "10", "100", "1000" })
+    public int watches;
+
+    // Whether the watches share the compact format, which skips the JSON object.
+    @Param({ "false", "true" })
+    public boolean compact;
+
+    private PluginHarness mHarness;
+    private Location[] mFixes;
+    private int mNext;
+
+    @Setup
+    public void setUp() throws Exception {
+        mHarness = new PluginHarness();
+        JSONObject options = new JSONObject();
+        if (compact) {
+            options.put("format", "compact");
+        }
+        for (int i = 0; i < watches; i++) {
+            mHarness.helper().addWatch("watch" + i, new CallbackContext("watch" + i, false), options);
+        }
+        mHarness.sync();
+        mFixes = SyntheticTrack.drive(1024, 10, 5, 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mHarness.destroy();
+    }
+
+    @Benchmark
+    public void win() {
+        mHarness.helper().win(mFixes[mNext++ & (mFixes.length - 1)]);
+    }
+}
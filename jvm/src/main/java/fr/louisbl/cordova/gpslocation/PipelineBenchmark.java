@@ -0,0 +1,74 @@
+package fr.louisbl.cordova.gpslocation;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import android.location.Location;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One fix through a single processing stage. The map matching stage runs on
+ * a grid of 100 x 100 streets 100 m apart.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PipelineBenchmark {
+
+    @Param({ "outlier", "kalman", "mapMatch" })
+    public String stage;
+
+    private final LocationPipeline mPipeline = new LocationPipeline();
+    private Location[] mTrack;
+    private Location mFix;
+    private File mGraph;
+    private int mNext;
+
+    @Setup
+    public void setUp() throws Exception {
+        JSONObject options = new JSONObject();
+        options.put("type", stage);
+        if (stage.equals("mapMatch")) {
+            mGraph = SyntheticTrack.writeGrid(File.createTempFile("grid", ".geojson"), 100, 100);
+            options.put("graph", mGraph.getAbsolutePath());
+        }
+        mPipeline.configure(new JSONArray().put(options));
+        mTrack = SyntheticTrack.drive(1024, 4, 5, 1);
+        mFix = new Location(mTrack[0]);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (mGraph != null) {
+            mGraph.delete();
+        }
+    }
+
+    @Benchmark
+    public boolean process() {
+        int i = mNext++ & (mTrack.length - 1);
+        if (i == 0) {
+            mPipeline.reset();
+        }
+        // Stages write into the fix, start each one from the recorded values.
+        mFix.set(mTrack[i]);
+        return mPipeline.process(mFix);
+    }
+}
@@ -0,0 +1,91 @@
+package fr.louisbl.cordova.gpslocation;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.CordovaInterface;
+import org.apache.cordova.CordovaPlugin;
+import org.apache.cordova.CordovaPreferences;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import android.app.Activity;
+import android.location.LocationManager;
+import android.os.Handler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hosts the plugin on a plain JVM the way Cordova would: initialized with
+ * the LocationManager engine, permissions granted, and fixes pushed through
+ * the stub LocationManager.
+ */
+public class PluginHarness implements CordovaInterface {
+
+    private final Activity mActivity = new Activity();
+    private final ExecutorService mThreadPool = Executors.newCachedThreadPool();
+    public final CordovaGPSLocation plugin = new CordovaGPSLocation();
+
+    public PluginHarness() {
+        CordovaPreferences preferences = new CordovaPreferences();
+        preferences.set("GPSLocationEngine", FusedLocationHelper.ENGINE_MANAGER);
+        plugin.privateInitialize("GPSLocation", this, null, preferences);
+    }
+
+    public FusedLocationHelper helper() {
+        return plugin.getLocationHelper();
+    }
+
+    public LocationManager locationManager() {
+        return plugin.getLocationManager();
+    }
+
+    public boolean execute(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        return plugin.execute(action, args, callbackContext);
+    }
+
+    /**
+     * Waits until the location thread ran everything posted before now.
+     */
+    public void sync() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        new Handler(plugin.getLocationLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        if (!done.await(10, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Location thread stalled");
+        }
+    }
+
+    public void destroy() {
+        plugin.onDestroy();
+        mThreadPool.shutdownNow();
+    }
+
+    @Override
+    public Activity getActivity() {
+        return mActivity;
+    }
+
+    @Override
+    public ExecutorService getThreadPool() {
+        return mThreadPool;
+    }
+
+    @Override
+    public void setActivityResultCallback(CordovaPlugin plugin) {
+    }
+
+    @Override
+    public void requestPermissions(CordovaPlugin plugin, int requestCode, String[] permissions) {
+    }
+
+    @Override
+    public boolean hasPermission(String permission) {
+        return true;
+    }
+}
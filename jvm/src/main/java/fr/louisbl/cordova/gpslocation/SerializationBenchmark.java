@@ -0,0 +1,53 @@
+package fr.louisbl.cordova.gpslocation;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import android.location.Location;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning one fix into what crosses the bridge: the JSON object,
+ * and the JSON and compact results built by LocationPayload.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    private Location mLocation;
+
+    @Setup
+    public void setUp() {
+        mLocation = SyntheticTrack.drive(1, 10, 5, 1)[0];
+    }
+
+    @Benchmark
+    public JSONObject returnLocationJSON() {
+        return LocationUtils.returnLocationJSON(mLocation);
+    }
+
+    @Benchmark
+    public PluginResult jsonResult() {
+        return new LocationPayload(mLocation).getResult(false);
+    }
+
+    @Benchmark
+    public PluginResult compactResult() {
+        return new LocationPayload(mLocation).getResult(true);
+    }
+}
@@ -0,0 +1,89 @@
+package fr.louisbl.cordova.gpslocation;
+
+import android.location.Location;
+import android.location.LocationManager;
+import android.os.SystemClock;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Deterministic inputs for the benchmarks and tests: noisy fixes along a
+ * straight street, and a square grid of streets around them.
+ */
+public final class SyntheticTrack {
+
+    public static final double LATITUDE = 48.8566;
+    public static final double LONGITUDE = 2.3522;
+
+    private static final double METERS_PER_DEGREE = Math.toRadians(LocationUtils.EARTH_RADIUS);
+
+    private SyntheticTrack() {
+    }
+
+    /**
+     * Fixes one second apart heading east along the street at y = 0, with
+     * gaussian noise of the given deviation and one in twenty fixes thrown
+     * 500 m away.
+     */
+    public static Location[] drive(int count, double speed, double noise, long seed) {
+        Random random = new Random(seed);
+        double metersPerDegreeLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(LATITUDE));
+        long start = SystemClock.elapsedRealtimeNanos();
+        Location[] fixes = new Location[count];
+        for (int i = 0; i < count; i++) {
+            double x = i * speed + random.nextGaussian() * noise;
+            double y = random.nextGaussian() * noise;
+            if (i % 20 == 19) {
+                y += 500;
+            }
+            Location fix = new Location(LocationManager.GPS_PROVIDER);
+            fix.setLatitude(LATITUDE + y / METERS_PER_DEGREE);
+            fix.setLongitude(LONGITUDE + x / metersPerDegreeLongitude);
+            fix.setAccuracy((float) Math.max(3, noise));
+            fix.setSpeed((float) speed);
+            fix.setBearing(90);
+            fix.setTime(1700000000000L + i * 1000L);
+            fix.setElapsedRealtimeNanos(start + i * 1000000000L);
+            fixes[i] = fix;
+        }
+        return fixes;
+    }
+
+    /**
+     * Writes a GeoJSON grid of size x size streets, spacing meters apart and
+     * centered on the track origin. Each street is one LineString through
+     * every crossing, with id "ew" or "ns" and its index from the southwest.
+     */
+    public static File writeGrid(File file, int size, double spacing) throws IOException {
+        double metersPerDegreeLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(LATITUDE));
+        double half = (size - 1) * spacing / 2;
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            out.write("{\"type\":\"FeatureCollection\",\"features\":[");
+            for (int street = 0; street < size * 2; street++) {
+                boolean eastWest = street < size;
+                double across = (street % size) * spacing - half;
+                out.write(street == 0 ? "" : ",");
+                out.write("{\"type\":\"Feature\",\"properties\":{\"id\":\"" + (eastWest ? "ew" : "ns")
+                        + (street % size) + "\"},\"geometry\":{\"type\":\"LineString\",\"coordinates\":[");
+                for (int crossing = 0; crossing < size; crossing++) {
+                    double along = crossing * spacing - half;
+                    double x = eastWest ? along : across;
+                    double y = eastWest ? across : along;
+                    out.write((crossing == 0 ? "[" : ",[") + (LONGITUDE + x / metersPerDegreeLongitude) + ","
+                            + (LATITUDE + y / METERS_PER_DEGREE) + "]");
+                }
+                out.write("]}}");
+            }
+            out.write("]}");
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
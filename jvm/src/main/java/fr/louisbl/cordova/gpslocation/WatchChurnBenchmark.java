@@ -0,0 +1,70 @@
+package fr.louisbl.cordova.gpslocation;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One watch added and cleared next to a number of long-lived ones: the
+ * registry copy, the merged request rebuild and the engine update.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WatchChurnBenchmark {
+
+    @Param({ "1", "10", "100", "1000" })
+    public int watches;
+
+    private PluginHarness mHarness;
+    private JSONObject mOptions;
+    private CallbackContext mCallbackContext;
+    private int mCount;
+
+    @Setup
+    public void setUp() throws Exception {
+        mHarness = new PluginHarness();
+        JSONObject options = new JSONObject();
+        options.put("interval", 10000);
+        for (int i = 0; i < watches; i++) {
+            mHarness.helper().addWatch("watch" + i, new CallbackContext("watch" + i, false), options);
+        }
+        mOptions = new JSONObject();
+        mOptions.put("interval", 1000);
+        mOptions.put("enableHighAccuracy", true);
+        mCallbackContext = new CallbackContext("churn", false);
+        mHarness.sync();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mHarness.destroy();
+    }
+
+    @Benchmark
+    public void addAndClear() throws InterruptedException {
+        FusedLocationHelper helper = mHarness.helper();
+        helper.addWatch("churn", mCallbackContext, mOptions);
+        helper.clearWatch("churn");
+        if ((++mCount & 1023) == 0) {
+            // Keep the dead reckoning updates posted by each call from piling up.
+            mHarness.sync();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package android;
+
+/**
+ * Stub of the platform permission names.
+ */
+public final class Manifest {
+
+    public static final class permission {
+
+        public static final String ACCESS_COARSE_LOCATION = "android.permission.ACCESS_COARSE_LOCATION";
+        public static final String ACCESS_FINE_LOCATION = "android.permission.ACCESS_FINE_LOCATION";
+        public static final String POST_NOTIFICATIONS = "android.permission.POST_NOTIFICATIONS";
+
+        private permission() {
+        }
+    }
+
+    private Manifest() {
+    }
+}
@@ -0,0 +1,12 @@
+package android.app;
+
+import android.content.Context;
+
+/**
+ * Stub of an activity, a plain context.
+ */
+public class Activity extends Context {
+
+    public static final int RESULT_CANCELED = 0;
+    public static final int RESULT_OK = -1;
+}
@@ -0,0 +1,10 @@
+package android.app;
+
+/**
+ * Stub of a dialog.
+ */
+public class Dialog {
+
+    public void show() {
+    }
+}
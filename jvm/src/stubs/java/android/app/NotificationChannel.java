@@ -0,0 +1,10 @@
+package android.app;
+
+/**
+ * Stub of a notification channel.
+ */
+public class NotificationChannel {
+
+    public NotificationChannel(String id, CharSequence name, int importance) {
+    }
+}
@@ -0,0 +1,13 @@
+package android.app;
+
+/**
+ * Stub of the notification manager.
+ */
+public class NotificationManager {
+
+    public static final int IMPORTANCE_LOW = 2;
+    public static final int IMPORTANCE_DEFAULT = 3;
+
+    public void createNotificationChannel(NotificationChannel channel) {
+    }
+}
@@ -0,0 +1,16 @@
+package android.app;
+
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Stub of a pending intent.
+ */
+public final class PendingIntent {
+
+    public static final int FLAG_IMMUTABLE = 1 << 26;
+
+    public static PendingIntent getActivity(Context context, int requestCode, Intent intent, int flags) {
+        return new PendingIntent();
+    }
+}
@@ -0,0 +1,32 @@
+package android.app;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.IBinder;
+
+/**
+ * Stub of a service, a plain context.
+ */
+public abstract class Service extends Context {
+
+    public static final int START_NOT_STICKY = 2;
+    public static final int START_STICKY = 1;
+
+    public abstract IBinder onBind(Intent intent);
+
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        return START_STICKY;
+    }
+
+    public void onDestroy() {
+    }
+
+    public final void startForeground(int id, Notification notification) {
+    }
+
+    public final void stopForeground(boolean removeNotification) {
+    }
+
+    public final void stopSelf() {
+    }
+}
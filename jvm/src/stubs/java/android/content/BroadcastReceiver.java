@@ -0,0 +1,9 @@
+package android.content;
+
+/**
+ * Stub of a broadcast receiver.
+ */
+public abstract class BroadcastReceiver {
+
+    public abstract void onReceive(Context context, Intent intent);
+}
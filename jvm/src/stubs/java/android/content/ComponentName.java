@@ -0,0 +1,7 @@
+package android.content;
+
+/**
+ * Stub of a component name.
+ */
+public final class ComponentName {
+}
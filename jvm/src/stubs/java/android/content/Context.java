@@ -0,0 +1,98 @@
+package android.content;
+
+import android.app.NotificationManager;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.hardware.SensorManager;
+import android.location.LocationManager;
+
+import java.io.File;
+
+/**
+ * Stub of an application context. Each context owns one instance of each
+ * system service the plugin asks for, and keeps its files in a temporary
+ * directory.
+ */
+public class Context {
+
+    public static final String LOCATION_SERVICE = "location";
+    public static final String SENSOR_SERVICE = "sensor";
+    public static final String NOTIFICATION_SERVICE = "notification";
+
+    private final LocationManager mLocationManager = new LocationManager();
+    private final SensorManager mSensorManager = new SensorManager();
+    private final NotificationManager mNotificationManager = new NotificationManager();
+    private final PackageManager mPackageManager = new PackageManager();
+    private final ApplicationInfo mApplicationInfo = new ApplicationInfo();
+    private File mDataDir;
+
+    public Object getSystemService(String name) {
+        if (LOCATION_SERVICE.equals(name)) {
+            return mLocationManager;
+        }
+        if (SENSOR_SERVICE.equals(name)) {
+            return mSensorManager;
+        }
+        if (NOTIFICATION_SERVICE.equals(name)) {
+            return mNotificationManager;
+        }
+        return null;
+    }
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public String getPackageName() {
+        return "fr.louisbl.cordova.gpslocation";
+    }
+
+    public PackageManager getPackageManager() {
+        return mPackageManager;
+    }
+
+    public ApplicationInfo getApplicationInfo() {
+        return mApplicationInfo;
+    }
+
+    public File getFilesDir() {
+        return directory("files");
+    }
+
+    public File getCacheDir() {
+        return directory("cache");
+    }
+
+    private synchronized File directory(String name) {
+        if (mDataDir == null) {
+            try {
+                mDataDir = File.createTempFile("gpslocation", "");
+            } catch (java.io.IOException e) {
+                throw new IllegalStateException(e);
+            }
+            mDataDir.delete();
+        }
+        File directory = new File(mDataDir, name);
+        directory.mkdirs();
+        return directory;
+    }
+
+    public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+        return null;
+    }
+
+    public void unregisterReceiver(BroadcastReceiver receiver) {
+    }
+
+    public ComponentName startService(Intent service) {
+        return null;
+    }
+
+    public ComponentName startForegroundService(Intent service) {
+        return null;
+    }
+
+    public boolean stopService(Intent service) {
+        return false;
+    }
+}
@@ -0,0 +1,12 @@
+package android.content;
+
+/**
+ * Stub of the dialog callbacks.
+ */
+public interface DialogInterface {
+
+    interface OnCancelListener {
+
+        void onCancel(DialogInterface dialog);
+    }
+}
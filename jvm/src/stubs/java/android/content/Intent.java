@@ -0,0 +1,30 @@
+package android.content;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stub of an intent, only carrying string extras.
+ */
+public class Intent {
+
+    private final Map<String, String> mExtras = new HashMap<String, String>();
+
+    public Intent() {
+    }
+
+    public Intent(String action) {
+    }
+
+    public Intent(Context context, Class<?> cls) {
+    }
+
+    public Intent putExtra(String name, String value) {
+        mExtras.put(name, value);
+        return this;
+    }
+
+    public String getStringExtra(String name) {
+        return mExtras.get(name);
+    }
+}
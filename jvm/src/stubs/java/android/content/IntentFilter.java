@@ -0,0 +1,10 @@
+package android.content;
+
+/**
+ * Stub of a broadcast filter.
+ */
+public class IntentFilter {
+
+    public IntentFilter(String action) {
+    }
+}
@@ -0,0 +1,13 @@
+package android.content;
+
+/**
+ * Stub of an intent sender.
+ */
+public class IntentSender {
+
+    public static class SendIntentException extends Exception {
+
+        public SendIntentException() {
+        }
+    }
+}
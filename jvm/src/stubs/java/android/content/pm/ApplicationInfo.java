@@ -0,0 +1,9 @@
+package android.content.pm;
+
+/**
+ * Stub of the application info.
+ */
+public class ApplicationInfo {
+
+    public int icon;
+}
@@ -0,0 +1,16 @@
+package android.content.pm;
+
+import android.content.Intent;
+
+/**
+ * Stub of the package manager.
+ */
+public class PackageManager {
+
+    public static final int PERMISSION_GRANTED = 0;
+    public static final int PERMISSION_DENIED = -1;
+
+    public Intent getLaunchIntentForPackage(String packageName) {
+        return null;
+    }
+}
@@ -0,0 +1,24 @@
+package android.hardware;
+
+/**
+ * Stub of a sensor description.
+ */
+public final class Sensor {
+
+    public static final int TYPE_ACCELEROMETER = 1;
+    public static final int TYPE_MAGNETIC_FIELD = 2;
+    public static final int TYPE_GYROSCOPE = 4;
+    public static final int TYPE_LINEAR_ACCELERATION = 10;
+    public static final int TYPE_ROTATION_VECTOR = 11;
+    public static final int TYPE_GAME_ROTATION_VECTOR = 15;
+
+    private final int mType;
+
+    public Sensor(int type) {
+        mType = type;
+    }
+
+    public int getType() {
+        return mType;
+    }
+}
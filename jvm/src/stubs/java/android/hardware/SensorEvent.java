@@ -0,0 +1,16 @@
+package android.hardware;
+
+/**
+ * Stub of a sensor event.
+ */
+public class SensorEvent {
+
+    public final float[] values;
+    public Sensor sensor;
+    public long timestamp;
+    public int accuracy;
+
+    public SensorEvent(int valueSize) {
+        values = new float[valueSize];
+    }
+}
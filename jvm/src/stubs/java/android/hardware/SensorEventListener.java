@@ -0,0 +1,11 @@
+package android.hardware;
+
+/**
+ * Stub of the sensor listener.
+ */
+public interface SensorEventListener {
+
+    void onSensorChanged(SensorEvent event);
+
+    void onAccuracyChanged(Sensor sensor, int accuracy);
+}
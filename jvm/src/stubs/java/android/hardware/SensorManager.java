@@ -0,0 +1,67 @@
+package android.hardware;
+
+import android.os.Handler;
+
+/**
+ * Stub of the sensor service. There are no sensors on a JVM, feed recorded
+ * events to the listener directly. The rotation helpers compute as on a
+ * device.
+ */
+public class SensorManager {
+
+    public static final int SENSOR_DELAY_FASTEST = 0;
+    public static final int SENSOR_DELAY_GAME = 1;
+    public static final int SENSOR_DELAY_UI = 2;
+    public static final int SENSOR_DELAY_NORMAL = 3;
+
+    public Sensor getDefaultSensor(int type) {
+        return null;
+    }
+
+    public boolean registerListener(SensorEventListener listener, Sensor sensor, int samplingPeriodUs,
+            Handler handler) {
+        return false;
+    }
+
+    public void unregisterListener(SensorEventListener listener) {
+    }
+
+    public static boolean getRotationMatrixFromVector(float[] R, float[] rotationVector) {
+        float q1 = rotationVector[0];
+        float q2 = rotationVector[1];
+        float q3 = rotationVector[2];
+        float q0;
+        if (rotationVector.length >= 4) {
+            q0 = rotationVector[3];
+        } else {
+            q0 = 1 - q1 * q1 - q2 * q2 - q3 * q3;
+            q0 = q0 > 0 ? (float) Math.sqrt(q0) : 0;
+        }
+        float sq1 = 2 * q1 * q1;
+        float sq2 = 2 * q2 * q2;
+        float sq3 = 2 * q3 * q3;
+        float q1q2 = 2 * q1 * q2;
+        float q3q0 = 2 * q3 * q0;
+        float q1q3 = 2 * q1 * q3;
+        float q2q0 = 2 * q2 * q0;
+        float q2q3 = 2 * q2 * q3;
+        float q1q0 = 2 * q1 * q0;
+        R[0] = 1 - sq2 - sq3;
+        R[1] = q1q2 - q3q0;
+        R[2] = q1q3 + q2q0;
+        R[3] = q1q2 + q3q0;
+        R[4] = 1 - sq1 - sq3;
+        R[5] = q2q3 - q1q0;
+        R[6] = q1q3 - q2q0;
+        R[7] = q2q3 + q1q0;
+        R[8] = 1 - sq1 - sq2;
+        return true;
+    }
+
+    public static float[] getOrientation(float[] R, float[] values) {
+        values[0] = (float) Math.atan2(R[1], R[4]);
+        values[1] = (float) Math.asin(-R[7]);
+        values[2] = (float) Math.atan2(-R[6], R[8]);
+        return values;
+    }
+}
@@ -0,0 +1,89 @@
+package android.location;
+
+import android.os.Bundle;
+
+/**
+ * Stub of the Android fix, with the same accessors and has-flags.
+ */
+public class Location {
+
+    private String mProvider;
+    private long mTime;
+    private long mElapsedRealtimeNanos;
+    private double mLatitude;
+    private double mLongitude;
+    private double mAltitude;
+    private float mAccuracy;
+    private float mBearing;
+    private float mSpeed;
+    private boolean mHasAltitude;
+    private boolean mHasAccuracy;
+    private boolean mHasBearing;
+    private boolean mHasSpeed;
+    private Bundle mExtras;
+
+    public Location(String provider) {
+        mProvider = provider;
+    }
+
+    public Location(Location l) {
+        set(l);
+    }
+
+    public void set(Location l) {
+        mProvider = l.mProvider;
+        mTime = l.mTime;
+        mElapsedRealtimeNanos = l.mElapsedRealtimeNanos;
+        mLatitude = l.mLatitude;
+        mLongitude = l.mLongitude;
+        mAltitude = l.mAltitude;
+        mAccuracy = l.mAccuracy;
+        mBearing = l.mBearing;
+        mSpeed = l.mSpeed;
+        mHasAltitude = l.mHasAltitude;
+        mHasAccuracy = l.mHasAccuracy;
+        mHasBearing = l.mHasBearing;
+        mHasSpeed = l.mHasSpeed;
+        mExtras = l.mExtras == null ? null : new Bundle(l.mExtras);
+    }
+
+    public String getProvider() { return mProvider; }
+    public void setProvider(String provider) { mProvider = provider; }
+    public long getTime() { return mTime; }
+    public void setTime(long time) { mTime = time; }
+    public long getElapsedRealtimeNanos() { return mElapsedRealtimeNanos; }
+    public void setElapsedRealtimeNanos(long nanos) { mElapsedRealtimeNanos = nanos; }
+    public double getLatitude() { return mLatitude; }
+    public void setLatitude(double latitude) { mLatitude = latitude; }
+    public double getLongitude() { return mLongitude; }
+    public void setLongitude(double longitude) { mLongitude = longitude; }
+
+    public boolean hasAltitude() { return mHasAltitude; }
+    public double getAltitude() { return mAltitude; }
+    public void setAltitude(double altitude) { mAltitude = altitude; mHasAltitude = true; }
+    public void removeAltitude() { mAltitude = 0; mHasAltitude = false; }
+
+    public boolean hasAccuracy() { return mHasAccuracy; }
+    public float getAccuracy() { return mAccuracy; }
+    public void setAccuracy(float accuracy) { mAccuracy = accuracy; mHasAccuracy = true; }
+
+    public boolean hasBearing() { return mHasBearing; }
+    public float getBearing() { return mBearing; }
+    public void setBearing(float bearing) {
+        while (bearing < 0) {
+            bearing += 360;
+        }
+        while (bearing >= 360) {
+            bearing -= 360;
+        }
+        mBearing = bearing;
+        mHasBearing = true;
+    }
+
+    public boolean hasSpeed() { return mHasSpeed; }
+    public float getSpeed() { return mSpeed; }
+    public void setSpeed(float speed) { mSpeed = speed; mHasSpeed = true; }
+
+    public Bundle getExtras() { return mExtras; }
+    public void setExtras(Bundle extras) { mExtras = extras == null ? null : new Bundle(extras); }
+}
@@ -0,0 +1,98 @@
+package android.location;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Stub of the platform location service. The gps, network and passive
+ * providers exist and are enabled, and nothing is ever located on its own:
+ * tests and benchmarks push fixes with {@link #dispatch}, which reaches the
+ * registered listeners on their loopers as on a device.
+ */
+public class LocationManager {
+
+    public static final String GPS_PROVIDER = "gps";
+    public static final String NETWORK_PROVIDER = "network";
+    public static final String PASSIVE_PROVIDER = "passive";
+
+    private static final List<String> PROVIDERS = Arrays.asList(GPS_PROVIDER, NETWORK_PROVIDER, PASSIVE_PROVIDER);
+
+    private static class Registration {
+        final String provider;
+        final LocationListener listener;
+        final Handler handler;
+        final boolean single;
+
+        Registration(String provider, LocationListener listener, Looper looper, boolean single) {
+            this.provider = provider;
+            this.listener = listener;
+            this.handler = new Handler(looper);
+            this.single = single;
+        }
+    }
+
+    private final List<Registration> mRegistrations = new ArrayList<Registration>();
+    private volatile Location mLastLocation;
+
+    public List<String> getProviders(boolean enabledOnly) {
+        return PROVIDERS;
+    }
+
+    public LocationProvider getProvider(String name) {
+        return PROVIDERS.contains(name) ? new LocationProvider(name) : null;
+    }
+
+    public boolean isProviderEnabled(String provider) {
+        return PROVIDERS.contains(provider);
+    }
+
+    public Location getLastKnownLocation(String provider) {
+        Location last = mLastLocation;
+        return last != null && provider.equals(last.getProvider()) ? new Location(last) : null;
+    }
+
+    public synchronized void requestLocationUpdates(String provider, long minTime, float minDistance,
+            LocationListener listener, Looper looper) {
+        mRegistrations.add(new Registration(provider, listener, looper, false));
+    }
+
+    public synchronized void requestSingleUpdate(String provider, LocationListener listener, Looper looper) {
+        mRegistrations.add(new Registration(provider, listener, looper, true));
+    }
+
+    public synchronized void removeUpdates(LocationListener listener) {
+        for (Iterator<Registration> it = mRegistrations.iterator(); it.hasNext(); ) {
+            if (it.next().listener == listener) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Delivers a fix from its provider to the listeners registered for it.
+     */
+    public synchronized void dispatch(Location location) {
+        mLastLocation = location;
+        for (Iterator<Registration> it = mRegistrations.iterator(); it.hasNext(); ) {
+            final Registration registration = it.next();
+            if (!registration.provider.equals(location.getProvider())) {
+                continue;
+            }
+            if (registration.single) {
+                it.remove();
+            }
+            final Location copy = new Location(location);
+            registration.handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    registration.listener.onLocationChanged(copy);
+                }
+            });
+        }
+    }
+}
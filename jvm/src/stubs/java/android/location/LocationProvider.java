@@ -0,0 +1,17 @@
+package android.location;
+
+/**
+ * Stub of a location provider description.
+ */
+public class LocationProvider {
+
+    private final String mName;
+
+    LocationProvider(String name) {
+        mName = name;
+    }
+
+    public String getName() {
+        return mName;
+    }
+}
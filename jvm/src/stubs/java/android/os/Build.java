@@ -0,0 +1,20 @@
+package android.os;
+
+/**
+ * Stub of the build constants, reporting the newest platform.
+ */
+public class Build {
+
+    public static class VERSION {
+
+        public static final int SDK_INT = VERSION_CODES.TIRAMISU;
+    }
+
+    public static class VERSION_CODES {
+
+        public static final int M = 23;
+        public static final int O = 26;
+        public static final int Q = 29;
+        public static final int TIRAMISU = 33;
+    }
+}
@@ -0,0 +1,31 @@
+package android.os;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stub of the Android key-value bundle.
+ */
+public class Bundle {
+
+    private final Map<String, Object> mMap;
+
+    public Bundle() {
+        mMap = new HashMap<String, Object>();
+    }
+
+    public Bundle(Bundle b) {
+        mMap = new HashMap<String, Object>(b.mMap);
+    }
+
+    public boolean containsKey(String key) { return mMap.containsKey(key); }
+    public void remove(String key) { mMap.remove(key); }
+    public void putString(String key, String value) { mMap.put(key, value); }
+    public String getString(String key) { return (String) mMap.get(key); }
+    public void putDouble(String key, double value) { mMap.put(key, value); }
+
+    public double getDouble(String key) {
+        Object value = mMap.get(key);
+        return value instanceof Double ? (Double) value : 0;
+    }
+}
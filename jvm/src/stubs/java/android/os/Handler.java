@@ -0,0 +1,44 @@
+package android.os;
+
+/**
+ * Stub of the Android handler, posting callbacks to a Looper.
+ */
+public class Handler {
+
+    private final Looper mLooper;
+
+    public Handler() {
+        this(Looper.myLooper());
+    }
+
+    public Handler(Looper looper) {
+        if (looper == null) {
+            throw new RuntimeException("Can't create handler without a Looper");
+        }
+        mLooper = looper;
+    }
+
+    public final Looper getLooper() {
+        return mLooper;
+    }
+
+    public final boolean post(Runnable r) {
+        return mLooper.enqueue(this, r, SystemClock.uptimeMillis());
+    }
+
+    public final boolean postDelayed(Runnable r, long delayMillis) {
+        return mLooper.enqueue(this, r, SystemClock.uptimeMillis() + Math.max(0, delayMillis));
+    }
+
+    public final boolean postAtTime(Runnable r, long uptimeMillis) {
+        return mLooper.enqueue(this, r, uptimeMillis);
+    }
+
+    public final void removeCallbacks(Runnable r) {
+        mLooper.remove(this, r);
+    }
+
+    public final void removeCallbacksAndMessages(Object token) {
+        mLooper.remove(this, null);
+    }
+}
@@ -0,0 +1,59 @@
+package android.os;
+
+/**
+ * Stub of the Android thread running a Looper.
+ */
+public class HandlerThread extends Thread {
+
+    private Looper mLooper;
+
+    public HandlerThread(String name) {
+        super(name);
+        setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+        Looper.prepare();
+        synchronized (this) {
+            mLooper = Looper.myLooper();
+            notifyAll();
+        }
+        Looper.loop();
+    }
+
+    public Looper getLooper() {
+        if (!isAlive()) {
+            return null;
+        }
+        synchronized (this) {
+            while (isAlive() && mLooper == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        }
+        return mLooper;
+    }
+
+    public boolean quit() {
+        Looper looper = getLooper();
+        if (looper == null) {
+            return false;
+        }
+        looper.quit();
+        return true;
+    }
+
+    public boolean quitSafely() {
+        Looper looper = getLooper();
+        if (looper == null) {
+            return false;
+        }
+        looper.quitSafely();
+        return true;
+    }
+}
@@ -0,0 +1,7 @@
+package android.os;
+
+/**
+ * Stub of a binder.
+ */
+public interface IBinder {
+}
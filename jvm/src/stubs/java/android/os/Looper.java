@@ -0,0 +1,126 @@
+package android.os;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * Stub of the Android message loop: one thread runs the callbacks posted to
+ * its handlers in time order, on the uptimeMillis clock.
+ */
+public final class Looper {
+
+    private static final ThreadLocal<Looper> sThreadLocal = new ThreadLocal<Looper>();
+
+    static final class Message implements Comparable<Message> {
+        final Handler target;
+        final Runnable callback;
+        final long when;
+        final long sequence;
+
+        Message(Handler target, Runnable callback, long when, long sequence) {
+            this.target = target;
+            this.callback = callback;
+            this.when = when;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Message other) {
+            if (when != other.when) {
+                return when < other.when ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+        }
+    }
+
+    private final PriorityQueue<Message> mQueue = new PriorityQueue<Message>();
+    private final Thread mThread;
+    private long mSequence;
+    private boolean mQuitting;
+    private boolean mQuitSafely;
+
+    private Looper() {
+        mThread = Thread.currentThread();
+    }
+
+    public static void prepare() {
+        if (sThreadLocal.get() != null) {
+            throw new RuntimeException("Only one Looper may be created per thread");
+        }
+        sThreadLocal.set(new Looper());
+    }
+
+    public static Looper myLooper() {
+        return sThreadLocal.get();
+    }
+
+    public Thread getThread() {
+        return mThread;
+    }
+
+    public static void loop() {
+        Looper looper = myLooper();
+        if (looper == null) {
+            throw new RuntimeException("No Looper; Looper.prepare() wasn't called on this thread.");
+        }
+        while (true) {
+            Message message = looper.next();
+            if (message == null) {
+                return;
+            }
+            message.callback.run();
+        }
+    }
+
+    private synchronized Message next() {
+        while (true) {
+            long now = SystemClock.uptimeMillis();
+            Message head = mQueue.peek();
+            if (mQuitting && (!mQuitSafely || head == null || head.when > now)) {
+                mQueue.clear();
+                return null;
+            }
+            if (head != null && head.when <= now) {
+                return mQueue.poll();
+            }
+            try {
+                if (head == null) {
+                    wait();
+                } else {
+                    wait(Math.max(1, head.when - now));
+                }
+            } catch (InterruptedException e) {
+                mQuitting = true;
+            }
+        }
+    }
+
+    synchronized boolean enqueue(Handler target, Runnable callback, long when) {
+        if (mQuitting) {
+            return false;
+        }
+        mQueue.add(new Message(target, callback, when, mSequence++));
+        notifyAll();
+        return true;
+    }
+
+    synchronized void remove(Handler target, Runnable callback) {
+        for (Iterator<Message> it = mQueue.iterator(); it.hasNext();) {
+            Message message = it.next();
+            if (message.target == target && (callback == null || message.callback == callback)) {
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void quit() {
+        mQuitting = true;
+        notifyAll();
+    }
+
+    public synchronized void quitSafely() {
+        mQuitting = true;
+        mQuitSafely = true;
+        notifyAll();
+    }
+}
@@ -0,0 +1,24 @@
+package android.os;
+
+/**
+ * Stub of the Android clocks. Elapsed realtime is the JVM monotonic clock.
+ */
+public final class SystemClock {
+
+    private static final long ORIGIN = System.nanoTime();
+
+    private SystemClock() {
+    }
+
+    public static long elapsedRealtimeNanos() {
+        return System.nanoTime() - ORIGIN + 1000000000L;
+    }
+
+    public static long elapsedRealtime() {
+        return elapsedRealtimeNanos() / 1000000;
+    }
+
+    public static long uptimeMillis() {
+        return elapsedRealtime();
+    }
+}
@@ -0,0 +1,275 @@
+package android.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Stub of the Android streaming JSON reader. It reads valid documents like
+ * the platform one, numbers can be read as strings and the reverse, but it
+ * is lenient about separators and does not report malformed input as
+ * precisely.
+ */
+public final class JsonReader implements Closeable {
+
+    private static final int ARRAY = 0;
+    private static final int OBJECT_NAME = 1;
+    private static final int OBJECT_VALUE = 2;
+
+    private final Reader mIn;
+    private final char[] mBuffer = new char[8192];
+    private int mPosition;
+    private int mLimit;
+
+    private int[] mScopes = new int[32];
+    private int mDepth;
+
+    private JsonToken mToken;
+    private String mValue;
+
+    public JsonReader(Reader in) {
+        mIn = in;
+    }
+
+    public void setLenient(boolean lenient) {
+    }
+
+    public void beginArray() throws IOException {
+        consume(JsonToken.BEGIN_ARRAY);
+        push(ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        consume(JsonToken.END_ARRAY);
+        mDepth--;
+    }
+
+    public void beginObject() throws IOException {
+        consume(JsonToken.BEGIN_OBJECT);
+        push(OBJECT_NAME);
+    }
+
+    public void endObject() throws IOException {
+        consume(JsonToken.END_OBJECT);
+        mDepth--;
+    }
+
+    public boolean hasNext() throws IOException {
+        JsonToken token = peek();
+        return token != JsonToken.END_ARRAY && token != JsonToken.END_OBJECT && token != JsonToken.END_DOCUMENT;
+    }
+
+    public JsonToken peek() throws IOException {
+        if (mToken != null) {
+            return mToken;
+        }
+        int c = read();
+        while (c == ',' || c == ':' || (c >= 0 && Character.isWhitespace(c))) {
+            c = read();
+        }
+        mValue = null;
+        switch (c) {
+            case -1:
+                mToken = JsonToken.END_DOCUMENT;
+                break;
+            case '[':
+                mToken = JsonToken.BEGIN_ARRAY;
+                break;
+            case ']':
+                mToken = JsonToken.END_ARRAY;
+                break;
+            case '{':
+                mToken = JsonToken.BEGIN_OBJECT;
+                break;
+            case '}':
+                mToken = JsonToken.END_OBJECT;
+                break;
+            case '"':
+                mValue = readString();
+                mToken = mDepth > 0 && mScopes[mDepth - 1] == OBJECT_NAME ? JsonToken.NAME : JsonToken.STRING;
+                break;
+            default:
+                mValue = readLiteral((char) c);
+                if (mValue.equals("true") || mValue.equals("false")) {
+                    mToken = JsonToken.BOOLEAN;
+                } else if (mValue.equals("null")) {
+                    mToken = JsonToken.NULL;
+                } else {
+                    mToken = JsonToken.NUMBER;
+                }
+                break;
+        }
+        return mToken;
+    }
+
+    public String nextName() throws IOException {
+        String name = consume(JsonToken.NAME);
+        mScopes[mDepth - 1] = OBJECT_VALUE;
+        return name;
+    }
+
+    public String nextString() throws IOException {
+        if (peek() == JsonToken.NUMBER) {
+            return consume(JsonToken.NUMBER);
+        }
+        return consume(JsonToken.STRING);
+    }
+
+    public boolean nextBoolean() throws IOException {
+        return Boolean.parseBoolean(consume(JsonToken.BOOLEAN));
+    }
+
+    public void nextNull() throws IOException {
+        consume(JsonToken.NULL);
+    }
+
+    public double nextDouble() throws IOException {
+        if (peek() == JsonToken.STRING) {
+            return Double.parseDouble(consume(JsonToken.STRING));
+        }
+        return Double.parseDouble(consume(JsonToken.NUMBER));
+    }
+
+    public long nextLong() throws IOException {
+        return (long) nextDouble();
+    }
+
+    public int nextInt() throws IOException {
+        return (int) nextDouble();
+    }
+
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_ARRAY:
+                    beginArray();
+                    depth++;
+                    break;
+                case BEGIN_OBJECT:
+                    beginObject();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    depth--;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    depth--;
+                    break;
+                case NAME:
+                    nextName();
+                    break;
+                case END_DOCUMENT:
+                    throw new IOException("End of input");
+                default:
+                    consume(mToken);
+                    break;
+            }
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mIn.close();
+    }
+
+    private String consume(JsonToken expected) throws IOException {
+        JsonToken token = peek();
+        if (token != expected) {
+            throw new IllegalStateException("Expected " + expected + " but was " + token);
+        }
+        mToken = null;
+        if (expected != JsonToken.NAME && expected != JsonToken.END_ARRAY && expected != JsonToken.END_OBJECT
+                && mDepth > 0 && mScopes[mDepth - 1] == OBJECT_VALUE) {
+            mScopes[mDepth - 1] = OBJECT_NAME;
+        }
+        return mValue;
+    }
+
+    private void push(int scope) {
+        if (mDepth == mScopes.length) {
+            int[] scopes = new int[mDepth * 2];
+            System.arraycopy(mScopes, 0, scopes, 0, mDepth);
+            mScopes = scopes;
+        }
+        mScopes[mDepth++] = scope;
+    }
+
+    private int read() throws IOException {
+        if (mPosition == mLimit) {
+            mLimit = mIn.read(mBuffer, 0, mBuffer.length);
+            mPosition = 0;
+            if (mLimit <= 0) {
+                mLimit = 0;
+                return -1;
+            }
+        }
+        return mBuffer[mPosition++];
+    }
+
+    private String readString() throws IOException {
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                throw new IOException("Unterminated string");
+            } else if (c == '"') {
+                return value.toString();
+            } else if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        char[] hex = new char[4];
+                        for (int i = 0; i < 4; i++) {
+                            hex[i] = (char) read();
+                        }
+                        value.append((char) Integer.parseInt(new String(hex), 16));
+                        break;
+                    case -1:
+                        throw new IOException("Unterminated string");
+                    default:
+                        value.append((char) c);
+                        break;
+                }
+            } else {
+                value.append((char) c);
+            }
+        }
+    }
+
+    private String readLiteral(char first) throws IOException {
+        StringBuilder value = new StringBuilder().append(first);
+        while (true) {
+            if (mPosition == mLimit && read() >= 0) {
+                // Refilled, step back on the character just read.
+                mPosition--;
+            }
+            if (mPosition == mLimit) {
+                return value.toString();
+            }
+            char c = mBuffer[mPosition];
+            if (c == ',' || c == ':' || c == ']' || c == '}' || c == '"' || Character.isWhitespace(c)) {
+                return value.toString();
+            }
+            value.append(c);
+            mPosition++;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package android.util;
+
+/**
+ * Stub of the Android logger, printing warnings and errors to stderr.
+ */
+public final class Log {
+
+    private Log() {
+    }
+
+    public static int d(String tag, String msg) { return 0; }
+    public static int i(String tag, String msg) { return 0; }
+    public static int w(String tag, String msg) { return print("W", tag, msg); }
+    public static int e(String tag, String msg) { return print("E", tag, msg); }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        print("E", tag, msg + ": " + tr);
+        return 0;
+    }
+
+    private static int print(String level, String tag, String msg) {
+        System.err.println(level + "/" + tag + ": " + msg);
+        return 0;
+    }
+}
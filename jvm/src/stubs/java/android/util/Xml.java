@@ -0,0 +1,17 @@
+package android.util;
+
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+
+/**
+ * Stub of the Android XML helpers, backed by kXML like the platform.
+ */
+public final class Xml {
+
+    private Xml() {
+    }
+
+    public static XmlPullParser newPullParser() {
+        return new KXmlParser();
+    }
+}
@@ -0,0 +1,20 @@
+package com.google.android.gms.common;
+
+/**
+ * Stub of a Play Services connection outcome.
+ */
+public class ConnectionResult {
+
+    public static final int SUCCESS = 0;
+    public static final int SERVICE_MISSING = 1;
+
+    private final int mErrorCode;
+
+    public ConnectionResult(int errorCode) {
+        mErrorCode = errorCode;
+    }
+
+    public int getErrorCode() {
+        return mErrorCode;
+    }
+}
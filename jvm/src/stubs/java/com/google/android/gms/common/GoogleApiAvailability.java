@@ -0,0 +1,28 @@
+package com.google.android.gms.common;
+
+import android.app.Activity;
+import android.app.Dialog;
+import android.content.Context;
+import android.content.DialogInterface;
+
+/**
+ * Stub of the Play Services availability check: there are no Play Services
+ * on a JVM, so the LocationManager engine is picked.
+ */
+public class GoogleApiAvailability {
+
+    private static final GoogleApiAvailability INSTANCE = new GoogleApiAvailability();
+
+    public static GoogleApiAvailability getInstance() {
+        return INSTANCE;
+    }
+
+    public int isGooglePlayServicesAvailable(Context context) {
+        return ConnectionResult.SERVICE_MISSING;
+    }
+
+    public Dialog getErrorDialog(Activity activity, int errorCode, int requestCode,
+            DialogInterface.OnCancelListener cancelListener) {
+        return null;
+    }
+}
@@ -0,0 +1,7 @@
+package com.google.android.gms.common.api;
+
+/**
+ * Stub of a Play Services API token.
+ */
+public class Api {
+}
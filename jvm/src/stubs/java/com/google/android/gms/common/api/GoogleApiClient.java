@@ -0,0 +1,65 @@
+package com.google.android.gms.common.api;
+
+import com.google.android.gms.common.ConnectionResult;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+
+/**
+ * Stub of the Play Services client. It never connects.
+ */
+public class GoogleApiClient {
+
+    public interface ConnectionCallbacks {
+
+        void onConnected(Bundle connectionHint);
+
+        void onConnectionSuspended(int cause);
+    }
+
+    public interface OnConnectionFailedListener {
+
+        void onConnectionFailed(ConnectionResult result);
+    }
+
+    public static class Builder {
+
+        public Builder(Context context) {
+        }
+
+        public Builder addConnectionCallbacks(ConnectionCallbacks callbacks) {
+            return this;
+        }
+
+        public Builder addOnConnectionFailedListener(OnConnectionFailedListener listener) {
+            return this;
+        }
+
+        public Builder addApi(Api api) {
+            return this;
+        }
+
+        public Builder setHandler(Handler handler) {
+            return this;
+        }
+
+        public GoogleApiClient build() {
+            return new GoogleApiClient();
+        }
+    }
+
+    public void connect() {
+    }
+
+    public void disconnect() {
+    }
+
+    public boolean isConnected() {
+        return false;
+    }
+
+    public boolean isConnecting() {
+        return false;
+    }
+}
@@ -0,0 +1,17 @@
+package com.google.android.gms.common.api;
+
+/**
+ * Stub of a pending Play Services call, already complete.
+ */
+public class PendingResult<R extends Result> {
+
+    private final R mResult;
+
+    public PendingResult(R result) {
+        mResult = result;
+    }
+
+    public void setResultCallback(ResultCallback<? super R> callback) {
+        callback.onResult(mResult);
+    }
+}
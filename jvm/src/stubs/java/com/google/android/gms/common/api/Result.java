@@ -0,0 +1,9 @@
+package com.google.android.gms.common.api;
+
+/**
+ * Stub of a Play Services call outcome.
+ */
+public interface Result {
+
+    Status getStatus();
+}
@@ -0,0 +1,9 @@
+package com.google.android.gms.common.api;
+
+/**
+ * Stub of a Play Services result listener.
+ */
+public interface ResultCallback<R extends Result> {
+
+    void onResult(R result);
+}
@@ -0,0 +1,28 @@
+package com.google.android.gms.common.api;
+
+import android.app.Activity;
+import android.content.IntentSender;
+
+/**
+ * Stub of a Play Services status.
+ */
+public final class Status implements Result {
+
+    private final int mStatusCode;
+
+    public Status(int statusCode) {
+        mStatusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return mStatusCode;
+    }
+
+    @Override
+    public Status getStatus() {
+        return this;
+    }
+
+    public void startResolutionForResult(Activity activity, int requestCode) throws IntentSender.SendIntentException {
+    }
+}
@@ -0,0 +1,27 @@
+package com.google.android.gms.location;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Status;
+
+import android.location.Location;
+import android.os.Looper;
+
+/**
+ * Stub of the fused location API. Never delivers anything.
+ */
+public class FusedLocationProviderApi {
+
+    public Location getLastLocation(GoogleApiClient client) {
+        return null;
+    }
+
+    public PendingResult<Status> requestLocationUpdates(GoogleApiClient client, LocationRequest request,
+            LocationCallback callback, Looper looper) {
+        return new PendingResult<Status>(new Status(0));
+    }
+
+    public PendingResult<Status> removeLocationUpdates(GoogleApiClient client, LocationCallback callback) {
+        return new PendingResult<Status>(new Status(0));
+    }
+}
@@ -0,0 +1,10 @@
+package com.google.android.gms.location;
+
+/**
+ * Stub of the fused location callback.
+ */
+public abstract class LocationCallback {
+
+    public void onLocationResult(LocationResult result) {
+    }
+}
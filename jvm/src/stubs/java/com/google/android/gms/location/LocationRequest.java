@@ -0,0 +1,52 @@
+package com.google.android.gms.location;
+
+/**
+ * Stub of the fused location request, a plain value object.
+ */
+public class LocationRequest {
+
+    public static final int PRIORITY_HIGH_ACCURACY = 100;
+    public static final int PRIORITY_BALANCED_POWER_ACCURACY = 102;
+    public static final int PRIORITY_LOW_POWER = 104;
+    public static final int PRIORITY_NO_POWER = 105;
+
+    private int mPriority = PRIORITY_BALANCED_POWER_ACCURACY;
+    private long mInterval = 3600000;
+    private long mFastestInterval = 600000;
+    private long mMaxWaitTime;
+    private float mSmallestDisplacement;
+    private int mNumUpdates = Integer.MAX_VALUE;
+
+    public static LocationRequest create() {
+        return new LocationRequest();
+    }
+
+    public LocationRequest setPriority(int priority) { mPriority = priority; return this; }
+    public int getPriority() { return mPriority; }
+    public LocationRequest setInterval(long millis) { mInterval = millis; return this; }
+    public long getInterval() { return mInterval; }
+    public LocationRequest setFastestInterval(long millis) { mFastestInterval = millis; return this; }
+    public long getFastestInterval() { return mFastestInterval; }
+    public LocationRequest setMaxWaitTime(long millis) { mMaxWaitTime = millis; return this; }
+    public long getMaxWaitTime() { return mMaxWaitTime; }
+    public LocationRequest setSmallestDisplacement(float meters) { mSmallestDisplacement = meters; return this; }
+    public float getSmallestDisplacement() { return mSmallestDisplacement; }
+    public LocationRequest setNumUpdates(int numUpdates) { mNumUpdates = numUpdates; return this; }
+    public int getNumUpdates() { return mNumUpdates; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof LocationRequest)) {
+            return false;
+        }
+        LocationRequest other = (LocationRequest) o;
+        return mPriority == other.mPriority && mInterval == other.mInterval
+                && mFastestInterval == other.mFastestInterval && mMaxWaitTime == other.mMaxWaitTime
+                && mSmallestDisplacement == other.mSmallestDisplacement && mNumUpdates == other.mNumUpdates;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (mPriority * 31 + mInterval * 17 + mFastestInterval);
+    }
+}
@@ -0,0 +1,25 @@
+package com.google.android.gms.location;
+
+import android.location.Location;
+
+import java.util.List;
+
+/**
+ * Stub of a batch of fused fixes.
+ */
+public class LocationResult {
+
+    private final List<Location> mLocations;
+
+    public LocationResult(List<Location> locations) {
+        mLocations = locations;
+    }
+
+    public List<Location> getLocations() {
+        return mLocations;
+    }
+
+    public Location getLastLocation() {
+        return mLocations.isEmpty() ? null : mLocations.get(mLocations.size() - 1);
+    }
+}
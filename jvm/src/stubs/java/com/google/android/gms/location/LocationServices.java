@@ -0,0 +1,16 @@
+package com.google.android.gms.location;
+
+import com.google.android.gms.common.api.Api;
+
+/**
+ * Stub of the location services entry points.
+ */
+public final class LocationServices {
+
+    public static final Api API = new Api();
+    public static final FusedLocationProviderApi FusedLocationApi = new FusedLocationProviderApi();
+    public static final SettingsApi SettingsApi = new SettingsApi();
+
+    private LocationServices() {
+    }
+}
@@ -0,0 +1,18 @@
+package com.google.android.gms.location;
+
+/**
+ * Stub of a location settings check.
+ */
+public class LocationSettingsRequest {
+
+    public static class Builder {
+
+        public Builder addLocationRequest(LocationRequest request) {
+            return this;
+        }
+
+        public LocationSettingsRequest build() {
+            return new LocationSettingsRequest();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.google.android.gms.location;
+
+import com.google.android.gms.common.api.Result;
+import com.google.android.gms.common.api.Status;
+
+/**
+ * Stub of a location settings check outcome.
+ */
+public class LocationSettingsResult implements Result {
+
+    private final Status mStatus;
+
+    public LocationSettingsResult(Status status) {
+        mStatus = status;
+    }
+
+    @Override
+    public Status getStatus() {
+        return mStatus;
+    }
+}
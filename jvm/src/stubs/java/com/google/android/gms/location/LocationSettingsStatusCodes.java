@@ -0,0 +1,14 @@
+package com.google.android.gms.location;
+
+/**
+ * Stub of the location settings status codes.
+ */
+public final class LocationSettingsStatusCodes {
+
+    public static final int SUCCESS = 0;
+    public static final int RESOLUTION_REQUIRED = 6;
+    public static final int SETTINGS_CHANGE_UNAVAILABLE = 8502;
+
+    private LocationSettingsStatusCodes() {
+    }
+}
@@ -0,0 +1,89 @@
+package org.apache.cordova;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stub of the Cordova callback. Results are kept so tests can inspect them,
+ * unless the context was built to discard them, as benchmarks do.
+ */
+public class CallbackContext {
+
+    private final String mCallbackId;
+    private final boolean mRecord;
+    private final List<PluginResult> mResults = Collections.synchronizedList(new ArrayList<PluginResult>());
+    private volatile int mCount;
+    private volatile boolean mFinished;
+
+    public CallbackContext(String callbackId, CordovaWebView webView) {
+        this(callbackId, true);
+    }
+
+    public CallbackContext(String callbackId, boolean record) {
+        mCallbackId = callbackId;
+        mRecord = record;
+    }
+
+    public String getCallbackId() {
+        return mCallbackId;
+    }
+
+    public boolean isFinished() {
+        return mFinished;
+    }
+
+    public void sendPluginResult(PluginResult pluginResult) {
+        synchronized (this) {
+            if (mFinished) {
+                return;
+            }
+            mFinished = !pluginResult.getKeepCallback();
+            mCount++;
+            if (mRecord) {
+                mResults.add(pluginResult);
+            }
+            notifyAll();
+        }
+    }
+
+    public void success() { sendPluginResult(new PluginResult(PluginResult.Status.OK)); }
+    public void success(String message) { sendPluginResult(new PluginResult(PluginResult.Status.OK, message)); }
+    public void success(JSONObject message) { sendPluginResult(new PluginResult(PluginResult.Status.OK, message)); }
+    public void success(JSONArray message) { sendPluginResult(new PluginResult(PluginResult.Status.OK, message)); }
+    public void success(int message) { sendPluginResult(new PluginResult(PluginResult.Status.OK, message)); }
+    public void error(String message) { sendPluginResult(new PluginResult(PluginResult.Status.ERROR, message)); }
+    public void error(JSONObject message) { sendPluginResult(new PluginResult(PluginResult.Status.ERROR, message)); }
+    public void error(int message) { sendPluginResult(new PluginResult(PluginResult.Status.ERROR, message)); }
+
+    /**
+     * Number of results sent so far, recorded or not.
+     */
+    public int getResultCount() {
+        return mCount;
+    }
+
+    public List<PluginResult> getResults() {
+        synchronized (mResults) {
+            return new ArrayList<PluginResult>(mResults);
+        }
+    }
+
+    /**
+     * Waits until at least count results were sent, or the timeout elapsed.
+     */
+    public synchronized boolean awaitResults(int count, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (mCount < count) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                return false;
+            }
+            wait(left);
+        }
+        return true;
+    }
+}
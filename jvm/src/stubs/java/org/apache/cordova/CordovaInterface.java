@@ -0,0 +1,21 @@
+package org.apache.cordova;
+
+import android.app.Activity;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Stub of the Cordova host.
+ */
+public interface CordovaInterface {
+
+    Activity getActivity();
+
+    ExecutorService getThreadPool();
+
+    void setActivityResultCallback(CordovaPlugin plugin);
+
+    void requestPermissions(CordovaPlugin plugin, int requestCode, String[] permissions);
+
+    boolean hasPermission(String permission);
+}
@@ -0,0 +1,53 @@
+package org.apache.cordova;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import android.content.Intent;
+
+/**
+ * Stub of the Cordova plugin base class.
+ */
+public class CordovaPlugin {
+
+    public CordovaWebView webView;
+    public CordovaInterface cordova;
+    protected CordovaPreferences preferences = new CordovaPreferences();
+
+    public final void privateInitialize(String serviceName, CordovaInterface cordova, CordovaWebView webView,
+            CordovaPreferences preferences) {
+        this.preferences = preferences;
+        initialize(cordova, webView);
+    }
+
+    public void initialize(CordovaInterface cordova, CordovaWebView webView) {
+        this.cordova = cordova;
+        this.webView = webView;
+    }
+
+    public boolean execute(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        return false;
+    }
+
+    public void onPause(boolean multitasking) {
+    }
+
+    public void onResume(boolean multitasking) {
+    }
+
+    public void onDestroy() {
+    }
+
+    public void onReset() {
+    }
+
+    public void onActivityResult(int requestCode, int resultCode, Intent intent) {
+    }
+
+    public void onRequestPermissionResult(int requestCode, String[] permissions, int[] grantResults)
+            throws JSONException {
+    }
+
+    public void requestPermissions(int requestCode) {
+    }
+}
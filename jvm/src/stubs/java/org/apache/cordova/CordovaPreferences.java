@@ -0,0 +1,22 @@
+package org.apache.cordova;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Stub of the config.xml preferences.
+ */
+public class CordovaPreferences {
+
+    private final Map<String, String> mPrefs = new HashMap<String, String>();
+
+    public void set(String name, String value) {
+        mPrefs.put(name.toLowerCase(Locale.ENGLISH), value);
+    }
+
+    public String getString(String name, String defaultValue) {
+        String value = mPrefs.get(name.toLowerCase(Locale.ENGLISH));
+        return value != null ? value : defaultValue;
+    }
+}
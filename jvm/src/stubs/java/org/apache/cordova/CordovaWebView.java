@@ -0,0 +1,7 @@
+package org.apache.cordova;
+
+/**
+ * Stub of the Cordova WebView.
+ */
+public interface CordovaWebView {
+}
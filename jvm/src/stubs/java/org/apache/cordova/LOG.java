@@ -0,0 +1,17 @@
+package org.apache.cordova;
+
+import android.util.Log;
+
+/**
+ * Stub of the Cordova logger.
+ */
+public class LOG {
+
+    public static void d(String tag, String s) {
+        Log.d(tag, s);
+    }
+
+    public static void e(String tag, String s) {
+        Log.e(tag, s);
+    }
+}
@@ -0,0 +1,19 @@
+package org.apache.cordova;
+
+/**
+ * Stub of the Cordova permission helper, delegating to the host.
+ */
+public class PermissionHelper {
+
+    public static void requestPermission(CordovaPlugin plugin, int requestCode, String permission) {
+        requestPermissions(plugin, requestCode, new String[] { permission });
+    }
+
+    public static void requestPermissions(CordovaPlugin plugin, int requestCode, String[] permissions) {
+        plugin.cordova.requestPermissions(plugin, requestCode, permissions);
+    }
+
+    public static boolean hasPermission(CordovaPlugin plugin, String permission) {
+        return plugin.cordova.hasPermission(permission);
+    }
+}
@@ -0,0 +1,82 @@
+package org.apache.cordova;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Stub of the Cordova plugin result. Like the real one, it encodes its
+ * message when built: JSON to a string, binary to Base64.
+ */
+public class PluginResult {
+
+    public enum Status {
+        NO_RESULT, OK, CLASS_NOT_FOUND_EXCEPTION, ILLEGAL_ACCESS_EXCEPTION, INSTANTIATION_EXCEPTION,
+        MALFORMED_URL_EXCEPTION, IO_EXCEPTION, INVALID_ACTION, JSON_EXCEPTION, ERROR
+    }
+
+    private final Status mStatus;
+    private final String mMessage;
+    private boolean mKeepCallback;
+
+    public PluginResult(Status status) {
+        this(status, (String) null);
+    }
+
+    public PluginResult(Status status, String message) {
+        mStatus = status;
+        mMessage = message == null ? null : JSONObject.quote(message);
+    }
+
+    public PluginResult(Status status, JSONObject message) {
+        mStatus = status;
+        mMessage = message.toString();
+    }
+
+    public PluginResult(Status status, JSONArray message) {
+        mStatus = status;
+        mMessage = message.toString();
+    }
+
+    public PluginResult(Status status, int i) {
+        mStatus = status;
+        mMessage = String.valueOf(i);
+    }
+
+    public PluginResult(Status status, boolean b) {
+        mStatus = status;
+        mMessage = String.valueOf(b);
+    }
+
+    public PluginResult(Status status, byte[] data) {
+        mStatus = status;
+        mMessage = Base64.getEncoder().encodeToString(data);
+    }
+
+    public PluginResult(Status status, List<PluginResult> multipartMessages) {
+        mStatus = status;
+        StringBuilder message = new StringBuilder();
+        for (PluginResult part : multipartMessages) {
+            message.append(part.getMessage());
+        }
+        mMessage = message.toString();
+    }
+
+    public void setKeepCallback(boolean b) {
+        mKeepCallback = b;
+    }
+
+    public boolean getKeepCallback() {
+        return mKeepCallback;
+    }
+
+    public int getStatus() {
+        return mStatus.ordinal();
+    }
+
+    public String getMessage() {
+        return mMessage;
+    }
+}
@@ -0,0 +1,136 @@
+package fr.louisbl.cordova.gpslocation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Drives the estimator with synthetic sensor traces sampled at 50 Hz, as
+ * the sensors would be on the location thread.
+ */
+public class DeadReckonerTest {
+
+    private static final long SECOND = 1000000000L;
+    private static final long SAMPLE = SECOND / 50;
+    private static final double LATITUDE = 48.8566;
+    private static final double LONGITUDE = 2.3522;
+    private static final double METERS_PER_DEGREE = Math.toRadians(LocationUtils.EARTH_RADIUS);
+
+    @Test
+    public void coastsAlongTheFixBearing() {
+        DeadReckoner reckoner = new DeadReckoner();
+        reckoner.anchor(SECOND, LATITUDE, LONGITUDE, 5, 10, 90);
+        reckoner.propagate(3 * SECOND);
+
+        assertEquals(20, east(reckoner), 0.01);
+        assertEquals(0, north(reckoner), 0.01);
+        assertEquals(90, reckoner.getBearing(), 1e-9);
+        assertTrue(reckoner.hasMoved());
+    }
+
+    @Test
+    public void followsTheYawRate() {
+        DeadReckoner reckoner = new DeadReckoner();
+        reckoner.anchor(SECOND, LATITUDE, LONGITUDE, 5, 10, 0);
+        // A quarter turn to the right in one second, counterclockwise rates are positive.
+        long t = SECOND;
+        for (int i = 0; i <= 50; i++, t += SAMPLE) {
+            reckoner.onYawRate(t, -Math.PI / 2);
+        }
+        assertEquals(90, reckoner.getBearing(), 1);
+        // Then straight east for two seconds.
+        reckoner.propagate(t + 2 * SECOND);
+        assertTrue(east(reckoner) > 20);
+        assertTrue(north(reckoner) > 3 && north(reckoner) < 10);
+    }
+
+    @Test
+    public void calibratesTheAzimuthOnAMovingFix() {
+        DeadReckoner reckoner = new DeadReckoner();
+        // The device points 30 degrees left of the travel direction.
+        reckoner.onAzimuth(SECOND / 2, Math.toRadians(60));
+        reckoner.anchor(SECOND, LATITUDE, LONGITUDE, 5, 10, 90);
+        long t = SECOND;
+        for (int i = 0; i < 100; i++, t += SAMPLE) {
+            reckoner.onAzimuth(t, Math.toRadians(60));
+        }
+        assertEquals(90, reckoner.getBearing(), 0.5);
+
+        // Turning the device turns the heading with it, keeping the offset.
+        for (int i = 0; i < 500; i++, t += SAMPLE) {
+            reckoner.onAzimuth(t, Math.toRadians(150));
+        }
+        assertEquals(180, reckoner.getBearing(), 1);
+    }
+
+    @Test
+    public void integratesForwardAcceleration() {
+        DeadReckoner reckoner = new DeadReckoner();
+        reckoner.anchor(SECOND, LATITUDE, LONGITUDE, 5, 5, 0);
+        long t = SECOND;
+        for (int i = 0; i <= 100; i++, t += SAMPLE) {
+            reckoner.onAcceleration(t, 0, 1);
+        }
+        assertEquals(7, reckoner.getSpeed(), 0.05);
+        // 5 m/s plus 1 m/s^2 over two seconds.
+        assertEquals(12, north(reckoner), 0.2);
+    }
+
+    @Test
+    public void derivesMotionFromFixesWithoutSpeed() {
+        DeadReckoner reckoner = new DeadReckoner();
+        reckoner.anchor(SECOND, LATITUDE, LONGITUDE, 5, Double.NaN, Double.NaN);
+        reckoner.anchor(11 * SECOND, LATITUDE + 100 / METERS_PER_DEGREE, LONGITUDE, 5, Double.NaN, Double.NaN);
+
+        assertEquals(10, reckoner.getSpeed(), 0.01);
+        assertEquals(0, reckoner.getBearing(), 0.01);
+    }
+
+    @Test
+    public void staysSilentWhenStandingStill() {
+        DeadReckoner reckoner = new DeadReckoner();
+        reckoner.anchor(SECOND, LATITUDE, LONGITUDE, 5, 0, 90);
+        reckoner.propagate(2 * SECOND);
+        assertTrue(reckoner.isActive(2 * SECOND));
+        assertFalse(reckoner.hasMoved());
+
+        reckoner.anchor(3 * SECOND, LATITUDE, LONGITUDE, 5, 0.2, 90);
+        reckoner.propagate(4 * SECOND);
+        assertFalse(reckoner.hasMoved());
+    }
+
+    @Test
+    public void staysSilentOnceTheErrorOutgrowsTheMotion() {
+        DeadReckoner reckoner = new DeadReckoner();
+        reckoner.anchor(SECOND, LATITUDE, LONGITUDE, 5, 1.4, 90);
+        reckoner.propagate(3 * SECOND);
+        assertTrue(reckoner.hasMoved());
+        reckoner.propagate(25 * SECOND);
+        assertTrue(reckoner.isActive(25 * SECOND));
+        assertFalse(reckoner.hasMoved());
+    }
+
+    @Test
+    public void growsTheAccuracyAndExpires() {
+        DeadReckoner reckoner = new DeadReckoner();
+        reckoner.anchor(SECOND, LATITUDE, LONGITUDE, 5, 10, 90);
+        reckoner.propagate(2 * SECOND);
+        double early = reckoner.getAccuracy();
+        reckoner.propagate(10 * SECOND);
+        assertTrue(early > 5 && reckoner.getAccuracy() > early);
+
+        long expiry = SECOND + DeadReckoner.DEFAULT_MAX_DURATION * 1000000;
+        assertTrue(reckoner.isActive(expiry));
+        assertFalse(reckoner.isActive(expiry + 1));
+    }
+
+    private static double east(DeadReckoner reckoner) {
+        return (reckoner.getLongitude() - LONGITUDE) * METERS_PER_DEGREE * Math.cos(Math.toRadians(LATITUDE));
+    }
+
+    private static double north(DeadReckoner reckoner) {
+        return (reckoner.getLatitude() - LATITUDE) * METERS_PER_DEGREE;
+    }
+}
@@ -0,0 +1,91 @@
+package fr.louisbl.cordova.gpslocation;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import android.location.Location;
+import android.location.LocationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Feeds fixes along a street to a circular fence at the track origin, with
+ * their own timestamps, far from the device clock.
+ */
+public class GeofenceMonitorTest {
+
+    private static final long SECOND = 1000000000L;
+    private static final double METERS_PER_DEGREE = Math.toRadians(LocationUtils.EARTH_RADIUS);
+
+    private final GeofenceMonitor mMonitor = new GeofenceMonitor();
+    private final CallbackContext mCallback = new CallbackContext("geofences", true);
+
+    @Test
+    public void timesDwellOnTheFixes() throws JSONException {
+        add(100, 60000);
+        mMonitor.onLocation(fix(0, 0));
+        mMonitor.onLocation(fix(10, 59));
+        mMonitor.onLocation(fix(20, 61));
+        mMonitor.onLocation(fix(30, 120));
+
+        assertEquals("[enter, dwell]", transitions().toString());
+    }
+
+    @Test
+    public void keepsTheStateOfAFenceReAddedAroundTheDevice() throws JSONException {
+        add(100, 60000);
+        mMonitor.onLocation(fix(0, 0));
+        // Grown while the device is inside: no new enter, and the dwell time keeps running.
+        add(200, 60000);
+        mMonitor.onLocation(fix(150, 61));
+        mMonitor.onLocation(fix(250, 70));
+
+        assertEquals("[enter, dwell, exit]", transitions().toString());
+    }
+
+    @Test
+    public void dropsTheStateOfAFenceMovedAwayFromTheDevice() throws JSONException {
+        add(100, 0);
+        mMonitor.onLocation(fix(0, 0));
+        mMonitor.add(new JSONArray().put(new JSONObject().put("id", "depot")
+                .put("latitude", SyntheticTrack.LATITUDE + 0.01).put("longitude", SyntheticTrack.LONGITUDE)
+                .put("radius", 100)), mCallback);
+        mMonitor.onLocation(fix(0, 10));
+        mMonitor.onLocation(fix(0, 20));
+
+        assertEquals("[enter]", transitions().toString());
+    }
+
+    private void add(double radius, long dwellTime) throws JSONException {
+        mMonitor.add(new JSONArray().put(new JSONObject().put("id", "depot")
+                .put("latitude", SyntheticTrack.LATITUDE).put("longitude", SyntheticTrack.LONGITUDE)
+                .put("radius", radius).put("dwellTime", dwellTime)), mCallback);
+    }
+
+    // A fix x meters east of the fence center, taken at the given second.
+    private static Location fix(double x, long second) {
+        Location fix = new Location(LocationManager.GPS_PROVIDER);
+        fix.setLatitude(SyntheticTrack.LATITUDE);
+        fix.setLongitude(SyntheticTrack.LONGITUDE
+                + x / (METERS_PER_DEGREE * Math.cos(Math.toRadians(SyntheticTrack.LATITUDE))));
+        fix.setAccuracy(5);
+        fix.setTime(1700000000000L + second * 1000);
+        fix.setElapsedRealtimeNanos(3600 * SECOND + second * SECOND);
+        return fix;
+    }
+
+    private List<String> transitions() throws JSONException {
+        List<String> transitions = new ArrayList<String>();
+        for (PluginResult result : mCallback.getResults()) {
+            transitions.add(new JSONObject(result.getMessage()).getString("transition"));
+        }
+        return transitions;
+    }
+}
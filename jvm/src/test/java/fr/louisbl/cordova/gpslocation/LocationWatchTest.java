@@ -0,0 +1,163 @@
+package fr.louisbl.cordova.gpslocation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import android.location.Location;
+import android.location.LocationManager;
+
+import java.util.List;
+
+/**
+ * Runs fixes along a street through the gates and the delivery policy of a
+ * single watch, the way FusedLocationHelper does: accepts, then delivered
+ * for the fixes it lets through, then offer.
+ */
+public class LocationWatchTest {
+
+    private static final long SECOND = 1000000000L;
+    private static final double METERS_PER_DEGREE = Math.toRadians(LocationUtils.EARTH_RADIUS);
+
+    private final LocationStats mStats = new LocationStats();
+
+    @Test
+    public void alwaysAcceptsTheFirstFix() throws JSONException {
+        LocationWatch watch = watch(new JSONObject().put("minDistance", 1000).put("minTime", 60000));
+
+        assertTrue(watch.accepts(fix(0, 0, 5)));
+    }
+
+    @Test
+    public void dropsFixesLessAccurateThanMaxAccuracy() throws JSONException {
+        LocationWatch watch = watch(new JSONObject().put("maxAccuracy", 10));
+
+        assertFalse(watch.accepts(fix(0, 0, 25)));
+        assertTrue(watch.accepts(fix(0, 0, 10)));
+        // A fix without accuracy cannot prove it passes.
+        assertFalse(watch.accepts(new Location(LocationManager.GPS_PROVIDER)));
+    }
+
+    @Test
+    public void dropsFixesSoonerThanMinTime() throws JSONException {
+        LocationWatch watch = watch(new JSONObject().put("minTime", 10000));
+        deliver(watch, fix(0, 0, 5));
+
+        assertFalse(watch.accepts(fix(100, 9, 5)));
+        assertTrue(watch.accepts(fix(100, 10, 5)));
+    }
+
+    @Test
+    public void dropsFixesCloserThanMinDistance() throws JSONException {
+        LocationWatch watch = watch(new JSONObject().put("minDistance", 50));
+        deliver(watch, fix(0, 0, 5));
+
+        assertFalse(watch.accepts(fix(40, 10, 5)));
+        assertTrue(watch.accepts(fix(60, 10, 5)));
+        // Measured from the last fix delivered, not from the last one seen.
+        deliver(watch, fix(60, 10, 5));
+        assertFalse(watch.accepts(fix(100, 20, 5)));
+    }
+
+    @Test
+    public void sendsEveryFixWithoutCountingThemInFlight() throws JSONException {
+        LocationWatch watch = watch(new JSONObject());
+        for (int i = 0; i < 5; i++) {
+            LocationPayload payload = payload(i);
+            assertSame(payload, watch.offer(payload, mStats));
+        }
+
+        assertEquals(0, watch.getInFlight());
+        assertEquals(0, watch.droppedCount);
+    }
+
+    @Test
+    public void latestReplacesTheQueuedFix() throws JSONException {
+        LocationWatch watch = watch(new JSONObject().put("delivery", "latest"));
+        LocationPayload first = payload(0);
+        LocationPayload third = payload(2);
+
+        assertSame(first, watch.offer(first, mStats));
+        assertNull(watch.offer(payload(1), mStats));
+        assertNull(watch.offer(third, mStats));
+
+        assertEquals(1, watch.droppedCount);
+        List<LocationPayload> ready = watch.acknowledge(1);
+        assertEquals(1, ready.size());
+        assertSame(third, ready.get(0));
+        assertEquals(1, watch.getInFlight());
+    }
+
+    @Test
+    public void boundedDropsTheOldestQueuedFix() throws JSONException {
+        LocationWatch watch = watch(new JSONObject().put("delivery", "bounded").put("queueSize", 2));
+        LocationPayload[] payloads = new LocationPayload[5];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = payload(i);
+        }
+
+        assertSame(payloads[0], watch.offer(payloads[0], mStats));
+        for (int i = 1; i < payloads.length; i++) {
+            assertNull(watch.offer(payloads[i], mStats));
+        }
+
+        assertEquals(2, watch.droppedCount);
+        assertSame(payloads[3], watch.acknowledge(1).get(0));
+        assertSame(payloads[4], watch.acknowledge(1).get(0));
+        assertTrue(watch.acknowledge(1).isEmpty());
+        assertEquals(0, watch.getInFlight());
+    }
+
+    @Test
+    public void acknowledgeDrainsTheQueueInOrder() throws JSONException {
+        LocationWatch watch = watch(new JSONObject().put("delivery", "bounded").put("maxPending", 2));
+        LocationPayload[] payloads = new LocationPayload[5];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = payload(i);
+            watch.offer(payloads[i], mStats);
+        }
+        assertEquals(2, watch.getInFlight());
+
+        List<LocationPayload> ready = watch.acknowledge(2);
+        assertEquals(2, ready.size());
+        assertSame(payloads[2], ready.get(0));
+        assertSame(payloads[3], ready.get(1));
+        ready = watch.acknowledge(1);
+        assertEquals(1, ready.size());
+        assertSame(payloads[4], ready.get(0));
+        assertEquals(2, watch.getInFlight());
+        assertEquals(0, watch.droppedCount);
+    }
+
+    private static LocationWatch watch(JSONObject options) {
+        return new LocationWatch("watch", new CallbackContext("watch", true), options);
+    }
+
+    private static LocationPayload payload(long second) {
+        return new LocationPayload(fix(second, second, 5));
+    }
+
+    private static void deliver(LocationWatch watch, Location fix) {
+        assertTrue(watch.accepts(fix));
+        watch.delivered(fix);
+    }
+
+    // A fix x meters east of the track origin, taken at the given second.
+    private static Location fix(double x, long second, float accuracy) {
+        Location fix = new Location(LocationManager.GPS_PROVIDER);
+        fix.setLatitude(SyntheticTrack.LATITUDE);
+        fix.setLongitude(SyntheticTrack.LONGITUDE
+                + x / (METERS_PER_DEGREE * Math.cos(Math.toRadians(SyntheticTrack.LATITUDE))));
+        fix.setAccuracy(accuracy);
+        fix.setTime(1700000000000L + second * 1000);
+        fix.setElapsedRealtimeNanos(3600 * SECOND + second * SECOND);
+        return fix;
+    }
+}
@@ -0,0 +1,125 @@
+package fr.louisbl.cordova.gpslocation;
+
+import static org.junit.Assert.assertEquals;
+
+import org.json.JSONException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Loads synthetic GeoJSON extracts and routes along them. The 5 x 5 grid has
+ * streets 100 m apart, from -200 m to 200 m around the track origin.
+ */
+public class RoadGraphTest {
+
+    private static final double METERS_PER_DEGREE = Math.toRadians(LocationUtils.EARTH_RADIUS);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RoadGraph mGraph;
+    private RoadGraph.Candidates mCandidates;
+    private RoadGraph.Search mSearch;
+
+    @Before
+    public void loadGrid() throws IOException, JSONException {
+        mGraph = RoadGraph.load(SyntheticTrack.writeGrid(folder.newFile("grid.geojson"), 5, 100));
+        mCandidates = new RoadGraph.Candidates(8);
+        mSearch = new RoadGraph.Search(mGraph);
+    }
+
+    @Test
+    public void splitsStreetsAtCrossings() {
+        // 10 m east of a crossing, then 10 m north of it on the other street.
+        int from = closest(10, 0, "ew2");
+        mGraph.search(mCandidates.edge[from], mCandidates.along[from], 1000, mSearch);
+        int to = closest(0, 10, "ns2");
+        assertEquals(20, mGraph.routeDistance(mSearch, mCandidates.edge[to], mCandidates.along[to]), 0.01);
+        // Each piece only spans one block.
+        assertEquals(100, mGraph.getEdgeLength(mCandidates.edge[to]), 0.01);
+    }
+
+    @Test
+    public void routesAcrossSeveralStreets() {
+        // Around the block, three blocks east then one north.
+        int from = closest(-150, -200, "ew0");
+        mGraph.search(mCandidates.edge[from], mCandidates.along[from], 1000, mSearch);
+        int to = closest(150, -100, "ew1");
+        assertEquals(50 + 200 + 100 + 50, mGraph.routeDistance(mSearch, mCandidates.edge[to], mCandidates.along[to]),
+                0.01);
+    }
+
+    @Test
+    public void boundsTheSearch() {
+        int from = closest(-150, -200, "ew0");
+        mGraph.search(mCandidates.edge[from], mCandidates.along[from], 300, mSearch);
+        int to = closest(150, -100, "ew1");
+        assertEquals(Double.POSITIVE_INFINITY,
+                mGraph.routeDistance(mSearch, mCandidates.edge[to], mCandidates.along[to]), 0);
+        // Still routes along the same edge within the bound.
+        to = closest(-120, -200, "ew0");
+        assertEquals(30, mGraph.routeDistance(mSearch, mCandidates.edge[to], mCandidates.along[to]), 0.01);
+    }
+
+    @Test
+    public void streamsMembersInAnyOrder() throws IOException, JSONException {
+        File file = folder.newFile("roads.geojson");
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        out.write("{\"features\":["
+                + "{\"geometry\":{\"coordinates\":[[2.35,48.85,35],[2.351,48.85,36]],\"type\":\"LineString\"},"
+                + "\"properties\":{\"name\":\"A \\\"street\\\"\",\"tags\":{\"lanes\":[1,2]},\"id\":42},\"type\":\"Feature\"},"
+                + "{\"type\":\"Feature\",\"id\":\"multi\",\"geometry\":{\"type\":\"MultiLineString\","
+                + "\"coordinates\":[[[2.35,48.851],[2.351,48.851]],[[2.352,48.851]]]}},"
+                + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Polygon\","
+                + "\"coordinates\":[[[2.35,48.85],[2.351,48.85],[2.351,48.851],[2.35,48.85]]]}},"
+                + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"MultiPolygon\","
+                + "\"coordinates\":[[[[2.35,48.85],[2.351,48.85],[2.35,48.85]]]]}},"
+                + "{\"type\":\"Feature\",\"geometry\":null}"
+                + "],\"type\":\"FeatureCollection\"}");
+        out.close();
+
+        RoadGraph graph = RoadGraph.load(file);
+        RoadGraph.Candidates candidates = new RoadGraph.Candidates(8);
+        assertEquals(1, graph.findCandidates(graph.toX(2.3505), graph.toY(48.8500), 20, candidates));
+        assertEquals("42", graph.getEdgeId(candidates.edge[0]));
+        assertEquals(1, graph.findCandidates(graph.toX(2.3505), graph.toY(48.8510), 20, candidates));
+        assertEquals("multi", graph.getEdgeId(candidates.edge[0]));
+        // The one point part is dropped.
+        assertEquals(0, graph.findCandidates(graph.toX(2.352), graph.toY(48.851), 20, candidates));
+    }
+
+    @Test(expected = JSONException.class)
+    public void rejectsAnExtractWithoutLines() throws IOException, JSONException {
+        File file = folder.newFile("empty.geojson");
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        out.write("{\"type\":\"FeatureCollection\",\"features\":[]}");
+        out.close();
+        RoadGraph.load(file);
+    }
+
+    // Finds the candidates at x, y meters from the track origin.
+    private void find(double x, double y) {
+        double metersPerDegreeLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(SyntheticTrack.LATITUDE));
+        mGraph.findCandidates(mGraph.toX(SyntheticTrack.LONGITUDE + x / metersPerDegreeLongitude),
+                mGraph.toY(SyntheticTrack.LATITUDE + y / METERS_PER_DEGREE), 30, mCandidates);
+    }
+
+    // Index of the candidate on the given street at x, y.
+    private int closest(double x, double y, String street) {
+        find(x, y);
+        for (int i = 0; i < mCandidates.count; i++) {
+            if (street.equals(mGraph.getEdgeId(mCandidates.edge[i])) && mCandidates.distance[i] < 0.01) {
+                return i;
+            }
+        }
+        throw new AssertionError("No candidate on " + street + " at " + x + ", " + y);
+    }
+}
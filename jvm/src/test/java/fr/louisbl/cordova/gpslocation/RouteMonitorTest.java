@@ -0,0 +1,106 @@
+package fr.louisbl.cordova.gpslocation;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.location.Location;
+import android.location.LocationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Follows a straight route 1 km east of the track origin, with fixes placed
+ * along and across it.
+ */
+public class RouteMonitorTest {
+
+    private static final long SECOND = 1000000000L;
+    private static final double METERS_PER_DEGREE = Math.toRadians(LocationUtils.EARTH_RADIUS);
+
+    private final RouteMonitor mMonitor = new RouteMonitor();
+    private final CallbackContext mCallback = new CallbackContext("route", true);
+
+    @Before
+    public void setRoute() throws JSONException {
+        JSONArray points = new JSONArray()
+                .put(point(0, 0))
+                .put(point(500, 0))
+                .put(point(1000, 0));
+        mMonitor.setRoute(points, new JSONObject().put("offRouteDistance", 50)
+                .put("milestoneInterval", 250), mCallback);
+    }
+
+    @Test
+    public void leavesAndRejoinsTheRouteWithHysteresis() throws JSONException {
+        mMonitor.onLocation(fix(100, 0, 0));
+        mMonitor.onLocation(fix(110, 40, 1));
+        mMonitor.onLocation(fix(120, 60, 2));
+        // Closer than offRouteDistance but not yet within onRouteDistance, half of it.
+        mMonitor.onLocation(fix(130, 40, 3));
+        mMonitor.onLocation(fix(140, 30, 4));
+        mMonitor.onLocation(fix(150, 20, 5));
+        mMonitor.onLocation(fix(160, 40, 6));
+
+        assertEquals("[offRoute, onRoute]", events().toString());
+        JSONObject onRoute = new JSONObject(mCallback.getResults().get(1).getMessage());
+        assertEquals(150, onRoute.getDouble("along"), 0.5);
+        assertEquals(20, onRoute.getDouble("across"), 0.5);
+        assertEquals(850, onRoute.getDouble("remaining"), 0.5);
+    }
+
+    @Test
+    public void reportsTheLastMilestonePassedOnly() throws JSONException {
+        mMonitor.onLocation(fix(100, 0, 0));
+        mMonitor.onLocation(fix(300, 0, 10));
+        mMonitor.onLocation(fix(400, 0, 20));
+        mMonitor.onLocation(fix(800, 0, 30));
+        mMonitor.onLocation(fix(900, 0, 40));
+
+        assertEquals("[milestone 250, milestone 750]", events().toString());
+    }
+
+    @Test
+    public void reportsAMilestonePassedOffRouteOnceBackOnIt() throws JSONException {
+        mMonitor.onLocation(fix(100, 0, 0));
+        mMonitor.onLocation(fix(300, 80, 10));
+        mMonitor.onLocation(fix(350, 10, 20));
+
+        assertEquals("[offRoute, onRoute, milestone 250]", events().toString());
+    }
+
+    private static JSONArray point(double x, double y) throws JSONException {
+        Location fix = fix(x, y, 0);
+        return new JSONArray().put(fix.getLatitude()).put(fix.getLongitude());
+    }
+
+    // A fix x meters east and y meters north of the track origin, taken at the given second.
+    private static Location fix(double x, double y, long second) {
+        Location fix = new Location(LocationManager.GPS_PROVIDER);
+        fix.setLatitude(SyntheticTrack.LATITUDE + y / METERS_PER_DEGREE);
+        fix.setLongitude(SyntheticTrack.LONGITUDE
+                + x / (METERS_PER_DEGREE * Math.cos(Math.toRadians(SyntheticTrack.LATITUDE))));
+        fix.setAccuracy(5);
+        fix.setTime(1700000000000L + second * 1000);
+        fix.setElapsedRealtimeNanos(3600 * SECOND + second * SECOND);
+        return fix;
+    }
+
+    private List<String> events() throws JSONException {
+        List<String> events = new ArrayList<String>();
+        for (PluginResult result : mCallback.getResults()) {
+            JSONObject event = new JSONObject(result.getMessage());
+            events.add(event.has("milestone")
+                    ? event.getString("type") + " " + event.getLong("milestone")
+                    : event.getString("type"));
+        }
+        return events;
+    }
+}
@@ -0,0 +1,201 @@
+package fr.louisbl.cordova.gpslocation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.location.Location;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays traces on a real location thread and checks what the helper would
+ * receive: every fix once, in order, paced by the trace clock.
+ */
+public class TraceReplayEngineTest {
+
+    private static final String CSV = "time,lat,lon,acc\n"
+            + "1700000000000,48.0,2.0,5\n"
+            + "1700000001000,48.0001,2.0,5\n"
+            + "1700000002000,48.0002,2.0,5\n"
+            + "1700000003000,48.0003,2.0,5\n"
+            + "1700000004000,48.0004,2.0,5\n";
+
+    private HandlerThread mThread;
+    private Recorder mRecorder;
+
+    @Before
+    public void setUp() {
+        mThread = new HandlerThread("replay");
+        mThread.start();
+        mRecorder = new Recorder();
+    }
+
+    @After
+    public void tearDown() {
+        mThread.quit();
+    }
+
+    @Test
+    public void replaysEveryFixInOrder() throws Exception {
+        TraceReplayEngine engine = replay(CSV, 0, false);
+        List<Location> fixes = mRecorder.await(5, 5000);
+        engine.disconnect();
+
+        assertEquals(5, fixes.size());
+        for (int i = 0; i < fixes.size(); i++) {
+            Location fix = fixes.get(i);
+            assertEquals(TraceReplayEngine.PROVIDER, fix.getProvider());
+            assertEquals(1700000000000L + i * 1000L, fix.getTime());
+            assertEquals(48.0 + i * 0.0001, fix.getLatitude(), 1e-9);
+            assertEquals(5, fix.getAccuracy(), 0);
+            if (i > 0) {
+                // The elapsed clock follows the trace, whatever the replay speed.
+                assertEquals(1000000000L, fix.getElapsedRealtimeNanos() - fixes.get(i - 1).getElapsedRealtimeNanos());
+            }
+        }
+    }
+
+    @Test
+    public void pacesFixesByTheTraceClock() throws Exception {
+        long start = SystemClock.elapsedRealtime();
+        TraceReplayEngine engine = replay(CSV, 10, false);
+        mRecorder.await(5, 5000);
+        long duration = SystemClock.elapsedRealtime() - start;
+        engine.disconnect();
+
+        // 4 s of trace at 10x.
+        assertTrue("Replay took " + duration + " ms", duration >= 380 && duration < 2000);
+    }
+
+    @Test
+    public void loopsWithAnIncreasingElapsedClock() throws Exception {
+        TraceReplayEngine engine = replay(CSV, 0, true);
+        List<Location> fixes = mRecorder.await(12, 5000);
+        engine.disconnect();
+
+        for (int i = 1; i < fixes.size(); i++) {
+            assertTrue(fixes.get(i).getElapsedRealtimeNanos() > fixes.get(i - 1).getElapsedRealtimeNanos());
+        }
+        assertEquals(fixes.get(0).getLatitude(), fixes.get(5).getLatitude(), 0);
+    }
+
+    @Test
+    public void stopsOnRemoveUpdates() throws Exception {
+        TraceReplayEngine engine = replay(CSV, 1, false);
+        mRecorder.await(1, 5000);
+        engine.removeUpdates();
+        int count = mRecorder.size();
+        Thread.sleep(1500);
+        assertEquals(count, mRecorder.size());
+    }
+
+    @Test
+    public void parsesGpxAndNmea() {
+        LocationTrace gpx = LocationTrace.parse("<gpx><trk><trkseg>\n"
+                + "<trkpt lat=\"48.1\" lon=\"2.1\"><ele>35</ele><time>2016-05-01T10:00:00.250Z</time></trkpt>\n"
+                + "<trkpt lat=\"48.2\" lon=\"2.2\"><time>2016-05-01T12:00:01+02:00</time></trkpt>\n"
+                + "</trkseg></trk></gpx>", null);
+        assertEquals(2, gpx.size());
+        assertEquals(1462096800250L, gpx.getTime(0));
+        assertEquals(1462096801000L, gpx.getTime(1));
+
+        LocationTrace nmea = LocationTrace.parse(
+                "$GPGGA,100000.00,4807.038,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,*47\n"
+                + "$GPRMC,100000.00,A,4807.038,N,01131.000,E,022.4,084.4,010516,003.1,W*6A\n", null);
+        assertEquals(1, nmea.size());
+        Location fix = nmea.getLocation(0, "replay", 0);
+        assertEquals(48 + 7.038 / 60, fix.getLatitude(), 1e-9);
+        assertEquals(545.4, fix.getAltitude(), 1e-9);
+        assertEquals(4.5, fix.getAccuracy(), 1e-6);
+    }
+
+    @Test
+    public void reportsTheLineOfInvalidInput() {
+        assertInvalid("<gpx>\n<trkpt lon=\"2\"/>\n</gpx>", "Line 2");
+        assertInvalid("time,lat,lon\n1700000000000,48\n", "Line 2");
+        assertInvalid("1700000000000,48,2\n1700000001000,48,abc\n", "Line 2");
+        assertInvalid("1700000000000,48,2\n2016-05-01T10:00:00+0,48,2\n", "Line 2");
+        assertInvalid("2016-05-01T10:00,48,2\n", "Line 1");
+        assertInvalid("$GPRMC,100000.00,A,4807.038,N,01131.000,E,022.4,084.4,010516,,W\n"
+                + "$GPRMC,1000,A,4807.038,N,01131.000,E,022.4,084.4,010516,,W\n", "Line 2");
+        assertInvalid("$GPRMC,100000.00,A,4807.038,N,01131.000,E,022.4,084.4,0105,,W\n", "Line 1");
+        assertInvalid("$GPRMC,100000.00,A,4807.038,N\n", "Line 1");
+        assertInvalid("$GPRMC,100000.00,A,,N,01131.000,E,022.4,084.4,010516,,W\n", "Line 1");
+    }
+
+    private static void assertInvalid(String text, String line) {
+        try {
+            LocationTrace.parse(text, null);
+            fail("Parsed " + text);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(line + ":"));
+        }
+    }
+
+    private TraceReplayEngine replay(String text, double speed, boolean loop) {
+        TraceReplayEngine engine = new TraceReplayEngine(mRecorder, mThread.getLooper(),
+                LocationTrace.parse(text, null), speed, loop);
+        engine.connect();
+        engine.requestUpdates(null);
+        return engine;
+    }
+
+    private static class Recorder implements LocationEngine.Callback {
+
+        private final List<Location> mLocations = new ArrayList<Location>();
+
+        synchronized List<Location> await(int count, long timeout) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeout;
+            while (mLocations.size() < count) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    fail("Received " + mLocations.size() + " of " + count + " fixes");
+                }
+                wait(left);
+            }
+            return new ArrayList<Location>(mLocations);
+        }
+
+        synchronized int size() {
+            return mLocations.size();
+        }
+
+        @Override
+        public synchronized void onLocations(List<Location> locations) {
+            mLocations.addAll(locations);
+            notifyAll();
+        }
+
+        @Override
+        public void onConnected() {
+        }
+
+        @Override
+        public void onConnectionFailed(int code, String message) {
+        }
+
+        @Override
+        public void onConnectionSuspended(int cause) {
+        }
+
+        @Override
+        public void onSingleLocation(Location location) {
+        }
+
+        @Override
+        public void onLocationError(int code, String message) {
+        }
+
+        @Override
+        public void onSettingsResult(String error) {
+        }
+    }
+}
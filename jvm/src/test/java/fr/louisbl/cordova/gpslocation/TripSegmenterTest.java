@@ -0,0 +1,107 @@
+package fr.louisbl.cordova.gpslocation;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import android.location.Location;
+import android.location.LocationManager;
+
+/**
+ * Drives east of the track origin, stops with some jitter, then leaves
+ * again. Wall clock times are offset from the elapsed realtime, so the
+ * events show which clock each value comes from.
+ */
+public class TripSegmenterTest {
+
+    private static final long SECOND = 1000000000L;
+    private static final long WALL_CLOCK = 1700000000000L;
+    private static final double METERS_PER_DEGREE = Math.toRadians(LocationUtils.EARTH_RADIUS);
+
+    private final CallbackContext mCallback = new CallbackContext("trips", true);
+    private TripSegmenter mSegmenter;
+
+    @Before
+    public void createSegmenter() throws JSONException {
+        mSegmenter = new TripSegmenter(new JSONObject().put("stopRadius", 50).put("stopTime", 60000), mCallback);
+    }
+
+    @Test
+    public void startsAStopAfterStopTimeWithinStopRadius() throws JSONException {
+        drive();
+        mSegmenter.onLocation(fix(510, 60));
+        mSegmenter.onLocation(fix(495, 100));
+        assertEquals(0, mCallback.getResults().size());
+
+        mSegmenter.onLocation(fix(505, 110));
+
+        assertEquals(1, mCallback.getResults().size());
+        JSONObject stopStart = event(0);
+        assertEquals("stopStart", stopStart.getString("type"));
+        assertEquals(WALL_CLOCK + 50000, stopStart.getLong("stopTime"));
+        JSONObject trip = stopStart.getJSONObject("trip");
+        assertEquals(WALL_CLOCK, trip.getLong("start"));
+        assertEquals(WALL_CLOCK + 50000, trip.getLong("end"));
+        assertEquals(50000, trip.getLong("duration"));
+        // The jitter around the stop is not part of the trip.
+        assertEquals(500, trip.getDouble("distance"), 0.5);
+    }
+
+    @Test
+    public void endsTheStopWithTheFirstFixOutsideStopRadius() throws JSONException {
+        drive();
+        mSegmenter.onLocation(fix(510, 60));
+        mSegmenter.onLocation(fix(505, 110));
+        mSegmenter.onLocation(fix(520, 120));
+        mSegmenter.onLocation(fix(600, 130));
+
+        assertEquals(2, mCallback.getResults().size());
+        JSONObject stopEnd = event(1);
+        assertEquals("stopEnd", stopEnd.getString("type"));
+        assertEquals(WALL_CLOCK + 50000, stopEnd.getLong("stopTime"));
+        assertEquals(80000, stopEnd.getLong("duration"));
+    }
+
+    @Test
+    public void measuresTheNextTripFromTheEndOfTheStop() throws JSONException {
+        drive();
+        mSegmenter.onLocation(fix(505, 110));
+        mSegmenter.onLocation(fix(600, 130));
+        mSegmenter.onLocation(fix(800, 150));
+        mSegmenter.onLocation(fix(800, 210));
+
+        assertEquals(3, mCallback.getResults().size());
+        JSONObject trip = event(2).getJSONObject("trip");
+        assertEquals(WALL_CLOCK + 130000, trip.getLong("start"));
+        assertEquals(WALL_CLOCK + 150000, trip.getLong("end"));
+        assertEquals(20000, trip.getLong("duration"));
+        assertEquals(200, trip.getDouble("distance"), 0.5);
+    }
+
+    // 500 m east in 50 s, in steps of 100 m.
+    private void drive() {
+        for (int i = 0; i <= 5; i++) {
+            mSegmenter.onLocation(fix(i * 100, i * 10));
+        }
+    }
+
+    private JSONObject event(int index) throws JSONException {
+        return new JSONObject(mCallback.getResults().get(index).getMessage());
+    }
+
+    // A fix x meters east of the track origin, taken at the given second.
+    private static Location fix(double x, long second) {
+        Location fix = new Location(LocationManager.GPS_PROVIDER);
+        fix.setLatitude(SyntheticTrack.LATITUDE);
+        fix.setLongitude(SyntheticTrack.LONGITUDE
+                + x / (METERS_PER_DEGREE * Math.cos(Math.toRadians(SyntheticTrack.LATITUDE))));
+        fix.setAccuracy(5);
+        fix.setTime(WALL_CLOCK + second * 1000);
+        fix.setElapsedRealtimeNanos(3600 * SECOND + second * SECOND);
+        return fix;
+    }
+}
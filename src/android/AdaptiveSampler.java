@@ -0,0 +1,154 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import com.google.android.gms.location.LocationRequest;
+
+import android.location.Location;
+
+/**
+ * Picks the request tier of adaptive watches from how fast the device moves.
+ * The speed is an average of the reported speeds, capped by how far the
+ * recent fixes actually spread, so GPS jitter on a parked device does not
+ * read as movement. Tiers change one step at a time: up as soon as the
+ * speed clears the next threshold plus a margin, down only once it stayed
+ * below the threshold minus the margin for a while.
+ */
+public class AdaptiveSampler {
+
+    // Upper speed bound in m/s of each tier but the last, then interval and priority of each tier.
+    private static final double[] TIER_MAX_SPEED = { 0.5, 3, 15 };
+    private static final long[] TIER_INTERVAL = { 60000, 10000, 5000, 1000 };
+    private static final int[] TIER_PRIORITY = {
+            LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY,
+            LocationRequest.PRIORITY_HIGH_ACCURACY,
+            LocationRequest.PRIORITY_HIGH_ACCURACY,
+            LocationRequest.PRIORITY_HIGH_ACCURACY
+    };
+
+    private static final double SPEED_SMOOTHING = 0.3;
+    private static final double HYSTERESIS = 0.2;
+    private static final long DEMOTE_DELAY = 30000;
+    private static final int SPREAD_WINDOW = 8;
+    private static final double STATIONARY_RADIUS = 25;
+
+    // Starts on a moving tier so the first fixes come quickly.
+    private static final int INITIAL_TIER = 2;
+
+    private int mTier = INITIAL_TIER;
+    private double mSpeed;
+    private boolean mHasSpeed;
+    private long mBelowSinceMillis = -1;
+
+    // Ring of the last fixes, used to measure their spread.
+    private final double[] mLatitudes = new double[SPREAD_WINDOW];
+    private final double[] mLongitudes = new double[SPREAD_WINDOW];
+    private final long[] mElapsedMillis = new long[SPREAD_WINDOW];
+    private int mCount;
+    private int mNext;
+
+    public long getInterval() {
+        return TIER_INTERVAL[mTier];
+    }
+
+    public int getPriority() {
+        return TIER_PRIORITY[mTier];
+    }
+
+    public int getTier() {
+        return mTier;
+    }
+
+    /**
+     * Feeds a fix to the sampler.
+     *
+     * @return true if the tier changed and the request must be recomputed.
+     */
+    public boolean update(Location location) {
+        long now = location.getElapsedRealtimeNanos() / 1000000;
+        mLatitudes[mNext] = location.getLatitude();
+        mLongitudes[mNext] = location.getLongitude();
+        mElapsedMillis[mNext] = now;
+        mNext = (mNext + 1) % SPREAD_WINDOW;
+        mCount = Math.min(mCount + 1, SPREAD_WINDOW);
+
+        double speed = location.hasSpeed() ? location.getSpeed() : spreadSpeed();
+        mSpeed = mHasSpeed ? mSpeed + SPEED_SMOOTHING * (speed - mSpeed) : speed;
+        mHasSpeed = true;
+        double effective = mCount == SPREAD_WINDOW ? Math.min(mSpeed, spreadSpeed()) : mSpeed;
+
+        if (mTier < TIER_MAX_SPEED.length && effective > TIER_MAX_SPEED[mTier] * (1 + HYSTERESIS)) {
+            mTier++;
+            mBelowSinceMillis = -1;
+            return true;
+        }
+        if (mTier > 0 && effective < TIER_MAX_SPEED[mTier - 1] * (1 - HYSTERESIS)) {
+            if (mBelowSinceMillis < 0) {
+                mBelowSinceMillis = now;
+            } else if (now - mBelowSinceMillis >= DEMOTE_DELAY) {
+                mTier--;
+                mBelowSinceMillis = -1;
+                return true;
+            }
+        } else {
+            mBelowSinceMillis = -1;
+        }
+        return false;
+    }
+
+    public void reset() {
+        mTier = INITIAL_TIER;
+        mHasSpeed = false;
+        mBelowSinceMillis = -1;
+        mCount = 0;
+        mNext = 0;
+    }
+
+    /**
+     * Speed implied by the spread of the recent fixes: the largest distance
+     * from their centroid over the time they cover. Fixes within the
+     * stationary radius count as not moving at all.
+     */
+    private double spreadSpeed() {
+        if (mCount < 2) {
+            return 0;
+        }
+        double latitude = 0;
+        double longitude = 0;
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (int i = 0; i < mCount; i++) {
+            latitude += mLatitudes[i];
+            longitude += mLongitudes[i];
+            first = Math.min(first, mElapsedMillis[i]);
+            last = Math.max(last, mElapsedMillis[i]);
+        }
+        latitude /= mCount;
+        longitude /= mCount;
+        double spread = 0;
+        for (int i = 0; i < mCount; i++) {
+            spread = Math.max(spread, LocationUtils.distanceBetween(latitude, longitude,
+                    mLatitudes[i], mLongitudes[i]));
+        }
+        if (spread < STATIONARY_RADIUS || last <= first) {
+            return 0;
+        }
+        return 2 * spread / ((last - first) / 1000.0);
+    }
+}
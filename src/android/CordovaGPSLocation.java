@@ -36,31 +36,65 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.PackageManager;
-import android.location.GpsStatus;
 import android.location.Location;
 import android.location.LocationManager;
+import android.os.Build;
+import android.os.HandlerThread;
+import android.os.Looper;
 import android.util.Log;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 public class CordovaGPSLocation extends CordovaPlugin {
 
     private LocationManager mLocationManager;
     private FusedLocationHelper mFusedLocationHelper;
-    private CordovaLocationListener mCordovaLocationListener;
+    private TimeoutScheduler mTimeoutScheduler;
+    private HandlerThread mLocationThread;
+    private TrackStore mTrackStore;
+    private final GeofenceMonitor mGeofences = new GeofenceMonitor();
+    private final RouteMonitor mRouteMonitor = new RouteMonitor();
+    private TripSegmenter mTripSegmenter;
+    // Notification shown by LocationService while tracking in the background.
+    private String mNotificationTitle;
+    private String mNotificationText;
     private CallbackContext gpsCallbackContext = null;
 
     String TAG = "CordovaGPSLocation";
     String [] permissions = { Manifest.permission.ACCESS_COARSE_LOCATION, Manifest.permission.ACCESS_FINE_LOCATION };
-    CallbackContext context;
+    // Request code of the notification permission, asked for the background mode notification.
+    private static final int NOTIFICATION_PERMISSION_REQUEST = 1;
+    // Calls received while the permissions were requested, replayed once they are granted.
+    private final List<PendingCall> mPermissionCalls = new ArrayList<PendingCall>();
 
     LocationManager getLocationManager() {
         return mLocationManager;
     }
 
+    FusedLocationHelper getLocationHelper() {
+        return mFusedLocationHelper;
+    }
+
+    Looper getLocationLooper() {
+        return mLocationThread.getLooper();
+    }
+
     @Override
     public void initialize(CordovaInterface cordova, CordovaWebView webView) {
         super.initialize(cordova, webView);
         mLocationManager = (LocationManager) cordova.getActivity().getSystemService(Context.LOCATION_SERVICE);
-        mFusedLocationHelper = new FusedLocationHelper(cordova.getActivity(), this);
+        // Fixes, connection callbacks and timeouts are all handled on this thread.
+        mLocationThread = new HandlerThread("GPSLocation");
+        mLocationThread.start();
+        Looper looper = mLocationThread.getLooper();
+        mTimeoutScheduler = new TimeoutScheduler(looper);
+        // Play Services when available, the framework LocationManager otherwise.
+        String engine = preferences.getString("GPSLocationEngine", FusedLocationHelper.ENGINE_AUTO);
+        mFusedLocationHelper = new FusedLocationHelper(cordova.getActivity(), this, mTimeoutScheduler,
+                looper, engine.toLowerCase());
         registerGpsProviderChanges(cordova.getActivity());
         cordova.setActivityResultCallback(this);
     }
@@ -100,19 +134,26 @@ public class CordovaGPSLocation extends CordovaPlugin {
      */
     public boolean execute(final String action, final JSONArray args,
             final CallbackContext callbackContext) {
-        context = callbackContext;
-
-        if (action == null || !action.matches("getPermission|getLocation|addWatch|clearWatch|requestPermissions|addGPSWatch")) {
+        if (action == null || !action.matches("getPermission|getLocation|addWatch|clearWatch|requestPermissions|addGPSWatch|setPipeline|startTrack|stopTrack|getTrack|exportTrack|setBackgroundMode|getStats|startReplay|stopReplay|addGeofences|removeGeofences|setRoute|clearRoute|startTrips|stopTrips|ack")) {
             return false;
         }
 
         if(!hasPermisssion()) {
+            synchronized (mPermissionCalls) {
+                mPermissionCalls.add(new PendingCall(action, args, callbackContext));
+            }
             PermissionHelper.requestPermissions(this, 0, permissions);
             return true;
         }
 
+        if (action.equals("getPermission")) {
+            // Only asks for the permission, granted by now.
+            callbackContext.success();
+            return true;
+        }
+
         if (action.equals("requestPermissions")) {
-            mFusedLocationHelper.checkLocationSettings();
+            mFusedLocationHelper.checkLocationSettings(callbackContext);
         }
 
         final String id = args.optString(0, LocationUtils.EMPTY_STRING);
@@ -122,12 +163,48 @@ public class CordovaGPSLocation extends CordovaPlugin {
             return true;
         }
 
+        if (action.equals("ack")) {
+            mFusedLocationHelper.acknowledge(id, args.optInt(1, 1));
+            return true;
+        }
+
         if (action.equals("getLocation")) {
-            getLastLocation();
+            getLocation(args.optLong(0, 0), args.optLong(1, 0), (float) args.optDouble(2, 0), callbackContext);
         } else if (action.equals("addWatch")) {
-            addWatch(id, callbackContext);
+            addWatch(id, args.optJSONObject(1), callbackContext);
         } else if (action.equals("addGPSWatch")) {
             addGPSWatch(callbackContext);
+        } else if (action.equals("setPipeline")) {
+            setPipeline(args.optJSONArray(0), callbackContext);
+        } else if (action.equals("startTrack")) {
+            startTrack(args.optJSONObject(0), callbackContext);
+        } else if (action.equals("stopTrack")) {
+            stopTrack(callbackContext);
+        } else if (action.equals("getTrack")) {
+            getTrack(args.optLong(0, 0), args.optLong(1, Long.MAX_VALUE), callbackContext);
+        } else if (action.equals("exportTrack")) {
+            exportTrack(args.optLong(0, 0), args.optLong(1, Long.MAX_VALUE), args.optJSONObject(2), callbackContext);
+        } else if (action.equals("setBackgroundMode")) {
+            setBackgroundMode(args.optBoolean(0, false), args.optJSONObject(1), callbackContext);
+        } else if (action.equals("getStats")) {
+            getStats(args.optBoolean(0, false), callbackContext);
+        } else if (action.equals("startReplay")) {
+            startReplay(args.optString(0, LocationUtils.EMPTY_STRING), args.optJSONObject(1), callbackContext);
+        } else if (action.equals("stopReplay")) {
+            mFusedLocationHelper.stopReplay();
+            callbackContext.success();
+        } else if (action.equals("addGeofences")) {
+            addGeofences(args.optJSONArray(0), args.optJSONObject(1), callbackContext);
+        } else if (action.equals("removeGeofences")) {
+            removeGeofences(args.optJSONArray(0), callbackContext);
+        } else if (action.equals("setRoute")) {
+            setRoute(args.optJSONArray(0), args.optJSONObject(1), callbackContext);
+        } else if (action.equals("clearRoute")) {
+            clearRoute(callbackContext);
+        } else if (action.equals("startTrips")) {
+            startTrips(args.optJSONObject(0), callbackContext);
+        } else if (action.equals("stopTrips")) {
+            stopTrips(callbackContext);
         }
 
         return true;
@@ -137,15 +214,49 @@ public class CordovaGPSLocation extends CordovaPlugin {
      * Called when the activity is to be shut down. Stop listener.
      */
     public void onDestroy() {
+        LocationService.stop(cordova.getActivity());
         mFusedLocationHelper.stopLocationUpdates();
+        mFusedLocationHelper.destroy();
+        mTimeoutScheduler.cancelAll();
         unregisterGpsProviderChanges(cordova.getActivity());
+        mLocationThread.quitSafely();
+        synchronized (this) {
+            if (mTrackStore != null) {
+                mTrackStore.close();
+                mTrackStore = null;
+            }
+        }
     }
 
     /**
-     * Called when the view navigates. Stop the listeners.
+     * Called when the view navigates. Stop the listeners. In background mode
+     * the subscription keeps running and fixes are buffered until the page
+     * registers a watch again.
      */
     public void onReset() {
-        this.onDestroy();
+        // Transition callbacks belong to the page being unloaded.
+        removeGeofences(null, null);
+        clearRoute(null);
+        stopTrips(null);
+        mFusedLocationHelper.cancelLocationRequests(LocationUtils.POSITION_UNAVAILABLE, "Page reloaded");
+        if (mFusedLocationHelper.isBackgroundMode()) {
+            mFusedLocationHelper.clearJavaScriptWatches();
+        } else {
+            mFusedLocationHelper.stopLocationUpdates();
+            mTimeoutScheduler.cancelAll();
+        }
+    }
+
+    @Override
+    public void onPause(boolean multitasking) {
+        // The foreground service runs for as long as background mode is on, pausing only
+        // switches fixes to the buffer.
+        mFusedLocationHelper.setPaused(true);
+    }
+
+    @Override
+    public void onResume(boolean multitasking) {
+        mFusedLocationHelper.setPaused(false);
     }
 
 
@@ -160,8 +271,42 @@ public class CordovaGPSLocation extends CordovaPlugin {
         callbackContext.sendPluginResult(result);
     }
 
-    public void win(Location loc){
-        win(loc, context, false);
+    public void win(LocationPayload payload, CallbackContext callbackContext, boolean compact) {
+        if (callbackContext == null) {
+            return;
+        }
+        boolean serialized = !payload.hasResult(compact);
+        long start = System.nanoTime();
+        PluginResult result = payload.getResult(compact);
+        send(result, callbackContext, start, serialized);
+    }
+
+    public void win(LocationPayload payload, CallbackContext callbackContext) {
+        if (callbackContext == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        PluginResult result = payload.getOneShotResult();
+        send(result, callbackContext, start, true);
+    }
+
+    public void win(List<LocationPayload> batch, CallbackContext callbackContext,
+            boolean compact) {
+        if (callbackContext == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        PluginResult result = LocationPayload.batchResult(batch, compact);
+        send(result, callbackContext, start, true);
+    }
+
+    private void send(PluginResult result, CallbackContext callbackContext, long start,
+            boolean serialized) {
+        long built = System.nanoTime();
+        callbackContext.sendPluginResult(result);
+        LocationStats stats = mFusedLocationHelper.stats;
+        stats.recordSend(start, built, System.nanoTime(), serialized);
+        stats.recordDelivered();
     }
 
     /**
@@ -199,10 +344,6 @@ public class CordovaGPSLocation extends CordovaPlugin {
         callbackContext.sendPluginResult(result);
     }
 
-    public void fail(int code, String msg){
-        fail(code, msg, context, false);
-    }
-
     @Override
     public void onActivityResult(int requestCode, int resultCode, Intent intent) {
         Log.i(TAG, "onActivityResult called with reqestCode " + requestCode + " and resultCode "
@@ -213,12 +354,10 @@ public class CordovaGPSLocation extends CordovaPlugin {
                 switch (resultCode) {
                     case Activity.RESULT_OK:
                         Log.i(TAG, "User agreed to make required location settings changes.");
-                        getLastLocation();
+                        mFusedLocationHelper.onLocationSettingsResolved(true);
                         break;
                     case Activity.RESULT_CANCELED:
-                        fail(Activity.RESULT_CANCELED,
-                                "User chose not to make required location settings changes.",
-                                context, false);
+                        mFusedLocationHelper.onLocationSettingsResolved(false);
                         break;
                 }
                 break;
@@ -226,35 +365,312 @@ public class CordovaGPSLocation extends CordovaPlugin {
     }
 
 
-    private void getLastLocation() {
-        mFusedLocationHelper.getLastAvailableLocation(context);
+    private void getLocation(long maximumAge, long timeout, float desiredAccuracy,
+            CallbackContext callbackContext) {
+        if (desiredAccuracy > 0) {
+            mFusedLocationHelper.acquireLocation(maximumAge, timeout, desiredAccuracy, callbackContext);
+        } else {
+            mFusedLocationHelper.getLocation(maximumAge, timeout, callbackContext);
+        }
     }
 
     private void clearWatch(String id) {
         mFusedLocationHelper.clearWatch(id);
     }
 
-    private void addWatch(String timerId, CallbackContext callbackContext) {
-        mFusedLocationHelper.addWatch(timerId, callbackContext);
+    private void addWatch(String timerId, JSONObject options, CallbackContext callbackContext) {
+        mFusedLocationHelper.addWatch(timerId, callbackContext, options);
+    }
+
+    /**
+     * Builds the stages off the WebCore thread, since a map matching stage
+     * loads and indexes its road graph. Relative graph paths are resolved in
+     * the app's files directory.
+     */
+    private void setPipeline(final JSONArray stages, final CallbackContext callbackContext) {
+        cordova.getThreadPool().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; stages != null && i < stages.length(); i++) {
+                        JSONObject stage = stages.getJSONObject(i);
+                        String graph = stage.optString("graph", null);
+                        if (graph != null) {
+                            if (graph.startsWith("file://")) {
+                                graph = graph.substring("file://".length());
+                            }
+                            File file = new File(graph);
+                            if (!file.isAbsolute()) {
+                                file = new File(cordova.getActivity().getFilesDir(), graph);
+                            }
+                            stage.put("graph", file.getAbsolutePath());
+                        }
+                    }
+                    mFusedLocationHelper.pipeline.configure(stages);
+                    callbackContext.success();
+                } catch (JSONException e) {
+                    fail(LocationUtils.POSITION_UNAVAILABLE, e.getMessage(), callbackContext, false);
+                }
+            }
+        });
+    }
+
+    private synchronized TrackStore getTrackStore(JSONObject options) throws IOException {
+        if (mTrackStore == null) {
+            File directory = new File(cordova.getActivity().getFilesDir(), "gpslocation-track");
+            mTrackStore = new TrackStore(directory,
+                    options == null ? TrackStore.DEFAULT_SEGMENT_RECORDS
+                            : options.optInt("segmentRecords", TrackStore.DEFAULT_SEGMENT_RECORDS),
+                    options == null ? TrackStore.DEFAULT_MAX_SEGMENTS
+                            : options.optInt("maxSegments", TrackStore.DEFAULT_MAX_SEGMENTS));
+        }
+        return mTrackStore;
+    }
+
+    private void startTrack(JSONObject options, CallbackContext callbackContext) {
+        try {
+            TrackStore trackStore = getTrackStore(options);
+            if (!mFusedLocationHelper.consumers.contains(trackStore)) {
+                mFusedLocationHelper.consumers.add(trackStore);
+            }
+            callbackContext.success();
+        } catch (IOException e) {
+            fail(LocationUtils.POSITION_UNAVAILABLE, e.getMessage(), callbackContext, false);
+        }
+    }
+
+    private synchronized void stopTrack(CallbackContext callbackContext) {
+        if (mTrackStore != null) {
+            mFusedLocationHelper.consumers.remove(mTrackStore);
+        }
+        callbackContext.success();
+    }
+
+    /**
+     * Reads a time range of the recorded track off the WebCore thread and
+     * returns it as one binary payload.
+     */
+    private void getTrack(final long from, final long to, final CallbackContext callbackContext) {
+        cordova.getThreadPool().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK,
+                            getTrackStore(null).read(from, to)));
+                } catch (IOException e) {
+                    fail(LocationUtils.POSITION_UNAVAILABLE, e.getMessage(), callbackContext, false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Streams a time range of the recorded track to a file off the WebCore
+     * thread, and returns only the path of the file.
+     */
+    private void exportTrack(final long from, final long to, JSONObject options,
+            final CallbackContext callbackContext) {
+        final String format = options == null ? TrackExporter.FORMAT_GPX
+                : options.optString("format", TrackExporter.FORMAT_GPX);
+        String name = options == null ? null : options.optString("fileName", null);
+        if (name == null || name.length() == 0) {
+            name = "track-" + from + "-" + (to == Long.MAX_VALUE ? "now" : String.valueOf(to))
+                    + (format.equals(TrackExporter.FORMAT_DELTA) ? ".bin" : "." + format);
+        } else if (name.indexOf('/') >= 0 || name.startsWith(".")) {
+            fail(LocationUtils.POSITION_UNAVAILABLE, "Invalid file name: " + name, callbackContext, false);
+            return;
+        }
+        final File file = new File(new File(cordova.getActivity().getCacheDir(), "gpslocation-export"), name);
+        cordova.getThreadPool().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    TrackExporter.export(getTrackStore(null), from, to, format, file);
+                    callbackContext.success(file.getAbsolutePath());
+                } catch (IOException e) {
+                    fail(LocationUtils.POSITION_UNAVAILABLE, e.getMessage(), callbackContext, false);
+                } catch (IllegalArgumentException e) {
+                    fail(LocationUtils.POSITION_UNAVAILABLE, e.getMessage(), callbackContext, false);
+                }
+            }
+        });
+    }
+
+    private void setBackgroundMode(boolean enabled, JSONObject options, CallbackContext callbackContext) {
+        if (enabled) {
+            mNotificationTitle = options == null ? null : options.optString("notificationTitle", null);
+            mNotificationText = options == null ? null : options.optString("notificationText", null);
+            // From Android 13 the notification is hidden without this permission, tracking runs either way.
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                    && !PermissionHelper.hasPermission(this, Manifest.permission.POST_NOTIFICATIONS)) {
+                PermissionHelper.requestPermission(this, NOTIFICATION_PERMISSION_REQUEST,
+                        Manifest.permission.POST_NOTIFICATIONS);
+            }
+            mFusedLocationHelper.startBackgroundMode(options);
+            // Started while the activity is in the foreground, where Android allows it.
+            LocationService.start(cordova.getActivity(), mNotificationTitle, mNotificationText);
+        } else {
+            LocationService.stop(cordova.getActivity());
+            mFusedLocationHelper.stopBackgroundMode();
+        }
+        callbackContext.success();
+    }
+
+    /**
+     * Parses the trace off the WebCore thread, then replays it in place of
+     * the device location.
+     */
+    private void startReplay(final String trace, final JSONObject options,
+            final CallbackContext callbackContext) {
+        cordova.getThreadPool().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    LocationTrace parsed = LocationTrace.parse(trace,
+                            options == null ? null : options.optString("format", null));
+                    mFusedLocationHelper.startReplay(parsed,
+                            options == null ? 1 : options.optDouble("speed", 1),
+                            options != null && options.optBoolean("loop", false));
+                    callbackContext.success(parsed.size());
+                } catch (IllegalArgumentException e) {
+                    fail(LocationUtils.POSITION_UNAVAILABLE, e.getMessage(), callbackContext, false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Registers fences tested natively against every fix, only transitions
+     * are sent back, on this call's callback. An internal watch built from
+     * options keeps location updates running meanwhile.
+     */
+    private void addGeofences(JSONArray fences, JSONObject options, CallbackContext callbackContext) {
+        try {
+            mGeofences.add(fences == null ? new JSONArray() : fences, callbackContext);
+        } catch (JSONException e) {
+            fail(LocationUtils.POSITION_UNAVAILABLE, e.getMessage(), callbackContext, false);
+            return;
+        }
+        if (!mFusedLocationHelper.consumers.contains(mGeofences)) {
+            mFusedLocationHelper.consumers.add(mGeofences);
+        }
+        mFusedLocationHelper.addWatch(GeofenceMonitor.WATCH_ID, null, options);
+    }
+
+    private void removeGeofences(JSONArray ids, CallbackContext callbackContext) {
+        mGeofences.remove(ids);
+        if (mGeofences.isEmpty() && mFusedLocationHelper.consumers.remove(mGeofences)) {
+            mFusedLocationHelper.clearWatch(GeofenceMonitor.WATCH_ID);
+        }
+        if (callbackContext != null) {
+            callbackContext.success();
+        }
+    }
+
+    /**
+     * Follows a route natively, route events are sent on this call's
+     * callback. An internal watch built from options keeps location updates
+     * running meanwhile.
+     */
+    private void setRoute(JSONArray points, JSONObject options, CallbackContext callbackContext) {
+        try {
+            mRouteMonitor.setRoute(points, options, callbackContext);
+        } catch (JSONException e) {
+            fail(LocationUtils.POSITION_UNAVAILABLE, e.getMessage(), callbackContext, false);
+            return;
+        }
+        if (!mFusedLocationHelper.consumers.contains(mRouteMonitor)) {
+            mFusedLocationHelper.consumers.add(mRouteMonitor);
+        }
+        mFusedLocationHelper.addWatch(RouteMonitor.WATCH_ID, null, options);
+    }
+
+    private void clearRoute(CallbackContext callbackContext) {
+        mRouteMonitor.clearRoute();
+        if (mFusedLocationHelper.consumers.remove(mRouteMonitor)) {
+            mFusedLocationHelper.clearWatch(RouteMonitor.WATCH_ID);
+        }
+        if (callbackContext != null) {
+            callbackContext.success();
+        }
+    }
+
+    /**
+     * Segments the fix stream into trips and stops, only segment events are
+     * sent on this call's callback. A new call restarts the segmentation.
+     */
+    private synchronized void startTrips(JSONObject options, CallbackContext callbackContext) {
+        if (mTripSegmenter != null) {
+            mFusedLocationHelper.consumers.remove(mTripSegmenter);
+        }
+        mTripSegmenter = new TripSegmenter(options, callbackContext);
+        mFusedLocationHelper.consumers.add(mTripSegmenter);
+        mFusedLocationHelper.addWatch(TripSegmenter.WATCH_ID, null, options);
+    }
+
+    private synchronized void stopTrips(CallbackContext callbackContext) {
+        if (mTripSegmenter != null) {
+            mFusedLocationHelper.consumers.remove(mTripSegmenter);
+            mTripSegmenter = null;
+            mFusedLocationHelper.clearWatch(TripSegmenter.WATCH_ID);
+        }
+        if (callbackContext != null) {
+            callbackContext.success();
+        }
+    }
+
+    private void getStats(boolean reset, CallbackContext callbackContext) {
+        try {
+            JSONObject stats = mFusedLocationHelper.getStats();
+            if (reset) {
+                mFusedLocationHelper.stats.reset();
+            }
+            callbackContext.success(stats);
+        } catch (JSONException e) {
+            fail(LocationUtils.POSITION_UNAVAILABLE, e.getMessage(), callbackContext, false);
+        }
     }
 
     public void onRequestPermissionResult(int requestCode, String[] permissions,
                                           int[] grantResults) throws JSONException
     {
-        PluginResult result;
-        //This is important if we're using Cordova without using Cordova, but we have the geolocation plugin installed
-        if(context != null) {
-            for (int r : grantResults) {
-                if (r == PackageManager.PERMISSION_DENIED) {
-                    LOG.d(TAG, "Permission Denied!");
-                    result = new PluginResult(PluginResult.Status.ILLEGAL_ACCESS_EXCEPTION);
-                    context.sendPluginResult(result);
-                    return;
+        if (requestCode == NOTIFICATION_PERMISSION_REQUEST) {
+            // Background mode does not wait for it, no call is pending.
+            return;
+        }
+        List<PendingCall> calls;
+        synchronized (mPermissionCalls) {
+            calls = new ArrayList<PendingCall>(mPermissionCalls);
+            mPermissionCalls.clear();
+        }
+        for (int r : grantResults) {
+            if (r == PackageManager.PERMISSION_DENIED) {
+                LOG.d(TAG, "Permission Denied!");
+                for (PendingCall call : calls) {
+                    call.callbackContext.sendPluginResult(
+                            new PluginResult(PluginResult.Status.ILLEGAL_ACCESS_EXCEPTION));
                 }
-
+                return;
             }
-            result = new PluginResult(PluginResult.Status.OK);
-            context.sendPluginResult(result);
+        }
+        for (PendingCall call : calls) {
+            execute(call.action, call.args, call.callbackContext);
+        }
+    }
+
+    /**
+     * A call waiting for the permission request, with its own callback context.
+     */
+    private static class PendingCall {
+
+        final String action;
+        final JSONArray args;
+        final CallbackContext callbackContext;
+
+        PendingCall(String action, JSONArray args, CallbackContext callbackContext) {
+            this.action = action;
+            this.args = args;
+            this.callbackContext = callbackContext;
         }
     }
 
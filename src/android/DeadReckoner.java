@@ -0,0 +1,267 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+/**
+ * Estimates the position between two fixes from the last fix and motion
+ * sensors. Each real fix re-anchors the estimate. Between fixes, the
+ * position advances along the travel heading at the current speed.
+ *
+ * - The heading follows the integrated gyroscope yaw rate and is pulled
+ *   towards the device azimuth. The azimuth is shifted by the offset between
+ *   the fix bearing and the azimuth measured at that fix, so the device
+ *   does not have to point in the travel direction.
+ * - The speed follows the horizontal acceleration along the heading.
+ *
+ * The reported accuracy grows from the fix accuracy with the speed and
+ * heading uncertainties.
+ *
+ * Times are in nanoseconds on one monotonic clock, angles are clockwise from
+ * north. The class uses no Android type, so it can be driven from recorded
+ * sensor traces on a plain JVM.
+ */
+public class DeadReckoner {
+
+    // Uncertainty of the speed at the fix, in m/s, and its growth from integrated acceleration, in m/s^2.
+    public static final double DEFAULT_SPEED_NOISE = 0.5;
+    public static final double DEFAULT_ACCELERATION_NOISE = 0.2;
+    // Uncertainty of the travel heading, in degrees.
+    public static final double DEFAULT_HEADING_NOISE = 10;
+    // Past this time in milliseconds since the last fix, no estimate is given.
+    public static final long DEFAULT_MAX_DURATION = 30000;
+    // Below this speed in m/s the device is taken as standing still.
+    public static final double MIN_MOVING_SPEED = 0.5;
+
+    // Share per second of the gap between the heading and the corrected azimuth that is closed.
+    private static final double AZIMUTH_GAIN = 0.5;
+    // Below this speed in m/s, a fix bearing is too noisy to calibrate the azimuth.
+    private static final double MIN_CALIBRATION_SPEED = 2;
+    private static final double MAX_SPEED = 70;
+    // Longest sensor gap in seconds integrated at once, longer gaps are treated as a pause.
+    private static final double MAX_SENSOR_GAP = 1;
+
+    private final double mSpeedNoise;
+    private final double mAccelerationNoise;
+    private final double mHeadingNoise;
+    private final long mMaxDurationNanos;
+
+    private boolean mAnchored;
+    private long mAnchorNanos;
+    private long mLastNanos;
+    private double mAnchorAccuracy;
+    private double mOriginLatitude;
+    private double mOriginLongitude;
+    private double mMetersPerDegreeLatitude;
+    private double mMetersPerDegreeLongitude;
+
+    // Position in meters east (x) and north (y) of the last fix.
+    private double mX;
+    private double mY;
+    private double mSpeed;
+    private double mHeading;
+    private boolean mHasHeading;
+
+    private double mAzimuth;
+    private boolean mHasAzimuth;
+    private double mAzimuthOffset;
+    private boolean mCalibrated;
+    private long mLastAzimuthNanos;
+    private long mLastYawNanos;
+    private long mLastAccelerationNanos;
+
+    public DeadReckoner() {
+        this(DEFAULT_SPEED_NOISE, DEFAULT_ACCELERATION_NOISE, DEFAULT_HEADING_NOISE, DEFAULT_MAX_DURATION);
+    }
+
+    public DeadReckoner(double speedNoise, double accelerationNoise, double headingNoise, long maxDuration) {
+        mSpeedNoise = speedNoise;
+        mAccelerationNoise = accelerationNoise;
+        mHeadingNoise = Math.toRadians(headingNoise);
+        mMaxDurationNanos = maxDuration * 1000000;
+        mMetersPerDegreeLatitude = Math.toRadians(LocationUtils.EARTH_RADIUS);
+    }
+
+    /**
+     * Restarts the estimate from a real fix.
+     *
+     * @param speed   speed in m/s, NaN if unknown.
+     * @param bearing bearing in degrees, NaN if unknown.
+     */
+    public void anchor(long nanos, double latitude, double longitude, double accuracy, double speed, double bearing) {
+        if (mAnchored && (Double.isNaN(speed) || Double.isNaN(bearing))) {
+            // Fall back to the motion between the last two fixes, once it exceeds their noise.
+            double dx = (longitude - mOriginLongitude) * mMetersPerDegreeLongitude;
+            double dy = (latitude - mOriginLatitude) * mMetersPerDegreeLatitude;
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            double seconds = (nanos - mAnchorNanos) / 1e9;
+            if (distance > Math.max(accuracy, mAnchorAccuracy) && seconds > 0) {
+                if (Double.isNaN(speed)) {
+                    speed = distance / seconds;
+                }
+                if (Double.isNaN(bearing)) {
+                    bearing = Math.toDegrees(Math.atan2(dx, dy));
+                }
+            }
+        }
+
+        mAnchored = true;
+        mAnchorNanos = nanos;
+        mLastNanos = nanos;
+        mAnchorAccuracy = accuracy;
+        mOriginLatitude = latitude;
+        mOriginLongitude = longitude;
+        mMetersPerDegreeLongitude = mMetersPerDegreeLatitude * Math.cos(Math.toRadians(latitude));
+        mX = 0;
+        mY = 0;
+        mSpeed = Double.isNaN(speed) ? 0 : Math.min(speed, MAX_SPEED);
+        if (!Double.isNaN(bearing)) {
+            mHeading = Math.toRadians(bearing);
+            mHasHeading = true;
+            if (mHasAzimuth && mSpeed >= MIN_CALIBRATION_SPEED) {
+                mAzimuthOffset = wrap(mHeading - mAzimuth);
+                mCalibrated = true;
+            }
+        }
+    }
+
+    /**
+     * Device azimuth, from a rotation vector sensor.
+     */
+    public void onAzimuth(long nanos, double azimuthRadians) {
+        propagate(nanos);
+        mAzimuth = azimuthRadians;
+        double target = wrap(azimuthRadians + mAzimuthOffset);
+        if (!mHasHeading) {
+            // Until a moving fix calibrates it, assume the device points where it goes.
+            mHeading = target;
+            mHasHeading = true;
+        } else if (mCalibrated && mLastAzimuthNanos > 0) {
+            double dt = Math.min((nanos - mLastAzimuthNanos) / 1e9, MAX_SENSOR_GAP);
+            mHeading = wrap(mHeading + wrap(target - mHeading) * Math.min(1, AZIMUTH_GAIN * dt));
+        }
+        mHasAzimuth = true;
+        mLastAzimuthNanos = nanos;
+    }
+
+    /**
+     * Rotation rate around the vertical axis, in rad/s, counterclockwise
+     * seen from above as gyroscopes report it.
+     */
+    public void onYawRate(long nanos, double radiansPerSecond) {
+        propagate(nanos);
+        if (mLastYawNanos > 0 && mHasHeading) {
+            double dt = Math.min((nanos - mLastYawNanos) / 1e9, MAX_SENSOR_GAP);
+            mHeading = wrap(mHeading - radiansPerSecond * dt);
+        }
+        mLastYawNanos = nanos;
+    }
+
+    /**
+     * Linear acceleration, gravity removed, along east and north in m/s^2.
+     */
+    public void onAcceleration(long nanos, double east, double north) {
+        propagate(nanos);
+        if (mLastAccelerationNanos > 0 && mHasHeading) {
+            double dt = Math.min((nanos - mLastAccelerationNanos) / 1e9, MAX_SENSOR_GAP);
+            double forward = east * Math.sin(mHeading) + north * Math.cos(mHeading);
+            mSpeed = Math.max(0, Math.min(MAX_SPEED, mSpeed + forward * dt));
+        }
+        mLastAccelerationNanos = nanos;
+    }
+
+    /**
+     * Advances the position to the given time at the current speed and heading.
+     */
+    public void propagate(long nanos) {
+        if (!mAnchored || nanos <= mLastNanos) {
+            return;
+        }
+        double dt = (nanos - mLastNanos) / 1e9;
+        if (mHasHeading) {
+            mX += mSpeed * Math.sin(mHeading) * dt;
+            mY += mSpeed * Math.cos(mHeading) * dt;
+        }
+        mLastNanos = nanos;
+    }
+
+    /**
+     * Whether an estimate can be given at this time: a fix was seen, and
+     * recently enough for the error to stay meaningful.
+     */
+    public boolean isActive(long nanos) {
+        return mAnchored && nanos - mAnchorNanos <= mMaxDurationNanos;
+    }
+
+    /**
+     * Whether the estimate tells more than the last fix: the device is
+     * moving, and it moved further from the fix than the accuracy grew.
+     */
+    public boolean hasMoved() {
+        return mSpeed >= MIN_MOVING_SPEED && Math.sqrt(mX * mX + mY * mY) > getAccuracy() - mAnchorAccuracy;
+    }
+
+    public long getAnchorNanos() {
+        return mAnchorNanos;
+    }
+
+    public double getLatitude() {
+        return mOriginLatitude + mY / mMetersPerDegreeLatitude;
+    }
+
+    public double getLongitude() {
+        return mOriginLongitude + mX / mMetersPerDegreeLongitude;
+    }
+
+    public double getSpeed() {
+        return mSpeed;
+    }
+
+    /**
+     * Travel heading in degrees in [0, 360), NaN while unknown.
+     */
+    public double getBearing() {
+        if (!mHasHeading) {
+            return Double.NaN;
+        }
+        double degrees = Math.toDegrees(mHeading);
+        return degrees < 0 ? degrees + 360 : degrees;
+    }
+
+    /**
+     * Radius in meters of the estimate, growing from the fix accuracy with
+     * the error along the track (speed) and across it (heading).
+     */
+    public double getAccuracy() {
+        double t = (mLastNanos - mAnchorNanos) / 1e9;
+        double along = mSpeedNoise * t + 0.5 * mAccelerationNoise * t * t;
+        double across = mSpeed * t * mHeadingNoise;
+        return Math.sqrt(mAnchorAccuracy * mAnchorAccuracy + along * along + across * across);
+    }
+
+    // Wraps an angle to [-pi, pi].
+    private static double wrap(double radians) {
+        while (radians > Math.PI) {
+            radians -= 2 * Math.PI;
+        }
+        while (radians < -Math.PI) {
+            radians += 2 * Math.PI;
+        }
+        return radians;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.location.Location;
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * Feeds a DeadReckoner from the device sensors and real fixes, and emits its
+ * estimate every interval between fixes. Sensors are rotated to east, north
+ * and up with the rotation vector before reaching the estimator. Sensor
+ * events, fixes and emissions all run on the location thread.
+ */
+public class DeadReckoningSensors implements SensorEventListener, LocationConsumer, Runnable {
+
+    public static final String PROVIDER = "deadReckoning";
+
+    public static final long DEFAULT_INTERVAL = 250;
+
+    /**
+     * Receives the estimated positions.
+     */
+    public interface Listener {
+
+        void onEstimate(Location estimate);
+    }
+
+    private final SensorManager mSensorManager;
+    private final Handler mHandler;
+    private final Listener mListener;
+    private final DeadReckoner mReckoner = new DeadReckoner();
+    private long mInterval = DEFAULT_INTERVAL;
+    private boolean mStarted;
+
+    // Device to world rotation, from the last rotation vector event.
+    private final float[] mRotation = new float[9];
+    private final float[] mOrientation = new float[3];
+    private boolean mHasRotation;
+
+    public DeadReckoningSensors(Context context, Handler handler, Listener listener) {
+        mSensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        mHandler = handler;
+        mListener = listener;
+    }
+
+    /**
+     * Registers the sensors and starts emitting. Missing sensors are skipped:
+     * without a gyroscope the heading only follows the azimuth, without a
+     * linear acceleration sensor the speed of the last fix is kept.
+     */
+    public void start(long interval) {
+        // Also called to change the interval of running sensors.
+        mInterval = Math.max(1, interval);
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+        Sensor rotation = mSensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR);
+        if (rotation == null) {
+            // Without magnetometer there is no north, the offset calibrated on fixes makes up for it.
+            rotation = mSensorManager.getDefaultSensor(Sensor.TYPE_GAME_ROTATION_VECTOR);
+        }
+        register(rotation);
+        register(mSensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE));
+        register(mSensorManager.getDefaultSensor(Sensor.TYPE_LINEAR_ACCELERATION));
+        mHandler.postDelayed(this, mInterval);
+    }
+
+    public void stop() {
+        if (!mStarted) {
+            return;
+        }
+        mStarted = false;
+        mSensorManager.unregisterListener(this);
+        mHandler.removeCallbacks(this);
+    }
+
+    private void register(Sensor sensor) {
+        if (sensor != null) {
+            mSensorManager.registerListener(this, sensor, SensorManager.SENSOR_DELAY_GAME, mHandler);
+        }
+    }
+
+    @Override
+    public void onLocation(Location location) {
+        mReckoner.anchor(location.getElapsedRealtimeNanos(), location.getLatitude(), location.getLongitude(),
+                location.getAccuracy(), location.hasSpeed() ? location.getSpeed() : Double.NaN,
+                location.hasBearing() ? location.getBearing() : Double.NaN);
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        float[] v = event.values;
+        switch (event.sensor.getType()) {
+            case Sensor.TYPE_ROTATION_VECTOR:
+            case Sensor.TYPE_GAME_ROTATION_VECTOR:
+                SensorManager.getRotationMatrixFromVector(mRotation, v);
+                SensorManager.getOrientation(mRotation, mOrientation);
+                mHasRotation = true;
+                mReckoner.onAzimuth(event.timestamp, mOrientation[0]);
+                break;
+            case Sensor.TYPE_GYROSCOPE:
+                if (mHasRotation) {
+                    mReckoner.onYawRate(event.timestamp,
+                            mRotation[6] * v[0] + mRotation[7] * v[1] + mRotation[8] * v[2]);
+                }
+                break;
+            case Sensor.TYPE_LINEAR_ACCELERATION:
+                if (mHasRotation) {
+                    mReckoner.onAcceleration(event.timestamp,
+                            mRotation[0] * v[0] + mRotation[1] * v[1] + mRotation[2] * v[2],
+                            mRotation[3] * v[0] + mRotation[4] * v[1] + mRotation[5] * v[2]);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+    }
+
+    /**
+     * Emits the current estimate, unless a real fix arrived within the
+     * interval, the last one is too old, or the estimate did not move away
+     * from it.
+     */
+    @Override
+    public void run() {
+        if (!mStarted) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtimeNanos();
+        mReckoner.propagate(now);
+        if (mReckoner.isActive(now) && now - mReckoner.getAnchorNanos() >= mInterval * 1000000
+                && mReckoner.hasMoved()) {
+            Location estimate = new Location(PROVIDER);
+            estimate.setLatitude(mReckoner.getLatitude());
+            estimate.setLongitude(mReckoner.getLongitude());
+            estimate.setAccuracy((float) mReckoner.getAccuracy());
+            estimate.setSpeed((float) mReckoner.getSpeed());
+            double bearing = mReckoner.getBearing();
+            if (!Double.isNaN(bearing)) {
+                estimate.setBearing((float) bearing);
+            }
+            estimate.setTime(System.currentTimeMillis());
+            estimate.setElapsedRealtimeNanos(now);
+            mListener.onEstimate(estimate);
+        }
+        mHandler.postDelayed(this, mInterval);
+    }
+}
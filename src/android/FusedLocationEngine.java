@@ -0,0 +1,289 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.GoogleApiAvailability;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.LocationSettingsRequest;
+import com.google.android.gms.location.LocationSettingsResult;
+import com.google.android.gms.location.LocationSettingsStatusCodes;
+
+import android.app.Activity;
+import android.app.Dialog;
+import android.content.Context;
+import android.content.DialogInterface;
+import android.content.IntentSender;
+import android.location.Location;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * Engine backed by the Google Play Services fused location provider.
+ */
+public class FusedLocationEngine implements LocationEngine, GoogleApiClient.ConnectionCallbacks,
+        GoogleApiClient.OnConnectionFailedListener, ResultCallback<LocationSettingsResult> {
+
+    protected static final String TAG = FusedLocationHelper.TAG;
+
+    // Reconnection delays after a suspension, doubled on each failed attempt.
+    private static final long RECONNECT_DELAY = 1000;
+    private static final long MAX_RECONNECT_DELAY = 60000;
+
+    private final Activity mActivity;
+    private final Callback mCallback;
+    private final Looper mLooper;
+    private final Handler mHandler;
+
+    protected GoogleApiClient mGoogleApiClient;
+
+    private boolean showingGooglePlayServicesDialog;
+
+    private long mReconnectDelay = RECONNECT_DELAY;
+    private boolean mReconnecting;
+
+    private final Runnable mReconnect = new Runnable() {
+        @Override
+        public void run() {
+            if (mGoogleApiClient != null && !mGoogleApiClient.isConnected()
+                    && !mGoogleApiClient.isConnecting()) {
+                Log.i(TAG, "Reconnecting to Google Play services");
+                mGoogleApiClient.connect();
+            }
+        }
+    };
+
+    private final LocationCallback mSingleUpdateCallback = new LocationCallback() {
+        @Override
+        public void onLocationResult(LocationResult result) {
+            Location location = result.getLastLocation();
+            if (location != null) {
+                mCallback.onSingleLocation(location);
+            }
+        }
+    };
+
+    // Receives whole LocationResult lists, so fixes batched by the provider arrive together.
+    private final LocationCallback mLocationCallback = new LocationCallback() {
+        @Override
+        public void onLocationResult(LocationResult result) {
+            Log.d(TAG, "The location has been updated!");
+            mCallback.onLocations(result.getLocations());
+        }
+    };
+
+    public FusedLocationEngine(Activity activity, Callback callback, Looper looper) {
+        mActivity = activity;
+        mCallback = callback;
+        mLooper = looper;
+        mHandler = new Handler(looper);
+    }
+
+    /**
+     * Whether the fused provider can be used on this device.
+     */
+    public static boolean isAvailable(Context context) {
+        return GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(context)
+                == ConnectionResult.SUCCESS;
+    }
+
+    protected void checkForGooglePlayServices() {
+        GoogleApiAvailability gServicesAvailability = GoogleApiAvailability.getInstance();
+        final int status = gServicesAvailability.isGooglePlayServicesAvailable(mActivity);
+        if (status != ConnectionResult.SUCCESS) {
+
+            Dialog errorDialog = gServicesAvailability
+                    .getErrorDialog(mActivity, status, 10, new DialogInterface.OnCancelListener() {
+
+                        @Override
+                        public void onCancel(DialogInterface dialog) {
+                            mCallback.onConnectionFailed(status, "onCancel called on ErrorDialog. ");
+                        }
+                    });
+            if (errorDialog != null) {
+                errorDialog.show();
+            } else {
+                Log.e(TAG, "checkForGooglePlayServices failed. Error code: " + status);
+                mCallback.onConnectionFailed(status, "checkForGooglePlayServices failed. Error code: " + status);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void connect() {
+        checkForGooglePlayServices();
+        if (mGoogleApiClient == null) {
+            mGoogleApiClient = new GoogleApiClient.Builder(mActivity)
+                    .addConnectionCallbacks(this)
+                    .addOnConnectionFailedListener(this)
+                    .addApi(LocationServices.API)
+                    .setHandler(mHandler)
+                    .build();
+        }
+        mGoogleApiClient.connect();
+    }
+
+    @Override
+    public synchronized void disconnect() {
+        mHandler.removeCallbacks(mReconnect);
+        mReconnecting = false;
+        if (mGoogleApiClient != null) {
+            removeUpdates();
+            removeSingleUpdate();
+            mGoogleApiClient.disconnect();
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return mGoogleApiClient != null && mGoogleApiClient.isConnected();
+    }
+
+    @Override
+    public Location getLastLocation() {
+        if (!isConnected()) {
+            return null;
+        }
+        return LocationServices.FusedLocationApi.getLastLocation(mGoogleApiClient);
+    }
+
+    @Override
+    public void requestUpdates(LocationRequest request) {
+        // Requesting again with the same callback replaces the previous request.
+        LocationServices.FusedLocationApi.requestLocationUpdates(mGoogleApiClient,
+                request, mLocationCallback, mLooper);
+    }
+
+    @Override
+    public void removeUpdates() {
+        if (isConnected()) {
+            LocationServices.FusedLocationApi.removeLocationUpdates(mGoogleApiClient, mLocationCallback);
+        }
+    }
+
+    @Override
+    public void requestSingleUpdate() {
+        LocationRequest request = new LocationRequest();
+        request.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+        request.setInterval(0);
+        request.setFastestInterval(0);
+        request.setNumUpdates(1);
+        LocationServices.FusedLocationApi.requestLocationUpdates(mGoogleApiClient,
+                request, mSingleUpdateCallback, mLooper);
+    }
+
+    @Override
+    public void removeSingleUpdate() {
+        if (isConnected()) {
+            LocationServices.FusedLocationApi.removeLocationUpdates(mGoogleApiClient,
+                    mSingleUpdateCallback);
+        }
+    }
+
+    @Override
+    public void checkLocationSettings(LocationRequest request) {
+        if (!showingGooglePlayServicesDialog) {
+            showingGooglePlayServicesDialog = true;
+            LocationSettingsRequest settingsRequest = new LocationSettingsRequest.Builder()
+                    .addLocationRequest(request)
+                    .build();
+            PendingResult<LocationSettingsResult> result =
+                    LocationServices.SettingsApi.checkLocationSettings(
+                            mGoogleApiClient,
+                            settingsRequest
+                    );
+            result.setResultCallback(this);
+        }
+    }
+
+    @Override
+    public void onResult(LocationSettingsResult locationSettingsResult) {
+        final Status status = locationSettingsResult.getStatus();
+        switch (status.getStatusCode()) {
+            case LocationSettingsStatusCodes.SUCCESS:
+                Log.i(TAG, "All location settings are satisfied.");
+                mCallback.onSettingsResult(null);
+                break;
+            case LocationSettingsStatusCodes.RESOLUTION_REQUIRED:
+                Log.i(TAG, "Location settings are not satisfied. Show the user a dialog to" +
+                        "upgrade location settings ");
+
+                try {
+                    // Show the dialog by calling startResolutionForResult(), and check the result
+                    // in onActivityResult().
+                    status.startResolutionForResult(mActivity, FusedLocationHelper.REQUEST_CHECK_SETTINGS);
+                } catch (IntentSender.SendIntentException e) {
+                    mCallback.onSettingsResult("PendingIntent unable to execute request.");
+                }
+                break;
+            case LocationSettingsStatusCodes.SETTINGS_CHANGE_UNAVAILABLE:
+                mCallback.onSettingsResult("Location settings are inadequate, and cannot be fixed here. "
+                        + "Dialog not created.");
+                break;
+        }
+        showingGooglePlayServicesDialog = false;
+    }
+
+    // region Google Play Services Connection Callbacks
+    @Override
+    public void onConnected(Bundle connectionHint) {
+        mHandler.removeCallbacks(mReconnect);
+        mReconnecting = false;
+        mReconnectDelay = RECONNECT_DELAY;
+        mCallback.onConnected();
+    }
+
+    @Override
+    public void onConnectionFailed(ConnectionResult result) {
+        if (mReconnecting) {
+            // Play Services worked before the suspension, keep trying rather than give up.
+            scheduleReconnect();
+            return;
+        }
+        mCallback.onConnectionFailed(result.getErrorCode(),
+                "onConnectionFailed. Error code: " + result.getErrorCode());
+    }
+
+    @Override
+    public void onConnectionSuspended(int cause) {
+        // The connection to Google Play services was lost for some reason, try to re-establish
+        // it with an exponential backoff.
+        Log.w(TAG, "Connection to Google Play services suspended, cause: " + cause);
+        mReconnecting = true;
+        scheduleReconnect();
+        mCallback.onConnectionSuspended(cause);
+    }
+
+    private void scheduleReconnect() {
+        mHandler.removeCallbacks(mReconnect);
+        mHandler.postDelayed(mReconnect, mReconnectDelay);
+        mReconnectDelay = Math.min(mReconnectDelay * 2, MAX_RECONNECT_DELAY);
+    }
+
+    // endregion
+}
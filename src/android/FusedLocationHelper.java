@@ -1,33 +1,31 @@
 package fr.louisbl.cordova.gpslocation;
 
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.GoogleApiAvailability;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.PendingResult;
-import com.google.android.gms.common.api.ResultCallback;
-import com.google.android.gms.common.api.Status;
-import com.google.android.gms.location.LocationListener;
 import com.google.android.gms.location.LocationRequest;
-import com.google.android.gms.location.LocationServices;
-import com.google.android.gms.location.LocationSettingsRequest;
-import com.google.android.gms.location.LocationSettingsResult;
-import com.google.android.gms.location.LocationSettingsStatusCodes;
 
 import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 import android.app.Activity;
-import android.app.Dialog;
-import android.content.DialogInterface;
-import android.content.IntentSender;
 import android.location.Location;
-import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-public class FusedLocationHelper extends Activity implements GoogleApiClient.ConnectionCallbacks,
-        GoogleApiClient.OnConnectionFailedListener, ResultCallback<LocationSettingsResult>,
-        LocationListener {
+/**
+ * Dispatches fixes from the selected LocationEngine to the watches, pending
+ * getCurrentPosition calls and native consumers.
+ */
+public class FusedLocationHelper extends Activity implements LocationEngine.Callback,
+        DeadReckoningSensors.Listener {
 
     public static int PERMISSION_DENIED = 1;
     public static int POSITION_UNAVAILABLE = 2;
@@ -36,236 +34,1087 @@ public class FusedLocationHelper extends Activity implements GoogleApiClient.Con
     protected static final int REQUEST_CHECK_SETTINGS = 0x1;
     protected static final String TAG = "fusedlocation-plugin";
 
+    // Values of the GPSLocationEngine preference.
+    public static final String ENGINE_AUTO = "auto";
+    public static final String ENGINE_FUSED = "fused";
+    public static final String ENGINE_MANAGER = "manager";
+    public static final String ENGINE_REPLAY = "replay";
+
+    // Internal watch feeding the acquisitions, and their deadline when the call sets none.
+    protected static final String ACQUIRE_WATCH_ID = "acquire";
+    public static final long DEFAULT_ACQUIRE_TIMEOUT = 30000;
+
+    // Longest wait in milliseconds for the engine to connect before queued calls fail.
+    public static final long CONNECT_TIMEOUT = 10000;
+
+    // Internal watch keeping the subscription alive in background mode, it has no callback.
+    protected static final String BACKGROUND_WATCH_ID = "background";
+
     protected Activity mActivity = null;
     private CordovaGPSLocation mPlugin;
+    private TimeoutScheduler mTimeoutScheduler;
+    // Location and connection callbacks run on this looper, off the UI thread.
+    private Looper mLooper;
+    private Handler mHandler;
+
+    private volatile LocationEngine mEngine;
+    // Engine chosen from the GPSLocationEngine preference, restored after a replay.
+    private final String mEngineName;
+    // Whether a failing fused engine may be replaced by the LocationManager one.
+    private final boolean mEngineFallback;
 
-    protected GoogleApiClient mGoogleApiClient;
-    protected LocationSettingsRequest mLocationSettingsRequest;
     protected LocationRequest mLocationRequest;
 
-    private boolean showingGooglePlayServicesDialog;
+    // The call that asked for the location settings check, answered once it is resolved.
+    private volatile CallbackContext mSettingsCallbackContext;
 
-    public HashMap<String, CallbackContext> watches = new HashMap<String, CallbackContext>();
+    private boolean mUpdatesRequested;
 
+    public final WatchRegistry watches = new WatchRegistry();
 
-    public FusedLocationHelper(Activity activity, CordovaGPSLocation plugin) {
-        mActivity = activity;
-        mPlugin = plugin;
+    public final LocationPipeline pipeline = new LocationPipeline();
 
-        setupLocationFetching();
-    }
+    public final LocationStats stats = new LocationStats();
 
-    protected void checkForGooglePlayServices() {
-        GoogleApiAvailability gServicesAvailability = GoogleApiAvailability.getInstance();
-        final int status = gServicesAvailability.isGooglePlayServicesAvailable(mActivity);
-        if (status != ConnectionResult.SUCCESS) {
+    // Native components fed with every processed fix, such as the track recorder.
+    public final List<LocationConsumer> consumers = new CopyOnWriteArrayList<LocationConsumer>();
 
-            Dialog errorDialog = gServicesAvailability
-                    .getErrorDialog(mActivity, status, 10, new DialogInterface.OnCancelListener() {
+    // Picks interval and priority for watches created with the adaptive option.
+    private final AdaptiveSampler mSampler = new AdaptiveSampler();
 
-                        @Override
-                        public void onCancel(DialogInterface dialog) {
-                            mPlugin.fail(status, "onCancel called on ErrorDialog. ");
-                        }
-                    });
-            if (errorDialog != null) {
-                errorDialog.show();
-            } else {
-                mPlugin.fail(status, "checkForGooglePlayServices failed. Error code: " + status);
+    // Set while background mode is on, holds the fixes no JavaScript listener can receive.
+    private volatile LocationBuffer mBackgroundBuffer;
+    private volatile boolean mPaused;
+
+    // Running while a watch asked for dead reckoning, only touched on the location thread.
+    private DeadReckoningSensors mDeadReckoning;
+
+    // Most recent fix seen by the plugin, aged with elapsed realtime.
+    private volatile Location mLastLocation;
+    // getCurrentPosition calls waiting on the same fresh fix.
+    private final List<PendingLocationRequest> mPendingLocationRequests = new ArrayList<PendingLocationRequest>();
+    // getCurrentPosition calls waiting for a fix accurate enough, see acquireLocation.
+    private final List<Acquisition> mAcquisitions = new ArrayList<Acquisition>();
+    // getCurrentPosition calls made before the engine connected, replayed from onConnected.
+    private final List<QueuedLocationRequest> mQueuedLocationRequests = new ArrayList<QueuedLocationRequest>();
+
+    // Elapsed realtime when a fix was first asked for with none delivered yet, 0 once answered.
+    private long mFixRequestedAt;
+    private volatile long mTimeToFirstFix = -1;
+
+    // Reports watches still waiting for the engine to connect after CONNECT_TIMEOUT.
+    private final Runnable mConnectTimeout = new Runnable() {
+        @Override
+        public void run() {
+            if (!mEngine.isConnected()) {
+                for (LocationWatch watch : watches.snapshot()) {
+                    mPlugin.fail(POSITION_UNAVAILABLE, "Location engine not connected yet",
+                            watch.callbackContext, true);
+                }
             }
         }
-    }
+    };
+
+    public FusedLocationHelper(Activity activity, CordovaGPSLocation plugin,
+            TimeoutScheduler timeoutScheduler, Looper looper, String engine) {
+        mActivity = activity;
+        mPlugin = plugin;
+        mTimeoutScheduler = timeoutScheduler;
+        mLooper = looper;
+        mHandler = new Handler(looper);
+
+        mEngineName = engine;
+        mEngineFallback = !ENGINE_FUSED.equals(engine);
+        mEngine = createEngine(engine);
+        Log.i(TAG, "Using " + mEngine.getClass().getSimpleName());
 
-    protected void setupLocationFetching() {
-        checkForGooglePlayServices();
-        buildGoogleApiClient();
         createLocationRequest();
-        buildLocationSettingsRequest();
-        connectGoogleApiClient();
+        mEngine.connect();
     }
 
-    protected synchronized void buildGoogleApiClient() {
-        mGoogleApiClient = new GoogleApiClient.Builder(mActivity)
-                .addConnectionCallbacks(this)
-                .addOnConnectionFailedListener(this)
-                .addApi(LocationServices.API)
-                .build();
+    private LocationEngine createEngine(String engine) {
+        boolean fused = ENGINE_FUSED.equals(engine)
+                || (!ENGINE_MANAGER.equals(engine) && FusedLocationEngine.isAvailable(mActivity));
+        return fused ? new FusedLocationEngine(mActivity, this, mLooper)
+                : new LocationManagerEngine(mActivity, this, mLooper, TAG);
     }
 
-    protected void createLocationRequest() {
-        mLocationRequest = new LocationRequest();
-        mLocationRequest.setInterval(5000);
-        mLocationRequest.setFastestInterval(5000);
-        mLocationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+    /**
+     * Swaps the source of fixes. Watches and pending calls are kept, the
+     * running request moves over to the new engine once it connects. The
+     * pipeline is reset on the location thread, between two fixes, since its
+     * stages are not thread safe.
+     */
+    public synchronized void setEngine(LocationEngine engine) {
+        mEngine.disconnect();
+        mUpdatesRequested = false;
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                pipeline.reset();
+            }
+        });
+        mEngine = engine;
+        Log.i(TAG, "Using " + engine.getClass().getSimpleName());
+        engine.connect();
     }
 
-    protected void buildLocationSettingsRequest() {
-        LocationSettingsRequest.Builder builder = new LocationSettingsRequest.Builder();
-        builder.addLocationRequest(mLocationRequest);
-        mLocationSettingsRequest = builder.build();
+    /**
+     * Replays a recorded trace instead of the device location, until stopReplay.
+     */
+    public void startReplay(LocationTrace trace, double speed, boolean loop) {
+        setEngine(new TraceReplayEngine(this, mLooper, trace, speed, loop));
     }
 
-    private void connectGoogleApiClient() {
-        mGoogleApiClient.connect();
+    public void stopReplay() {
+        if (mEngine instanceof TraceReplayEngine) {
+            setEngine(createEngine(mEngineName));
+        }
     }
 
-    // region Watches
+    public void destroy() {
+        mEngine.disconnect();
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mDeadReckoning != null) {
+                    mDeadReckoning.stop();
+                }
+            }
+        });
+    }
+
+    /**
+     * Builds the cheapest single request satisfying every active watch: the
+     * shortest interval, the most accurate priority and the smallest
+     * displacement any of them asked for. Provider batching is only used when
+     * every watch is batched, since one immediate watch needs every fix.
+     */
+    protected synchronized void createLocationRequest() {
+        long interval = LocationWatch.DEFAULT_INTERVAL;
+        long fastestInterval = LocationWatch.DEFAULT_INTERVAL;
+        int priority = LocationWatch.DEFAULT_PRIORITY;
+        float smallestDisplacement = 0;
+        long maxWaitTime = 0;
+
+        if (watches.size() > 0) {
+            interval = Long.MAX_VALUE;
+            fastestInterval = Long.MAX_VALUE;
+            priority = LocationRequest.PRIORITY_NO_POWER;
+            smallestDisplacement = Float.MAX_VALUE;
+            maxWaitTime = Long.MAX_VALUE;
+            for (LocationWatch watch : watches.snapshot()) {
+                if (watch.adaptive) {
+                    interval = Math.min(interval, mSampler.getInterval());
+                    fastestInterval = Math.min(fastestInterval, mSampler.getInterval());
+                    priority = Math.min(priority, mSampler.getPriority());
+                } else {
+                    interval = Math.min(interval, watch.interval);
+                    fastestInterval = Math.min(fastestInterval, watch.fastestInterval);
+                    // Priority constants grow as accuracy drops, the smallest one wins.
+                    priority = Math.min(priority, watch.priority);
+                }
+                smallestDisplacement = Math.min(smallestDisplacement, watch.smallestDisplacement);
+                maxWaitTime = Math.min(maxWaitTime, watch.batchInterval);
+            }
+        }
 
-    public void addWatch(String timerId, CallbackContext callbackContext) {
-        watches.put(timerId, callbackContext);
+        mLocationRequest = new LocationRequest();
+        mLocationRequest.setInterval(interval);
+        mLocationRequest.setFastestInterval(fastestInterval);
+        mLocationRequest.setPriority(priority);
+        mLocationRequest.setSmallestDisplacement(smallestDisplacement);
+        mLocationRequest.setMaxWaitTime(maxWaitTime);
+    }
 
+    /**
+     * Recomputes the merged request after the set of watches changed, and
+     * (re-)registers with the fused provider unless the running request is
+     * already the same.
+     */
+    protected synchronized void updateLocationRequest() {
+        LocationRequest previous = mLocationRequest;
+        createLocationRequest();
+        if (mUpdatesRequested && mLocationRequest.equals(previous)) {
+            mLocationRequest = previous;
+            return;
+        }
         if (watches.size() > 0) {
             scheduleLocationUpdates();
         }
     }
 
+    // region Watches
+
+    public void addWatch(String timerId, CallbackContext callbackContext, JSONObject options) {
+        markFixRequested();
+        LocationWatch watch = new LocationWatch(timerId, callbackContext, options);
+        watch.timeoutTask = new WatchTimeout(watch);
+        watch.flushTask = new BatchFlush(watch);
+        LocationWatch previous = watches.put(watch);
+        if (previous != null) {
+            mTimeoutScheduler.cancel(previous.timeoutTask);
+            flushBatch(previous);
+        }
+        if (watch.timeout > 0) {
+            mTimeoutScheduler.schedule(watch.timeoutTask, watch.timeout);
+        }
+
+        updateLocationRequest();
+        postBackgroundFlush();
+        mHandler.post(mDeadReckoningUpdate);
+    }
+
     public void clearWatch(String timerId) {
-        if (watches.containsKey(timerId)) {
-            watches.remove(timerId);
+        LocationWatch watch = watches.remove(timerId);
+        if (watch != null) {
+            mTimeoutScheduler.cancel(watch.timeoutTask);
+            // The fixes already batched were delivered to the watch, they are sent rather than lost.
+            flushBatch(watch);
         }
         if (watches.size() == 0) {
             stopLocationUpdates();
+        } else {
+            updateLocationRequest();
+        }
+        mHandler.post(mDeadReckoningUpdate);
+    }
+
+    /**
+     * Clears the watches registered from JavaScript, the background watch
+     * keeps running.
+     */
+    public void clearJavaScriptWatches() {
+        for (LocationWatch watch : watches.snapshot()) {
+            if (watch.callbackContext != null) {
+                clearWatch(watch.id);
+            }
         }
     }
     // endregion
 
+    // region Background mode
+
+    /**
+     * Keeps a location subscription with the given watch options alive, even
+     * without any JavaScript watch. Fixes arriving while no listener can
+     * receive them are buffered, up to bufferSize fixes.
+     */
+    public void startBackgroundMode(JSONObject options) {
+        if (mBackgroundBuffer == null) {
+            mBackgroundBuffer = new LocationBuffer(options == null ? LocationBuffer.DEFAULT_CAPACITY
+                    : options.optInt("bufferSize", LocationBuffer.DEFAULT_CAPACITY));
+        }
+        addWatch(BACKGROUND_WATCH_ID, null, options);
+    }
+
+    public void stopBackgroundMode() {
+        flushBackgroundBuffer();
+        mBackgroundBuffer = null;
+        clearWatch(BACKGROUND_WATCH_ID);
+    }
+
+    public boolean isBackgroundMode() {
+        return mBackgroundBuffer != null;
+    }
+
+    public void setPaused(boolean paused) {
+        mPaused = paused;
+        if (!paused) {
+            postBackgroundFlush();
+        }
+    }
+
+    private boolean isListening() {
+        if (mPaused) {
+            return false;
+        }
+        for (LocationWatch watch : watches.snapshot()) {
+            if (watch.callbackContext != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Flushes on the location thread, so buffered fixes reach JavaScript before newer ones.
+    private void postBackgroundFlush() {
+        LocationBuffer buffer = mBackgroundBuffer;
+        if (buffer != null && !buffer.isEmpty()) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    flushBackgroundBuffer();
+                }
+            });
+        }
+    }
+
+    /**
+     * Sends every buffered fix to each JavaScript watch as one batch. The
+     * records go with a second, true part, so JavaScript handles even a single
+     * buffered fix as a batch: it bypassed the delivery policy and must not be
+     * acknowledged.
+     */
+    private void flushBackgroundBuffer() {
+        LocationBuffer buffer = mBackgroundBuffer;
+        if (buffer == null || buffer.isEmpty() || !isListening()) {
+            return;
+        }
+        PluginResult result = new PluginResult(PluginResult.Status.OK, Arrays.asList(
+                new PluginResult(PluginResult.Status.OK, buffer.drain()),
+                new PluginResult(PluginResult.Status.OK, true)));
+        result.setKeepCallback(true);
+        for (LocationWatch watch : watches.snapshot()) {
+            if (watch.callbackContext != null) {
+                watch.callbackContext.sendPluginResult(result);
+            }
+        }
+    }
+
+    // endregion
+
+    // region Dead reckoning
+
+    // Matches the sensors to the watches: the shortest estimate interval asked, or stopped if none asks.
+    private final Runnable mDeadReckoningUpdate = new Runnable() {
+        @Override
+        public void run() {
+            long interval = Long.MAX_VALUE;
+            for (LocationWatch watch : watches.snapshot()) {
+                if (watch.deadReckoning) {
+                    interval = Math.min(interval, watch.estimateInterval);
+                }
+            }
+            if (interval == Long.MAX_VALUE) {
+                if (mDeadReckoning != null) {
+                    consumers.remove(mDeadReckoning);
+                    mDeadReckoning.stop();
+                    mDeadReckoning = null;
+                }
+                return;
+            }
+            if (mDeadReckoning == null) {
+                mDeadReckoning = new DeadReckoningSensors(mActivity, mHandler, FusedLocationHelper.this);
+                consumers.add(mDeadReckoning);
+            }
+            mDeadReckoning.start(interval);
+        }
+    };
+
+    /**
+     * Sends an estimate to the watches that asked for dead reckoning. It goes
+     * through their delivery policy but not their gates, so estimates never
+     * hold back a real fix, and it is neither buffered nor seen by consumers.
+     * Estimates are counted apart, the delivered count and rate stay those of
+     * real fixes.
+     */
+    @Override
+    public void onEstimate(Location estimate) {
+        if (!isListening()) {
+            return;
+        }
+        LocationPayload payload = null;
+        for (LocationWatch watch : watches.snapshot()) {
+            if (!watch.deadReckoning || watch.callbackContext == null) {
+                continue;
+            }
+            if (payload == null) {
+                payload = new LocationPayload(estimate);
+            }
+            watch.estimatedCount++;
+            deliver(watch, payload);
+        }
+    }
+
+    // endregion
+
     // region Plugin communication
     protected void fail(int code, String message) {
 
         if (watches.size() == 0) {
-            stopLocationUpdates();
+            stopUpdatesIfIdle();
+        }
+
+        for (PendingLocationRequest pending : takePendingLocationRequests()) {
+            mTimeoutScheduler.cancel(pending);
+            mPlugin.fail(code, message, pending.callbackContext, false);
+        }
+
+        List<QueuedLocationRequest> queued = takeQueuedLocationRequests();
+        for (QueuedLocationRequest request : queued) {
+            mTimeoutScheduler.cancel(request);
+            mPlugin.fail(code, message, request.callbackContext, false);
+        }
+
+        for (LocationWatch watch : watches.snapshot()) {
+            mPlugin.fail(code, message, watch.callbackContext, true);
+        }
+    }
+
+    /**
+     * Fails and forgets every getCurrentPosition call still waiting, for a
+     * page being unloaded. The acquisition watch is removed with them, so
+     * the next acquisition starts a fresh one.
+     */
+    public void cancelLocationRequests(int code, String message) {
+        List<PendingLocationRequest> pendings = takePendingLocationRequests();
+        if (!pendings.isEmpty()) {
+            stopSingleUpdate();
+        }
+        for (PendingLocationRequest pending : pendings) {
+            mTimeoutScheduler.cancel(pending);
+            mPlugin.fail(code, message, pending.callbackContext, false);
         }
 
-        for (CallbackContext callbackContext : watches.values()) {
-            mPlugin.fail(code, message, callbackContext, true);
+        for (QueuedLocationRequest request : takeQueuedLocationRequests()) {
+            mTimeoutScheduler.cancel(request);
+            mPlugin.fail(code, message, request.callbackContext, false);
+        }
+
+        List<Acquisition> acquisitions;
+        synchronized (mAcquisitions) {
+            acquisitions = new ArrayList<Acquisition>(mAcquisitions);
+            mAcquisitions.clear();
+            if (!acquisitions.isEmpty()) {
+                clearWatch(ACQUIRE_WATCH_ID);
+            }
+        }
+        for (Acquisition acquisition : acquisitions) {
+            mTimeoutScheduler.cancel(acquisition);
+            mPlugin.fail(code, message, acquisition.callbackContext, false);
         }
     }
 
     protected void win(Location loc) {
+        win(Collections.singletonList(loc));
+    }
+
+    protected void win(List<Location> locations) {
+        mLastLocation = locations.get(locations.size() - 1);
+        markFixReceived();
+        deliverPendingLocation(mLastLocation);
+        feedAcquisitions(locations);
 
         if (watches.size() == 0) {
-            stopLocationUpdates();
+            stopUpdatesIfIdle();
+        }
+
+        updateSampler(locations);
+
+        for (LocationConsumer consumer : consumers) {
+            for (Location location : locations) {
+                consumer.onLocation(location);
+            }
+        }
+
+        LocationBuffer buffer = mBackgroundBuffer;
+        if (buffer != null && !isListening()) {
+            for (Location location : locations) {
+                buffer.add(location);
+            }
+            return;
+        }
+
+        // Serialize each fix once, every watch shares the resulting payloads.
+        LocationPayload[] payloads = new LocationPayload[locations.size()];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = new LocationPayload(locations.get(i));
+        }
+
+        for (Location location : locations) {
+            stats.fixAge.record(LocationUtils.getAgeMillis(location));
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        for (LocationWatch watch : watches.snapshot()) {
+            if (watch.timeout > 0) {
+                mTimeoutScheduler.schedule(watch.timeoutTask, watch.timeout);
+            }
+            for (LocationPayload payload : payloads) {
+                if (!watch.accepts(payload.location)) {
+                    watch.filteredCount++;
+                    continue;
+                }
+                watch.delivered(payload.location);
+                watch.deliveredCount++;
+                if (watch.batchInterval > 0) {
+                    addToBatch(watch, payload, now);
+                } else {
+                    deliver(watch, payload);
+                }
+            }
+            if (watch.isBatchDue(now)) {
+                flushBatch(watch);
+            }
+        }
+    }
+
+    private void addToBatch(LocationWatch watch, LocationPayload payload, long now) {
+        synchronized (watch) {
+            if (watch.batch.isEmpty()) {
+                watch.batchStartedAt = now;
+                mTimeoutScheduler.schedule(watch.flushTask, watch.batchInterval);
+            }
+            watch.batch.add(payload);
+        }
+    }
+
+    // Called from the location thread, and from clearWatch on the caller's thread.
+    private void flushBatch(LocationWatch watch) {
+        synchronized (watch) {
+            mTimeoutScheduler.cancel(watch.flushTask);
+            if (watch.batch.isEmpty()) {
+                return;
+            }
+            mPlugin.win(watch.batch, watch.callbackContext, watch.compact);
+            watch.batch.clear();
         }
+    }
 
-        for (CallbackContext callbackContext : watches.values()) {
-            mPlugin.win(loc, callbackContext, true);
+    private void deliver(LocationWatch watch, LocationPayload payload) {
+        synchronized (watch) {
+            if (watch.offer(payload, stats) != null) {
+                mPlugin.win(payload, watch.callbackContext, watch.compact);
+            }
+        }
+    }
+
+    /**
+     * JavaScript processed count results of a watch, queued fixes may be sent.
+     */
+    public void acknowledge(String id, int count) {
+        LocationWatch watch = watches.get(id);
+        if (watch == null) {
+            return;
+        }
+        synchronized (watch) {
+            for (LocationPayload payload : watch.acknowledge(count)) {
+                mPlugin.win(payload, watch.callbackContext, watch.compact);
+            }
         }
     }
 
     // endregion
 
+    private void updateSampler(List<Location> locations) {
+        boolean adaptive = false;
+        for (LocationWatch watch : watches.snapshot()) {
+            adaptive |= watch.adaptive;
+        }
+        if (!adaptive) {
+            return;
+        }
+        boolean changed = false;
+        for (Location location : locations) {
+            changed |= mSampler.update(location);
+        }
+        if (changed) {
+            Log.d(TAG, "Adaptive sampling moved to tier " + mSampler.getTier());
+            updateLocationRequest();
+        }
+    }
 
-    public void scheduleLocationUpdates() {
-        if (mGoogleApiClient.isConnected()) {
-            LocationServices.FusedLocationApi
-                    .requestLocationUpdates(mGoogleApiClient, mLocationRequest, this);
+    public synchronized void scheduleLocationUpdates() {
+        if (mEngine.isConnected()) {
+            mEngine.requestUpdates(mLocationRequest);
+            mUpdatesRequested = true;
         } else {
-            mPlugin.fail(0, "Can't schedule location updates, not connected yet", mPlugin.context, true);
+            // onConnected schedules the updates, watches only hear about it past the deadline.
+            mTimeoutScheduler.schedule(mConnectTimeout, CONNECT_TIMEOUT);
+        }
+    }
+
+    public synchronized void stopLocationUpdates() {
+        for (LocationWatch watch : watches.clear()) {
+            mTimeoutScheduler.cancel(watch.timeoutTask);
+            mTimeoutScheduler.cancel(watch.flushTask);
         }
+        removeLocationUpdates();
     }
 
-    public void stopLocationUpdates() {
-        watches.clear();
-        if (mGoogleApiClient.isConnected()) {
-            LocationServices.FusedLocationApi.removeLocationUpdates(mGoogleApiClient, this);
+    // Rechecked under the lock, a watch may have been added since the caller looked.
+    private synchronized void stopUpdatesIfIdle() {
+        if (watches.size() == 0 && mUpdatesRequested) {
+            removeLocationUpdates();
         }
     }
 
+    private void removeLocationUpdates() {
+        mUpdatesRequested = false;
+        mSampler.reset();
+        createLocationRequest();
+        mEngine.removeUpdates();
+    }
+
     public void getLastAvailableLocation(CallbackContext context) {
-        Location lastLocation;
-        if (mGoogleApiClient.isConnected()) {
-            lastLocation = LocationServices.FusedLocationApi.getLastLocation(mGoogleApiClient);
-            if (lastLocation != null) {
-                mPlugin.win(lastLocation, context, false);
+        getLocation(Long.MAX_VALUE, 0, context);
+    }
+
+    /**
+     * Answers a getCurrentPosition call. A cached fix younger than maximumAge
+     * is returned at once, otherwise the call joins the pending requests,
+     * which all share a single native request for a fresh fix. A positive
+     * timeout gives the call its own deadline.
+     */
+    public void getLocation(long maximumAge, long timeout, CallbackContext context) {
+        synchronized (mQueuedLocationRequests) {
+            if (!mEngine.isConnected()) {
+                QueuedLocationRequest queued = new QueuedLocationRequest(maximumAge, timeout, context);
+                mQueuedLocationRequests.add(queued);
+                mTimeoutScheduler.schedule(queued, queued.getDeadline());
+                markFixRequested();
+                return;
+            }
+        }
+
+        Location lastLocation = mEngine.getLastLocation();
+        if (lastLocation != null && (mLastLocation == null
+                || lastLocation.getElapsedRealtimeNanos() > mLastLocation.getElapsedRealtimeNanos())) {
+            mLastLocation = lastLocation;
+        }
+        if (mLastLocation != null && LocationUtils.getAgeMillis(mLastLocation) <= maximumAge) {
+            mPlugin.win(mLastLocation, context, false);
+            return;
+        }
+
+        PendingLocationRequest pending = new PendingLocationRequest(context);
+        boolean first;
+        synchronized (mPendingLocationRequests) {
+            mPendingLocationRequests.add(pending);
+            first = mPendingLocationRequests.size() == 1;
+        }
+        if (timeout > 0) {
+            mTimeoutScheduler.schedule(pending, timeout);
+        }
+        if (first) {
+            markFixRequested();
+            mEngine.requestSingleUpdate();
+        }
+    }
+
+    private synchronized void markFixRequested() {
+        if (mFixRequestedAt == 0 && mTimeToFirstFix < 0) {
+            mFixRequestedAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    private synchronized void markFixReceived() {
+        if (mFixRequestedAt != 0) {
+            mTimeToFirstFix = SystemClock.elapsedRealtime() - mFixRequestedAt;
+            mFixRequestedAt = 0;
+            Log.i(TAG, "Time to first fix: " + mTimeToFirstFix + "ms");
+        }
+    }
+
+    /**
+     * Milliseconds from the first request for a fix to the first fix
+     * received, -1 until it is known.
+     */
+    public long getTimeToFirstFix() {
+        return mTimeToFirstFix;
+    }
+
+    /**
+     * The runtime counters, with the engine in use, the time to first fix and
+     * what the background buffer had to drop.
+     */
+    public JSONObject getStats() throws JSONException {
+        JSONObject o = stats.toJSON(watches.snapshot());
+        LocationEngine engine = mEngine;
+        o.put("engine", engine instanceof FusedLocationEngine ? ENGINE_FUSED
+                : engine instanceof TraceReplayEngine ? ENGINE_REPLAY : ENGINE_MANAGER);
+        o.put("timeToFirstFix", mTimeToFirstFix);
+        LocationBuffer buffer = mBackgroundBuffer;
+        o.put("bufferDropped", buffer == null ? 0 : buffer.getDropped());
+        return o;
+    }
+
+    /**
+     * Answers a getCurrentPosition call asking for a desired accuracy. A
+     * short-lived high accuracy request runs until a fix is accurate enough,
+     * or until the deadline, when the most accurate fix seen is returned. It
+     * only fails if no fix came at all.
+     */
+    public void acquireLocation(long maximumAge, long timeout, float desiredAccuracy,
+            CallbackContext context) {
+        Acquisition acquisition = new Acquisition(desiredAccuracy, context);
+        Location cached = mLastLocation;
+        if (cached != null && LocationUtils.getAgeMillis(cached) <= maximumAge) {
+            acquisition.offer(cached);
+            if (acquisition.isSatisfied()) {
+                mPlugin.win(cached, context, false);
+                return;
+            }
+        }
+
+        markFixRequested();
+        // The watch follows the list under its lock, so it never outlives or misses an acquisition.
+        synchronized (mAcquisitions) {
+            mAcquisitions.add(acquisition);
+            if (mAcquisitions.size() == 1) {
+                JSONObject options = new JSONObject();
+                try {
+                    options.put("interval", 1000);
+                    options.put("priority", LocationRequest.PRIORITY_HIGH_ACCURACY);
+                } catch (JSONException e) {
+                    // Constant keys and values, cannot happen.
+                }
+                addWatch(ACQUIRE_WATCH_ID, null, options);
+            }
+        }
+        mTimeoutScheduler.schedule(acquisition, timeout > 0 ? timeout : DEFAULT_ACQUIRE_TIMEOUT);
+    }
+
+    private void feedAcquisitions(List<Location> locations) {
+        List<Acquisition> done = null;
+        synchronized (mAcquisitions) {
+            if (mAcquisitions.isEmpty()) {
+                return;
+            }
+            for (int i = mAcquisitions.size() - 1; i >= 0; i--) {
+                Acquisition acquisition = mAcquisitions.get(i);
+                for (Location location : locations) {
+                    acquisition.offer(location);
+                }
+                if (acquisition.isSatisfied()) {
+                    mAcquisitions.remove(i);
+                    if (done == null) {
+                        done = new ArrayList<Acquisition>();
+                    }
+                    done.add(acquisition);
+                }
+            }
+            if (done != null && mAcquisitions.isEmpty()) {
+                clearWatch(ACQUIRE_WATCH_ID);
+            }
+        }
+        if (done == null) {
+            return;
+        }
+        for (Acquisition acquisition : done) {
+            mTimeoutScheduler.cancel(acquisition);
+            mPlugin.win(acquisition.best, acquisition.callbackContext, false);
+        }
+    }
+
+    private void deliverPendingLocation(Location location) {
+        List<PendingLocationRequest> pendings = takePendingLocationRequests();
+        if (pendings.isEmpty()) {
+            return;
+        }
+        stopSingleUpdate();
+        LocationPayload payload = new LocationPayload(location);
+        for (PendingLocationRequest pending : pendings) {
+            mTimeoutScheduler.cancel(pending);
+            mPlugin.win(payload, pending.callbackContext);
+        }
+    }
+
+    private List<PendingLocationRequest> takePendingLocationRequests() {
+        synchronized (mPendingLocationRequests) {
+            if (mPendingLocationRequests.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<PendingLocationRequest> pendings =
+                    new ArrayList<PendingLocationRequest>(mPendingLocationRequests);
+            mPendingLocationRequests.clear();
+            return pendings;
+        }
+    }
+
+    private List<QueuedLocationRequest> takeQueuedLocationRequests() {
+        synchronized (mQueuedLocationRequests) {
+            List<QueuedLocationRequest> queued =
+                    new ArrayList<QueuedLocationRequest>(mQueuedLocationRequests);
+            mQueuedLocationRequests.clear();
+            return queued;
+        }
+    }
+
+    private void stopSingleUpdate() {
+        mEngine.removeSingleUpdate();
+    }
+
+    /**
+     * A getCurrentPosition call waiting for a fix. Runs when its deadline expires.
+     */
+    private class PendingLocationRequest implements Runnable {
+
+        final CallbackContext callbackContext;
+
+        PendingLocationRequest(CallbackContext callbackContext) {
+            this.callbackContext = callbackContext;
+        }
+
+        @Override
+        public void run() {
+            boolean removed;
+            boolean empty;
+            synchronized (mPendingLocationRequests) {
+                removed = mPendingLocationRequests.remove(this);
+                empty = mPendingLocationRequests.isEmpty();
+            }
+            if (removed) {
+                stats.recordTimeout();
+                mPlugin.fail(TIMEOUT, "Position retrieval timed out.", callbackContext, false);
+                if (empty) {
+                    stopSingleUpdate();
+                }
+            }
+        }
+    }
+
+    /**
+     * A getCurrentPosition call keeping the most accurate fix seen until one
+     * meets its desired accuracy. Runs when its deadline expires.
+     */
+    private class Acquisition implements Runnable {
+
+        final float desiredAccuracy;
+        final CallbackContext callbackContext;
+        Location best;
+
+        Acquisition(float desiredAccuracy, CallbackContext callbackContext) {
+            this.desiredAccuracy = desiredAccuracy;
+            this.callbackContext = callbackContext;
+        }
+
+        void offer(Location location) {
+            if (best == null || (location.hasAccuracy()
+                    && (!best.hasAccuracy() || location.getAccuracy() <= best.getAccuracy()))) {
+                best = location;
+            }
+        }
+
+        boolean isSatisfied() {
+            return best != null && best.hasAccuracy() && best.getAccuracy() <= desiredAccuracy;
+        }
+
+        @Override
+        public void run() {
+            synchronized (mAcquisitions) {
+                if (!mAcquisitions.remove(this)) {
+                    return;
+                }
+                if (mAcquisitions.isEmpty()) {
+                    clearWatch(ACQUIRE_WATCH_ID);
+                }
+            }
+            if (best != null) {
+                mPlugin.win(best, callbackContext, false);
             } else {
-                fail(POSITION_UNAVAILABLE, "Google client connected, but no location available");
+                stats.recordTimeout();
+                mPlugin.fail(TIMEOUT, "Position retrieval timed out.", callbackContext, false);
             }
+        }
+    }
 
-        } else {
-            mPlugin.fail(0, "No location available");
+    /**
+     * A getCurrentPosition call waiting for the engine to connect. Runs when
+     * its deadline expires: its own timeout, bounded by CONNECT_TIMEOUT.
+     */
+    private class QueuedLocationRequest implements Runnable {
+
+        final long maximumAge;
+        final long timeout;
+        final CallbackContext callbackContext;
+        final long queuedAt = SystemClock.elapsedRealtime();
+
+        QueuedLocationRequest(long maximumAge, long timeout, CallbackContext callbackContext) {
+            this.maximumAge = maximumAge;
+            this.timeout = timeout;
+            this.callbackContext = callbackContext;
+        }
+
+        long getDeadline() {
+            return timeout > 0 ? Math.min(timeout, CONNECT_TIMEOUT) : CONNECT_TIMEOUT;
+        }
+
+        /**
+         * Runs the call now connected, with what is left of its timeout.
+         */
+        void replay() {
+            mTimeoutScheduler.cancel(this);
+            long remaining = timeout > 0
+                    ? Math.max(1, timeout - (SystemClock.elapsedRealtime() - queuedAt)) : 0;
+            getLocation(maximumAge, remaining, callbackContext);
+        }
+
+        @Override
+        public void run() {
+            boolean removed;
+            synchronized (mQueuedLocationRequests) {
+                removed = mQueuedLocationRequests.remove(this);
+            }
+            if (!removed) {
+                return;
+            }
+            if (timeout > 0 && timeout <= CONNECT_TIMEOUT) {
+                stats.recordTimeout();
+                mPlugin.fail(TIMEOUT, "Position retrieval timed out.", callbackContext, false);
+            } else {
+                mPlugin.fail(POSITION_UNAVAILABLE, "No location available", callbackContext, false);
+            }
+        }
+    }
+
+    /**
+     * Reports a TIMEOUT to a watch that received no fix for its timeout. It is
+     * re-armed by the next fix.
+     */
+    private class WatchTimeout implements Runnable {
+
+        private final LocationWatch mWatch;
+
+        WatchTimeout(LocationWatch watch) {
+            mWatch = watch;
+        }
+
+        @Override
+        public void run() {
+            if (watches.contains(mWatch)) {
+                stats.recordTimeout();
+                mPlugin.fail(TIMEOUT, "Position retrieval timed out.", mWatch.callbackContext, true);
+            }
         }
     }
 
-    protected void checkLocationSettings() {
-        if (!showingGooglePlayServicesDialog) {
-            showingGooglePlayServicesDialog = true;
-            PendingResult<LocationSettingsResult> result =
-                    LocationServices.SettingsApi.checkLocationSettings(
-                            mGoogleApiClient,
-                            mLocationSettingsRequest
-                    );
-            result.setResultCallback(this);
+    /**
+     * Sends a batch whose flush deadline passed with no newer fix to carry it.
+     */
+    private class BatchFlush implements Runnable {
+
+        private final LocationWatch mWatch;
+
+        BatchFlush(LocationWatch watch) {
+            mWatch = watch;
+        }
+
+        @Override
+        public void run() {
+            if (watches.contains(mWatch)) {
+                flushBatch(mWatch);
+            }
         }
     }
 
+    protected void checkLocationSettings(CallbackContext callbackContext) {
+        mSettingsCallbackContext = callbackContext;
+        mEngine.checkLocationSettings(mLocationRequest);
+    }
+
     private boolean shouldTriggerLocationUpdates() {
         return watches.size() > 0;
     }
 
-    @Override
-    public void onResult(LocationSettingsResult locationSettingsResult) {
-        final Status status = locationSettingsResult.getStatus();
-        switch (status.getStatusCode()) {
-            case LocationSettingsStatusCodes.SUCCESS:
-                Log.i(TAG, "All location settings are satisfied.");
-                getLastAvailableLocation(mPlugin.context);
-                break;
-            case LocationSettingsStatusCodes.RESOLUTION_REQUIRED:
-                Log.i(TAG, "Location settings are not satisfied. Show the user a dialog to" +
-                        "upgrade location settings ");
+    /**
+     * Called by the plugin with the outcome of the settings resolution dialog.
+     */
+    protected void onLocationSettingsResolved(boolean resolved) {
+        if (resolved) {
+            getLastAvailableLocation(mSettingsCallbackContext);
+        } else {
+            mPlugin.fail(Activity.RESULT_CANCELED,
+                    "User chose not to make required location settings changes.",
+                    mSettingsCallbackContext, false);
+        }
+    }
 
-                try {
-                    // Show the dialog by calling startResolutionForResult(), and check the result
-                    // in onActivityResult().
-                    status.startResolutionForResult(mActivity, REQUEST_CHECK_SETTINGS);
-                } catch (IntentSender.SendIntentException e) {
-                    mPlugin.fail(0, "PendingIntent unable to execute request.");
-                }
-                break;
-            case LocationSettingsStatusCodes.SETTINGS_CHANGE_UNAVAILABLE:
-                mPlugin.fail(0, "Location settings are inadequate, and cannot be fixed here. "
-                        + "Dialog not created.");
-                break;
+    // region Engine callbacks
+    @Override
+    public void onSettingsResult(String error) {
+        if (error == null) {
+            getLastAvailableLocation(mSettingsCallbackContext);
+        } else {
+            mPlugin.fail(0, error, mSettingsCallbackContext, false);
         }
-        showingGooglePlayServicesDialog = false;
     }
 
-    // region Google Play Services Connection Callbacks
     @Override
-    public void onConnected(Bundle connectionHint) {
-        // checkLocationSettings();
+    public void onConnected() {
+        mTimeoutScheduler.cancel(mConnectTimeout);
+        List<QueuedLocationRequest> queued = takeQueuedLocationRequests();
+        for (QueuedLocationRequest request : queued) {
+            request.replay();
+        }
+        boolean pending;
+        synchronized (mPendingLocationRequests) {
+            pending = !mPendingLocationRequests.isEmpty();
+        }
+        if (pending) {
+            // Calls that were waiting on a previous engine or connection.
+            mEngine.requestSingleUpdate();
+        }
         if (shouldTriggerLocationUpdates()) {
             scheduleLocationUpdates();
         }
     }
 
+    /**
+     * Falls back to the LocationManager engine when Play Services cannot be
+     * used, unless the fused engine was explicitly asked for.
+     */
     @Override
-    public void onConnectionFailed(ConnectionResult result) {
-        mPlugin.fail(result.getErrorCode(),
-                "onConnectionFailed. Error code: " + result.getErrorCode());
+    public void onConnectionFailed(int code, String message) {
+        if (mEngineFallback && mEngine instanceof FusedLocationEngine) {
+            Log.w(TAG, message + ", falling back to LocationManager");
+            mEngine.disconnect();
+            mEngine = new LocationManagerEngine(mActivity, this, mLooper, TAG);
+            mEngine.connect();
+        } else {
+            fail(code, message);
+        }
     }
 
     @Override
     public void onConnectionSuspended(int cause) {
-        // The connection to Google Play services was lost for some reason. We call connect() to
-        // attempt to re-establish the connection.
-        connectGoogleApiClient();
+        stats.recordSuspension();
     }
 
-    // endregion
+    @Override
+    public void onLocations(List<Location> locations) {
+        onNewLocations(locations);
+    }
 
     @Override
-    public void onLocationChanged(Location location) {
-        Log.d(TAG, "The location has been updated!");
-        onNewLocation(location);
+    public void onSingleLocation(Location location) {
+        stats.recordReceived(location);
+        mLastLocation = location;
+        markFixReceived();
+        deliverPendingLocation(location);
     }
 
-    private void onNewLocation(Location location) {
-        if (location == null) {
+    @Override
+    public void onLocationError(int code, String message) {
+        fail(code, message);
+    }
+
+    // endregion
+
+    private void onNewLocations(List<Location> locations) {
+        if (locations == null || locations.isEmpty()) {
             fail(POSITION_UNAVAILABLE, "Unable to get a location");
-        } else {
-            win(location);
+            return;
+        }
+        List<Location> accepted = locations;
+        for (int i = 0; i < locations.size(); i++) {
+            Location location = locations.get(i);
+            stats.recordReceived(location);
+            if (pipeline.process(location)) {
+                if (accepted != locations) {
+                    accepted.add(location);
+                }
+            } else {
+                stats.recordFiltered();
+                if (accepted == locations) {
+                    // Only copy the list once a stage actually dropped a fix.
+                    accepted = new ArrayList<Location>(locations.subList(0, i));
+                }
+            }
+        }
+        if (!accepted.isEmpty()) {
+            win(accepted);
         }
-
     }
 }
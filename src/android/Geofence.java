@@ -0,0 +1,128 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A circular or polygonal fence, with its bounding box and the transition
+ * state GeofenceMonitor keeps for it. Only the location thread touches the
+ * state.
+ */
+public class Geofence {
+
+    public final String id;
+    public final CallbackContext callbackContext;
+
+    // Circle center and radius in meters, the radius is 0 for polygons.
+    public final double latitude;
+    public final double longitude;
+    public final double radius;
+    // Polygon vertices, null for circles.
+    public final double[] latitudes;
+    public final double[] longitudes;
+
+    // Time inside in milliseconds after which a dwell is reported, 0 disables it.
+    public final long dwellTime;
+
+    public final double minLatitude;
+    public final double maxLatitude;
+    public final double minLongitude;
+    public final double maxLongitude;
+
+    boolean inside;
+    long enteredAt;
+    boolean dwelled;
+    // Sequence number of the last fix this fence was tested against.
+    long testedAt = -1;
+
+    /**
+     * Reads { id, latitude, longitude, radius } or { id, polygon: [[lat, lng], ...] },
+     * with an optional dwellTime.
+     */
+    public Geofence(JSONObject options, CallbackContext callbackContext) throws JSONException {
+        this.id = options.getString("id");
+        this.callbackContext = callbackContext;
+        this.dwellTime = Math.max(0, options.optLong("dwellTime", 0));
+
+        JSONArray polygon = options.optJSONArray("polygon");
+        if (polygon != null) {
+            if (polygon.length() < 3) {
+                throw new JSONException("Geofence " + id + " needs at least 3 vertices");
+            }
+            latitudes = new double[polygon.length()];
+            longitudes = new double[polygon.length()];
+            double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+            double minLng = Double.MAX_VALUE, maxLng = -Double.MAX_VALUE;
+            for (int i = 0; i < latitudes.length; i++) {
+                JSONArray vertex = polygon.getJSONArray(i);
+                latitudes[i] = vertex.getDouble(0);
+                longitudes[i] = vertex.getDouble(1);
+                minLat = Math.min(minLat, latitudes[i]);
+                maxLat = Math.max(maxLat, latitudes[i]);
+                minLng = Math.min(minLng, longitudes[i]);
+                maxLng = Math.max(maxLng, longitudes[i]);
+            }
+            latitude = (minLat + maxLat) / 2;
+            longitude = (minLng + maxLng) / 2;
+            radius = 0;
+            minLatitude = minLat;
+            maxLatitude = maxLat;
+            minLongitude = minLng;
+            maxLongitude = maxLng;
+        } else {
+            latitude = options.getDouble("latitude");
+            longitude = options.getDouble("longitude");
+            radius = options.getDouble("radius");
+            if (!(radius > 0)) {
+                throw new JSONException("Geofence " + id + " needs a positive radius");
+            }
+            latitudes = null;
+            longitudes = null;
+            double dLat = Math.toDegrees(radius / LocationUtils.EARTH_RADIUS);
+            double dLng = dLat / Math.max(Math.cos(Math.toRadians(latitude)), 1e-6);
+            minLatitude = latitude - dLat;
+            maxLatitude = latitude + dLat;
+            minLongitude = longitude - dLng;
+            maxLongitude = longitude + dLng;
+        }
+    }
+
+    public boolean contains(double lat, double lng) {
+        if (lat < minLatitude || lat > maxLatitude || lng < minLongitude || lng > maxLongitude) {
+            return false;
+        }
+        if (latitudes == null) {
+            return LocationUtils.distanceBetween(latitude, longitude, lat, lng) <= radius;
+        }
+        // Ray casting, edges are short enough to be treated as straight in degrees.
+        boolean in = false;
+        for (int i = 0, j = latitudes.length - 1; i < latitudes.length; j = i++) {
+            if ((latitudes[i] > lat) != (latitudes[j] > lat)
+                    && lng < (longitudes[j] - longitudes[i]) * (lat - latitudes[i])
+                    / (latitudes[j] - latitudes[i]) + longitudes[i]) {
+                in = !in;
+            }
+        }
+        return in;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.location.Location;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests every fix against the registered geofences and reports only the
+ * enter, exit and dwell transitions. Fences are indexed in a uniform grid
+ * of CELL_SIZE degrees, so a fix is only tested against the fences whose
+ * bounding box overlaps its cell, plus the ones it is currently inside.
+ */
+public class GeofenceMonitor implements LocationConsumer {
+
+    // Internal watch keeping location updates running while fences are registered.
+    public static final String WATCH_ID = "geofences";
+
+    // About 1.1 km of latitude.
+    private static final double CELL_SIZE = 0.01;
+
+    private static final Geofence[] NONE = new Geofence[0];
+
+    /**
+     * Immutable fences and grid, replaced as a whole when fences change so the
+     * location thread never sees a partial index.
+     */
+    private static class Index {
+        final Map<String, Geofence> fences;
+        final Map<Long, Geofence[]> cells;
+
+        Index(Map<String, Geofence> fences) {
+            this.fences = fences;
+            Map<Long, List<Geofence>> lists = new HashMap<Long, List<Geofence>>();
+            for (Geofence fence : fences.values()) {
+                for (long row = cell(fence.minLatitude); row <= cell(fence.maxLatitude); row++) {
+                    for (long column = cell(fence.minLongitude); column <= cell(fence.maxLongitude); column++) {
+                        Long key = key(row, column);
+                        List<Geofence> list = lists.get(key);
+                        if (list == null) {
+                            list = new ArrayList<Geofence>(2);
+                            lists.put(key, list);
+                        }
+                        list.add(fence);
+                    }
+                }
+            }
+            cells = new HashMap<Long, Geofence[]>(lists.size() * 2);
+            for (Map.Entry<Long, List<Geofence>> entry : lists.entrySet()) {
+                cells.put(entry.getKey(), entry.getValue().toArray(NONE));
+            }
+        }
+    }
+
+    private volatile Index mIndex = new Index(new LinkedHashMap<String, Geofence>());
+
+    // Fences the device is inside and the previous fix, only used on the location thread.
+    private final List<Geofence> mInside = new ArrayList<Geofence>();
+    private long mSequence;
+    private double mLastLatitude;
+    private double mLastLongitude;
+
+    private static long cell(double degrees) {
+        return (long) Math.floor(degrees / CELL_SIZE);
+    }
+
+    private static long key(long row, long column) {
+        return (row << 32) ^ (column & 0xffffffffL);
+    }
+
+    /**
+     * Adds or replaces fences, transitions are reported to the given callback.
+     * A replaced fence whose new geometry still contains the last fix keeps
+     * its inside and dwell state, so re-adding it reports no new enter.
+     */
+    public synchronized void add(JSONArray fences, CallbackContext callbackContext) throws JSONException {
+        Map<String, Geofence> map = new LinkedHashMap<String, Geofence>(mIndex.fences);
+        for (int i = 0; i < fences.length(); i++) {
+            Geofence fence = new Geofence(fences.getJSONObject(i), callbackContext);
+            map.put(fence.id, fence);
+        }
+        mIndex = new Index(map);
+    }
+
+    /**
+     * Removes the given fences, or all of them when ids is null. Removed fences
+     * report no exit.
+     */
+    public synchronized void remove(JSONArray ids) {
+        Map<String, Geofence> map = new LinkedHashMap<String, Geofence>();
+        if (ids != null) {
+            map.putAll(mIndex.fences);
+            for (int i = 0; i < ids.length(); i++) {
+                map.remove(ids.optString(i));
+            }
+        }
+        mIndex = new Index(map);
+    }
+
+    public boolean isEmpty() {
+        return mIndex.fences.isEmpty();
+    }
+
+    @Override
+    public void onLocation(Location location) {
+        Index index = mIndex;
+        long sequence = ++mSequence;
+        double lat = location.getLatitude();
+        double lng = location.getLongitude();
+        // Dwell is timed on the fixes themselves, so batched or replayed fixes time it right.
+        long now = location.getElapsedRealtimeNanos() / 1000000;
+
+        // Fences left since the last fix, or removed or replaced meanwhile.
+        for (int i = mInside.size() - 1; i >= 0; i--) {
+            Geofence fence = mInside.get(i);
+            Geofence current = index.fences.get(fence.id);
+            if (current != fence) {
+                fence.inside = false;
+                if (current == null || !current.contains(mLastLatitude, mLastLongitude)) {
+                    mInside.remove(i);
+                    continue;
+                }
+                // The new geometry still holds the device, it never left the fence.
+                current.inside = true;
+                current.enteredAt = fence.enteredAt;
+                current.dwelled = fence.dwelled;
+                mInside.set(i, current);
+                fence = current;
+            }
+            fence.testedAt = sequence;
+            if (!fence.contains(lat, lng)) {
+                fence.inside = false;
+                mInside.remove(i);
+                report(fence, "exit", location);
+            } else if (!fence.dwelled && fence.dwellTime > 0 && now - fence.enteredAt >= fence.dwellTime) {
+                fence.dwelled = true;
+                report(fence, "dwell", location);
+            }
+        }
+
+        mLastLatitude = lat;
+        mLastLongitude = lng;
+        Geofence[] candidates = index.cells.get(key(cell(lat), cell(lng)));
+        if (candidates == null) {
+            return;
+        }
+        for (Geofence fence : candidates) {
+            if (fence.testedAt == sequence) {
+                continue;
+            }
+            fence.testedAt = sequence;
+            if (fence.contains(lat, lng)) {
+                fence.inside = true;
+                fence.enteredAt = now;
+                fence.dwelled = false;
+                mInside.add(fence);
+                report(fence, "enter", location);
+            }
+        }
+    }
+
+    private void report(Geofence fence, String transition, Location location) {
+        if (fence.callbackContext == null) {
+            return;
+        }
+        JSONObject o = new JSONObject();
+        try {
+            o.put("id", fence.id);
+            o.put("transition", transition);
+            o.put("position", LocationUtils.returnLocationJSON(location));
+        } catch (JSONException e) {
+            return;
+        }
+        PluginResult result = new PluginResult(PluginResult.Status.OK, o);
+        result.setKeepCallback(true);
+        fence.callbackContext.sendPluginResult(result);
+    }
+}
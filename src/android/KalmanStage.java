@@ -0,0 +1,140 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import org.json.JSONObject;
+
+import android.location.Location;
+
+/**
+ * Constant-velocity Kalman smoother. Positions are projected to meters on a
+ * plane tangent at the first fix, and each axis runs an independent filter
+ * on position and velocity. The fix accuracy is the measurement noise, the
+ * smoothed position and its accuracy are written back into the fix.
+ */
+public class KalmanStage implements LocationStage {
+
+    // Acceleration noise in m/s^2, larger values follow manoeuvres more closely.
+    public static final double DEFAULT_PROCESS_NOISE = 3;
+    // Past this gap in milliseconds the state is too stale and the filter restarts.
+    public static final long DEFAULT_MAX_GAP = 60000;
+
+    private static final double INITIAL_VELOCITY_VARIANCE = 100;
+
+    private final double mProcessNoise;
+    private final long mMaxGap;
+
+    private boolean mInitialized;
+    private long mLastElapsedNanos;
+    private double mOriginLatitude;
+    private double mOriginLongitude;
+    private double mMetersPerDegreeLatitude;
+    private double mMetersPerDegreeLongitude;
+
+    // State and covariance of the north (y) and east (x) axes.
+    private double mX, mVx, mPx00, mPx01, mPx11;
+    private double mY, mVy, mPy00, mPy01, mPy11;
+
+    public KalmanStage(JSONObject options) {
+        mProcessNoise = options.optDouble("processNoise", DEFAULT_PROCESS_NOISE);
+        mMaxGap = options.optLong("maxGap", DEFAULT_MAX_GAP);
+    }
+
+    @Override
+    public boolean process(Location location) {
+        double accuracy = Math.max(location.getAccuracy(), 1);
+        double r = accuracy * accuracy;
+        long elapsedNanos = location.getElapsedRealtimeNanos();
+        double dt = (elapsedNanos - mLastElapsedNanos) / 1e9;
+
+        if (!mInitialized || dt * 1000 > mMaxGap) {
+            initialize(location, r);
+            mLastElapsedNanos = elapsedNanos;
+            return true;
+        }
+
+        double x = (location.getLongitude() - mOriginLongitude) * mMetersPerDegreeLongitude;
+        double y = (location.getLatitude() - mOriginLatitude) * mMetersPerDegreeLatitude;
+
+        if (dt > 0) {
+            double q = mProcessNoise * mProcessNoise;
+            double dt2 = dt * dt;
+            double dt3 = dt2 * dt;
+
+            mX += mVx * dt;
+            mPx00 += dt * (2 * mPx01 + dt * mPx11) + q * dt3 / 3;
+            mPx01 += dt * mPx11 + q * dt2 / 2;
+            mPx11 += q * dt;
+
+            mY += mVy * dt;
+            mPy00 += dt * (2 * mPy01 + dt * mPy11) + q * dt3 / 3;
+            mPy01 += dt * mPy11 + q * dt2 / 2;
+            mPy11 += q * dt;
+            mLastElapsedNanos = elapsedNanos;
+        }
+
+        double s = mPx00 + r;
+        double k0 = mPx00 / s;
+        double k1 = mPx01 / s;
+        double innovation = x - mX;
+        mX += k0 * innovation;
+        mVx += k1 * innovation;
+        mPx11 -= k1 * mPx01;
+        mPx01 -= k0 * mPx01;
+        mPx00 -= k0 * mPx00;
+
+        s = mPy00 + r;
+        k0 = mPy00 / s;
+        k1 = mPy01 / s;
+        innovation = y - mY;
+        mY += k0 * innovation;
+        mVy += k1 * innovation;
+        mPy11 -= k1 * mPy01;
+        mPy01 -= k0 * mPy01;
+        mPy00 -= k0 * mPy00;
+
+        location.setLatitude(mOriginLatitude + mY / mMetersPerDegreeLatitude);
+        location.setLongitude(mOriginLongitude + mX / mMetersPerDegreeLongitude);
+        location.setAccuracy((float) Math.sqrt(Math.max(mPx00, mPy00)));
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        mInitialized = false;
+    }
+
+    private void initialize(Location location, double variance) {
+        mInitialized = true;
+        mOriginLatitude = location.getLatitude();
+        mOriginLongitude = location.getLongitude();
+        mMetersPerDegreeLatitude = Math.toRadians(LocationUtils.EARTH_RADIUS);
+        mMetersPerDegreeLongitude = mMetersPerDegreeLatitude * Math.cos(Math.toRadians(mOriginLatitude));
+        mX = 0;
+        mY = 0;
+        mVx = 0;
+        mVy = 0;
+        mPx00 = variance;
+        mPy00 = variance;
+        mPx01 = 0;
+        mPy01 = 0;
+        mPx11 = INITIAL_VELOCITY_VARIANCE;
+        mPy11 = INITIAL_VELOCITY_VARIANCE;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import android.location.Location;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bounded ring of fixes kept while no JavaScript listener can receive them.
+ * Fixes are stored in the compact record format in one buffer, allocated on
+ * the first fix and doubled as needed up to the capacity, and the oldest are
+ * overwritten once it is full.
+ */
+public class LocationBuffer {
+
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    // Records allocated by the first fix.
+    private static final int INITIAL_RECORDS = 64;
+
+    private ByteBuffer mRecords;
+    private final int mCapacity;
+    private int mStart;
+    private int mCount;
+    private long mDropped;
+
+    public LocationBuffer(int capacity) {
+        mCapacity = Math.max(1, capacity);
+    }
+
+    public synchronized void add(Location location) {
+        int size = mRecords == null ? 0 : mRecords.capacity() / LocationUtils.RECORD_SIZE;
+        if (mCount == size && size < mCapacity) {
+            // Grows with the oldest record first, so the ring restarts at 0.
+            ByteBuffer records = LocationUtils.allocateRecords(Math.min(mCapacity, Math.max(INITIAL_RECORDS, size * 2)));
+            records.put(drain());
+            mRecords = records;
+            mCount = size;
+            size = records.capacity() / LocationUtils.RECORD_SIZE;
+        }
+        int index;
+        if (mCount == size) {
+            index = mStart;
+            mStart = (mStart + 1) % size;
+            mDropped++;
+        } else {
+            index = (mStart + mCount) % size;
+            mCount++;
+        }
+        mRecords.position(index * LocationUtils.RECORD_SIZE);
+        LocationUtils.writeLocation(mRecords, location);
+    }
+
+    public synchronized boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    /**
+     * Number of fixes overwritten because the buffer was full.
+     */
+    public synchronized long getDropped() {
+        return mDropped;
+    }
+
+    /**
+     * Removes every buffered fix and returns them oldest first, in the
+     * compact format.
+     */
+    public synchronized byte[] drain() {
+        byte[] out = new byte[mCount * LocationUtils.RECORD_SIZE];
+        if (mCount == 0) {
+            return out;
+        }
+        byte[] records = mRecords.array();
+        int size = mRecords.capacity() / LocationUtils.RECORD_SIZE;
+        int head = Math.min(mCount, size - mStart) * LocationUtils.RECORD_SIZE;
+        System.arraycopy(records, mStart * LocationUtils.RECORD_SIZE, out, 0, head);
+        System.arraycopy(records, 0, out, head, out.length - head);
+        mStart = 0;
+        mCount = 0;
+        return out;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import com.google.android.gms.location.LocationRequest;
+
+import android.location.Location;
+
+import java.util.List;
+
+/**
+ * Source of fixes behind FusedLocationHelper. The helper merges the watches
+ * into one LocationRequest, used here as a plain value, and the engine maps
+ * it onto its provider. Results are reported to the Callback on the location
+ * thread.
+ */
+public interface LocationEngine {
+
+    interface Callback {
+
+        void onConnected();
+
+        /**
+         * The engine cannot be used at all, the helper may fall back to another one.
+         */
+        void onConnectionFailed(int code, String message);
+
+        /**
+         * The connection was lost, the engine is trying to restore it.
+         */
+        void onConnectionSuspended(int cause);
+
+        void onLocations(List<Location> locations);
+
+        void onSingleLocation(Location location);
+
+        void onLocationError(int code, String message);
+
+        /**
+         * Outcome of checkLocationSettings, error is null when the settings are satisfied.
+         */
+        void onSettingsResult(String error);
+    }
+
+    void connect();
+
+    void disconnect();
+
+    boolean isConnected();
+
+    /**
+     * The best fix already known to the device, or null.
+     */
+    Location getLastLocation();
+
+    /**
+     * Starts or replaces the continuous updates.
+     */
+    void requestUpdates(LocationRequest request);
+
+    void removeUpdates();
+
+    /**
+     * Asks for one fresh, accurate fix, reported through onSingleLocation.
+     */
+    void requestSingleUpdate();
+
+    void removeSingleUpdate();
+
+    void checkLocationSettings(LocationRequest request);
+}
@@ -0,0 +1,230 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import java.util.Collections;
+
+import com.google.android.gms.location.LocationRequest;
+
+import android.content.Context;
+import android.location.Location;
+import android.location.LocationListener;
+import android.location.LocationManager;
+import android.os.Bundle;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * Engine backed by the framework LocationManager, for devices without Google
+ * Play Services. GPS and network providers are chosen from the request
+ * priority.
+ */
+public class LocationManagerEngine implements LocationEngine, LocationListener {
+
+	// Known fixes closer in time than this are compared by accuracy rather than age.
+	private static final long SIGNIFICANT_AGE = 2 * 60 * 1000;
+
+	private final LocationManager mLocationManager;
+	private final Callback mCallback;
+	private final Looper mLooper;
+	private final String TAG;
+
+	private volatile boolean mConnected = false;
+	private long mInterval = LocationWatch.DEFAULT_INTERVAL;
+	// Elapsed realtime of the last GPS fix, network fixes are ignored while GPS keeps up.
+	private volatile long mLastGpsMillis = -1;
+
+	private final LocationListener mSingleUpdateListener = new LocationListener() {
+		@Override
+		public void onLocationChanged(Location location) {
+			mCallback.onSingleLocation(location);
+		}
+
+		@Override
+		public void onStatusChanged(String provider, int status, Bundle extras) {
+		}
+
+		@Override
+		public void onProviderEnabled(String provider) {
+		}
+
+		@Override
+		public void onProviderDisabled(String provider) {
+		}
+	};
+
+	public LocationManagerEngine(Context context, Callback callback, Looper looper, String tag) {
+		mLocationManager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+		mCallback = callback;
+		mLooper = looper;
+		TAG = tag;
+	}
+
+	@Override
+	public void connect() {
+		mConnected = true;
+		mCallback.onConnected();
+	}
+
+	@Override
+	public void disconnect() {
+		removeUpdates();
+		removeSingleUpdate();
+		mConnected = false;
+	}
+
+	@Override
+	public boolean isConnected() {
+		return mConnected;
+	}
+
+	/**
+	 * Picks the freshest fix across every enabled provider. Fixes within
+	 * SIGNIFICANT_AGE of each other are ranked by accuracy instead, so a
+	 * slightly older GPS fix beats a newer coarse network one.
+	 */
+	@Override
+	public Location getLastLocation() {
+		Location best = null;
+		for (String provider : mLocationManager.getProviders(true)) {
+			Location location = mLocationManager.getLastKnownLocation(provider);
+			if (location != null && (best == null || isBetter(location, best))) {
+				best = location;
+			}
+		}
+		return best;
+	}
+
+	private static boolean isBetter(Location location, Location best) {
+		long delta = (location.getElapsedRealtimeNanos() - best.getElapsedRealtimeNanos()) / 1000000;
+		if (delta > SIGNIFICANT_AGE) {
+			return true;
+		}
+		if (delta < -SIGNIFICANT_AGE) {
+			return false;
+		}
+		if (!location.hasAccuracy()) {
+			return false;
+		}
+		if (!best.hasAccuracy()) {
+			return true;
+		}
+		return location.getAccuracy() < best.getAccuracy()
+				|| (location.getAccuracy() == best.getAccuracy() && delta > 0);
+	}
+
+	/**
+	 * High accuracy listens to GPS and network, balanced and low power to the
+	 * network provider alone, no power to the passive provider.
+	 */
+	@Override
+	public void requestUpdates(LocationRequest request) {
+		mLocationManager.removeUpdates(this);
+		mInterval = request.getInterval();
+		mLastGpsMillis = -1;
+
+		long minTime = request.getInterval();
+		float minDistance = request.getSmallestDisplacement();
+		switch (request.getPriority()) {
+			case LocationRequest.PRIORITY_HIGH_ACCURACY:
+				requestProvider(LocationManager.GPS_PROVIDER, minTime, minDistance);
+				requestProvider(LocationManager.NETWORK_PROVIDER, minTime, minDistance);
+				break;
+			case LocationRequest.PRIORITY_NO_POWER:
+				requestProvider(LocationManager.PASSIVE_PROVIDER, minTime, minDistance);
+				break;
+			default:
+				if (!requestProvider(LocationManager.NETWORK_PROVIDER, minTime, minDistance)) {
+					requestProvider(LocationManager.GPS_PROVIDER, minTime, minDistance);
+				}
+				break;
+		}
+	}
+
+	private boolean requestProvider(String provider, long minTime, float minDistance) {
+		if (mLocationManager.getProvider(provider) == null) {
+			return false;
+		}
+		mLocationManager.requestLocationUpdates(provider, minTime, minDistance, this, mLooper);
+		return true;
+	}
+
+	@Override
+	public void removeUpdates() {
+		mLocationManager.removeUpdates(this);
+	}
+
+	@Override
+	public void requestSingleUpdate() {
+		for (String provider : mLocationManager.getProviders(true)) {
+			if (!provider.equals(LocationManager.PASSIVE_PROVIDER)) {
+				mLocationManager.requestSingleUpdate(provider, mSingleUpdateListener, mLooper);
+			}
+		}
+	}
+
+	@Override
+	public void removeSingleUpdate() {
+		mLocationManager.removeUpdates(mSingleUpdateListener);
+	}
+
+	@Override
+	public void checkLocationSettings(LocationRequest request) {
+		if (hasEnabledProvider()) {
+			mCallback.onSettingsResult(null);
+		} else {
+			mCallback.onSettingsResult("All locations providers are disabled.");
+		}
+	}
+
+	private boolean hasEnabledProvider() {
+		return mLocationManager.isProviderEnabled(LocationManager.GPS_PROVIDER)
+				|| mLocationManager.isProviderEnabled(LocationManager.NETWORK_PROVIDER);
+	}
+
+	@Override
+	public void onLocationChanged(Location location) {
+		Log.d(TAG, "The location has been updated!");
+		long now = location.getElapsedRealtimeNanos() / 1000000;
+		if (LocationManager.GPS_PROVIDER.equals(location.getProvider())) {
+			mLastGpsMillis = now;
+		} else if (mLastGpsMillis >= 0 && now - mLastGpsMillis < 2 * mInterval) {
+			// GPS is delivering, the coarser network fixes would only add jitter.
+			return;
+		}
+		mCallback.onLocations(Collections.singletonList(location));
+	}
+
+	@Override
+	public void onProviderDisabled(String provider) {
+		if (!hasEnabledProvider()) {
+			mCallback.onLocationError(LocationUtils.POSITION_UNAVAILABLE, "All locations providers are disabled.");
+		}
+	}
+
+	@Override
+	public void onStatusChanged(String provider, int status, Bundle extras) {
+		Log.d(TAG, "Provider " + provider + " status changed to " + status);
+	}
+
+	@Override
+	public void onProviderEnabled(String provider) {
+		Log.d(TAG, "Provider " + provider + " has been enabled.");
+	}
+}
@@ -0,0 +1,110 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import android.location.Location;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A fix and its serialized forms. Each form is built at most once, however
+ * many watches the fix is delivered to.
+ */
+public class LocationPayload {
+
+    public final Location location;
+
+    private JSONObject mJSON;
+    private PluginResult mResult;
+    private PluginResult mCompactResult;
+    private PluginResult mOneShotResult;
+
+    public LocationPayload(Location location) {
+        this.location = location;
+    }
+
+    public JSONObject getJSON() {
+        if (mJSON == null) {
+            mJSON = LocationUtils.returnLocationJSON(location);
+        }
+        return mJSON;
+    }
+
+    /**
+     * Returns a keep-callback result for this fix. The same instance is sent to
+     * every watch asking for the same format.
+     */
+    public PluginResult getResult(boolean compact) {
+        if (compact) {
+            if (mCompactResult == null) {
+                ByteBuffer buffer = LocationUtils.allocateRecords(1);
+                LocationUtils.writeLocation(buffer, location);
+                mCompactResult = new PluginResult(PluginResult.Status.OK, buffer.array());
+                mCompactResult.setKeepCallback(true);
+            }
+            return mCompactResult;
+        }
+        if (mResult == null) {
+            mResult = new PluginResult(PluginResult.Status.OK, getJSON());
+            mResult.setKeepCallback(true);
+        }
+        return mResult;
+    }
+
+    /**
+     * Whether getResult already built the result for this format.
+     */
+    public boolean hasResult(boolean compact) {
+        return (compact ? mCompactResult : mResult) != null;
+    }
+
+    /**
+     * Returns the final result answering getCurrentPosition calls.
+     */
+    public PluginResult getOneShotResult() {
+        if (mOneShotResult == null) {
+            mOneShotResult = new PluginResult(PluginResult.Status.OK, getJSON());
+        }
+        return mOneShotResult;
+    }
+
+    public static PluginResult batchResult(List<LocationPayload> payloads, boolean compact) {
+        PluginResult result;
+        if (compact) {
+            ByteBuffer buffer = LocationUtils.allocateRecords(payloads.size());
+            for (LocationPayload payload : payloads) {
+                LocationUtils.writeLocation(buffer, payload.location);
+            }
+            result = new PluginResult(PluginResult.Status.OK, buffer.array());
+        } else {
+            JSONArray batch = new JSONArray();
+            for (LocationPayload payload : payloads) {
+                batch.put(payload.getJSON());
+            }
+            result = new PluginResult(PluginResult.Status.OK, batch);
+        }
+        result.setKeepCallback(true);
+        return result;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.location.Location;
+
+/**
+ * The chain of stages every streamed fix goes through before it reaches the
+ * watches. It is configured from JavaScript with an array of stage options,
+ * for example [{ type: "outlier", maxSpeed: 50 }, { type: "kalman" }].
+ * Stages may load data, so configure() should run off the WebCore thread.
+ */
+public class LocationPipeline {
+
+    private static final LocationStage[] EMPTY = new LocationStage[0];
+
+    // Replaced as a whole on configure(), so the location thread never sees a partial chain.
+    private volatile LocationStage[] mStages = EMPTY;
+
+    public void configure(JSONArray config) throws JSONException {
+        LocationStage[] stages = new LocationStage[config == null ? 0 : config.length()];
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = createStage(config.getJSONObject(i));
+        }
+        mStages = stages;
+    }
+
+    /**
+     * Runs a fix through every stage.
+     *
+     * @return false if a stage dropped the fix.
+     */
+    public boolean process(Location location) {
+        LocationStage[] stages = mStages;
+        for (int i = 0; i < stages.length; i++) {
+            if (!stages[i].process(location)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void reset() {
+        for (LocationStage stage : mStages) {
+            stage.reset();
+        }
+    }
+
+    public boolean isEmpty() {
+        return mStages.length == 0;
+    }
+
+    protected LocationStage createStage(JSONObject options) throws JSONException {
+        String type = options.getString("type");
+        if (type.equals("outlier")) {
+            return new OutlierRejectionStage(options);
+        } else if (type.equals("kalman")) {
+            return new KalmanStage(options);
+        } else if (type.equals("mapMatch")) {
+            return new MapMatchStage(options);
+        }
+        throw new JSONException("Unknown processing stage: " + type);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.IBinder;
+
+/**
+ * Foreground service running for as long as background tracking is
+ * enabled. It holds no location logic itself: it keeps the process in the
+ * foreground so the plugin's location subscription stays alive while the
+ * activity is paused.
+ */
+public class LocationService extends Service {
+
+    public static final String EXTRA_TITLE = "title";
+    public static final String EXTRA_TEXT = "text";
+
+    private static final String CHANNEL_ID = "gpslocation";
+    private static final int NOTIFICATION_ID = 0x6750;
+
+    public static void start(Context context, String title, String text) {
+        Intent intent = new Intent(context, LocationService.class);
+        intent.putExtra(EXTRA_TITLE, title);
+        intent.putExtra(EXTRA_TEXT, text);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            context.startForegroundService(intent);
+        } else {
+            context.startService(intent);
+        }
+    }
+
+    public static void stop(Context context) {
+        context.stopService(new Intent(context, LocationService.class));
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        String title = intent != null ? intent.getStringExtra(EXTRA_TITLE) : null;
+        String text = intent != null ? intent.getStringExtra(EXTRA_TEXT) : null;
+        startForeground(NOTIFICATION_ID, buildNotification(title, text));
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    private Notification buildNotification(String title, String text) {
+        Notification.Builder builder;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager manager =
+                    (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+            manager.createNotificationChannel(new NotificationChannel(CHANNEL_ID,
+                    "Location tracking", NotificationManager.IMPORTANCE_LOW));
+            builder = new Notification.Builder(this, CHANNEL_ID);
+        } else {
+            builder = new Notification.Builder(this);
+        }
+
+        Intent launch = getPackageManager().getLaunchIntentForPackage(getPackageName());
+        if (launch != null) {
+            int flags = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0;
+            builder.setContentIntent(PendingIntent.getActivity(this, 0, launch, flags));
+        }
+
+        return builder
+                .setContentTitle(title != null ? title : "Location tracking")
+                .setContentText(text != null ? text : "Tracking your location in the background")
+                .setSmallIcon(getApplicationInfo().icon)
+                .setOngoing(true)
+                .build();
+    }
+}
@@ -0,0 +1,40 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import android.location.Location;
+
+/**
+ * One step of the fix-processing pipeline. Stages run on the location thread,
+ * keep their state in primitive fields and must not allocate per fix.
+ */
+public interface LocationStage {
+
+    /**
+     * Processes a fix, possibly rewriting it in place.
+     *
+     * @return false to drop the fix, later stages and watches never see it.
+     */
+    boolean process(Location location);
+
+    /**
+     * Forgets any state accumulated from previous fixes.
+     */
+    void reset();
+}
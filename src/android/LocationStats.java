@@ -0,0 +1,228 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.location.Location;
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Runtime counters and histograms reported by the getStats action. Every
+ * update is a single atomic operation, cheap enough to stay on in
+ * production.
+ */
+public class LocationStats {
+
+    private volatile long mStartedAt = SystemClock.elapsedRealtime();
+
+    private final AtomicLongArray mReceived = new AtomicLongArray(LocationUtils.PROVIDER_COUNT);
+    private final AtomicLong mFiltered = new AtomicLong();
+    private final AtomicLong mDelivered = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+    private final AtomicLong mTimeouts = new AtomicLong();
+    private final AtomicLong mSuspensions = new AtomicLong();
+
+    // Microseconds spent building a result, and inside sendPluginResult.
+    public final Histogram serialization = new Histogram();
+    public final Histogram send = new Histogram();
+    // Milliseconds between a fix being computed and it being delivered.
+    public final Histogram fixAge = new Histogram();
+
+    public void recordReceived(Location location) {
+        mReceived.incrementAndGet(LocationUtils.providerCode(location.getProvider()));
+    }
+
+    /**
+     * A fix dropped by the pipeline.
+     */
+    public void recordFiltered() {
+        mFiltered.incrementAndGet();
+    }
+
+    public void recordDelivered() {
+        mDelivered.incrementAndGet();
+    }
+
+    /**
+     * A fix dropped by a watch delivery policy while JavaScript was behind.
+     */
+    public void recordDropped() {
+        mDropped.incrementAndGet();
+    }
+
+    public void recordTimeout() {
+        mTimeouts.incrementAndGet();
+    }
+
+    public void recordSuspension() {
+        mSuspensions.incrementAndGet();
+    }
+
+    /**
+     * Records one sendPluginResult call. Serialization is only recorded when
+     * the result was actually built for this call.
+     */
+    public void recordSend(long startNanos, long serializedNanos, long sentNanos, boolean serialized) {
+        if (serialized) {
+            serialization.record((serializedNanos - startNanos) / 1000);
+        }
+        send.record((sentNanos - serializedNanos) / 1000);
+    }
+
+    public void reset() {
+        mStartedAt = SystemClock.elapsedRealtime();
+        for (int i = 0; i < mReceived.length(); i++) {
+            mReceived.set(i, 0);
+        }
+        mFiltered.set(0);
+        mDelivered.set(0);
+        mDropped.set(0);
+        mTimeouts.set(0);
+        mSuspensions.set(0);
+        serialization.reset();
+        send.reset();
+        fixAge.reset();
+    }
+
+    /**
+     * Snapshot of the counters. Values are read one by one, so a snapshot taken
+     * while fixes arrive may be off by a few counts.
+     */
+    public JSONObject toJSON(LocationWatch[] watches) throws JSONException {
+        long now = SystemClock.elapsedRealtime();
+        JSONObject o = new JSONObject();
+        o.put("uptime", now - mStartedAt);
+
+        JSONObject received = new JSONObject();
+        for (int i = 0; i < mReceived.length(); i++) {
+            String provider = LocationUtils.providerName(i);
+            received.put(provider == null ? "other" : provider, mReceived.get(i));
+        }
+        o.put("received", received);
+        o.put("filtered", mFiltered.get());
+        o.put("delivered", mDelivered.get());
+        o.put("dropped", mDropped.get());
+        o.put("timeouts", mTimeouts.get());
+        o.put("suspensions", mSuspensions.get());
+        o.put("serialization", serialization.toJSON());
+        o.put("send", send.toJSON());
+        o.put("fixAge", fixAge.toJSON());
+
+        JSONArray watchStats = new JSONArray();
+        for (LocationWatch watch : watches) {
+            JSONObject w = new JSONObject();
+            long lifetime = Math.max(1, now - watch.createdAt);
+            w.put("id", watch.id);
+            w.put("delivered", watch.deliveredCount);
+            w.put("filtered", watch.filteredCount);
+            w.put("estimated", watch.estimatedCount);
+            w.put("dropped", watch.droppedCount);
+            w.put("inFlight", watch.getInFlight());
+            // Fixes delivered per minute since the watch was added.
+            w.put("rate", watch.deliveredCount * 60000.0 / lifetime);
+            watchStats.put(w);
+        }
+        o.put("watches", watchStats);
+        return o;
+    }
+
+    /**
+     * Lock-free histogram with power-of-two buckets: bucket i counts the values
+     * in [2^(i-1), 2^i), bucket 0 the zeros. Percentiles are reported as the
+     * upper bound of their bucket.
+     */
+    public static class Histogram {
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(64);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mSum = new AtomicLong();
+        private final AtomicLong mMax = new AtomicLong();
+
+        public void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            mBuckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+            mCount.incrementAndGet();
+            mSum.addAndGet(value);
+            long max = mMax.get();
+            while (value > max && !mMax.compareAndSet(max, value)) {
+                max = mMax.get();
+            }
+        }
+
+        public void reset() {
+            for (int i = 0; i < mBuckets.length(); i++) {
+                mBuckets.set(i, 0);
+            }
+            mCount.set(0);
+            mSum.set(0);
+            mMax.set(0);
+        }
+
+        private static long upperBound(int bucket) {
+            return bucket == 0 ? 0 : bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+
+        public JSONObject toJSON() throws JSONException {
+            long[] buckets = new long[mBuckets.length()];
+            long count = 0;
+            int last = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = mBuckets.get(i);
+                count += buckets[i];
+                if (buckets[i] > 0) {
+                    last = i;
+                }
+            }
+
+            JSONObject o = new JSONObject();
+            o.put("count", count);
+            o.put("mean", count == 0 ? 0 : (double) mSum.get() / count);
+            o.put("max", mMax.get());
+            o.put("p50", percentile(buckets, count, 0.5));
+            o.put("p90", percentile(buckets, count, 0.9));
+            o.put("p99", percentile(buckets, count, 0.99));
+            JSONArray counts = new JSONArray();
+            for (int i = 0; i <= last && count > 0; i++) {
+                counts.put(buckets[i]);
+            }
+            o.put("buckets", counts);
+            return o;
+        }
+
+        private static long percentile(long[] buckets, long count, double p) {
+            long rank = (long) Math.ceil(count * p);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) {
+                    return upperBound(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
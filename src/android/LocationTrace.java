@@ -0,0 +1,416 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import android.location.Location;
+import android.util.Xml;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * A recorded track held in primitive arrays, parsed from GPX, NMEA
+ * (RMC and GGA sentences) or CSV text. Missing values are NaN.
+ */
+public class LocationTrace {
+
+    public static final String GPX = "gpx";
+    public static final String NMEA = "nmea";
+    public static final String CSV = "csv";
+
+    // Rough accuracy in meters of one unit of HDOP, for NMEA traces.
+    private static final float HDOP_ACCURACY = 5;
+    private static final double KNOTS = 0.514444;
+
+    private int mSize;
+    // Line being parsed, reported in parse errors.
+    private int mLine;
+    private long[] mTimes = new long[64];
+    private double[] mLatitudes = new double[64];
+    private double[] mLongitudes = new double[64];
+    private double[] mAltitudes = new double[64];
+    private float[] mAccuracies = new float[64];
+    private float[] mSpeeds = new float[64];
+    private float[] mBearings = new float[64];
+
+    public int size() {
+        return mSize;
+    }
+
+    public long getTime(int i) {
+        return mTimes[i];
+    }
+
+    /**
+     * Fills a location with the i-th fix of the trace, with the given
+     * provider and elapsed realtime.
+     */
+    public Location getLocation(int i, String provider, long elapsedRealtimeNanos) {
+        Location location = new Location(provider);
+        location.setTime(mTimes[i]);
+        location.setElapsedRealtimeNanos(elapsedRealtimeNanos);
+        location.setLatitude(mLatitudes[i]);
+        location.setLongitude(mLongitudes[i]);
+        if (!Double.isNaN(mAltitudes[i])) {
+            location.setAltitude(mAltitudes[i]);
+        }
+        if (!Float.isNaN(mAccuracies[i])) {
+            location.setAccuracy(mAccuracies[i]);
+        }
+        if (!Float.isNaN(mSpeeds[i])) {
+            location.setSpeed(mSpeeds[i]);
+        }
+        if (!Float.isNaN(mBearings[i])) {
+            location.setBearing(mBearings[i]);
+        }
+        return location;
+    }
+
+    private void add(long time, double latitude, double longitude, double altitude,
+            float accuracy, float speed, float bearing) {
+        if (mSize == mTimes.length) {
+            int capacity = mSize * 2;
+            mTimes = Arrays.copyOf(mTimes, capacity);
+            mLatitudes = Arrays.copyOf(mLatitudes, capacity);
+            mLongitudes = Arrays.copyOf(mLongitudes, capacity);
+            mAltitudes = Arrays.copyOf(mAltitudes, capacity);
+            mAccuracies = Arrays.copyOf(mAccuracies, capacity);
+            mSpeeds = Arrays.copyOf(mSpeeds, capacity);
+            mBearings = Arrays.copyOf(mBearings, capacity);
+        }
+        mTimes[mSize] = time;
+        mLatitudes[mSize] = latitude;
+        mLongitudes[mSize] = longitude;
+        mAltitudes[mSize] = altitude;
+        mAccuracies[mSize] = accuracy;
+        mSpeeds[mSize] = speed;
+        mBearings[mSize] = bearing;
+        mSize++;
+    }
+
+    /**
+     * Parses a trace, the format is guessed from the text when null.
+     *
+     * @throws IllegalArgumentException if the trace cannot be parsed or holds
+     *         no fix. The message starts with the offending line number.
+     */
+    public static LocationTrace parse(String text, String format) {
+        String trimmed = text.trim();
+        if (format == null || format.length() == 0) {
+            format = trimmed.startsWith("<") ? GPX : trimmed.startsWith("$") ? NMEA : CSV;
+        }
+        LocationTrace trace = new LocationTrace();
+        try {
+            if (format.equals(GPX)) {
+                trace.parseGpx(trimmed);
+            } else if (format.equals(NMEA)) {
+                trace.parseNmea(trimmed);
+            } else if (format.equals(CSV)) {
+                trace.parseCsv(trimmed);
+            } else {
+                throw new IllegalArgumentException("Unknown trace format: " + format);
+            }
+        } catch (XmlPullParserException e) {
+            throw new IllegalArgumentException("Invalid GPX trace: " + e.getMessage());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid GPX trace: " + e.getMessage());
+        } catch (ParseException e) {
+            throw trace.invalid("invalid time, " + e.getMessage());
+        } catch (NumberFormatException e) {
+            throw trace.invalid("invalid number, " + e.getMessage());
+        }
+        if (trace.mSize == 0) {
+            throw new IllegalArgumentException("The trace holds no fix");
+        }
+        return trace;
+    }
+
+    private IllegalArgumentException invalid(String message) {
+        return new IllegalArgumentException("Line " + mLine + ": " + message);
+    }
+
+    // region GPX
+
+    private void parseGpx(String text) throws XmlPullParserException, IOException, ParseException {
+        XmlPullParser parser = Xml.newPullParser();
+        parser.setInput(new StringReader(text));
+
+        double latitude = 0;
+        double longitude = 0;
+        double altitude = Double.NaN;
+        long time = -1;
+        float speed = Float.NaN;
+        float bearing = Float.NaN;
+        float accuracy = Float.NaN;
+        boolean inPoint = false;
+        String tag = null;
+
+        for (int event = parser.getEventType(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+            mLine = parser.getLineNumber();
+            if (event == XmlPullParser.START_TAG) {
+                tag = parser.getName();
+                if (tag.equals("trkpt") || tag.equals("rtept") || tag.equals("wpt")) {
+                    inPoint = true;
+                    String lat = parser.getAttributeValue(null, "lat");
+                    String lon = parser.getAttributeValue(null, "lon");
+                    if (lat == null || lon == null) {
+                        throw invalid("<" + tag + "> without lat or lon");
+                    }
+                    latitude = Double.parseDouble(lat);
+                    longitude = Double.parseDouble(lon);
+                    altitude = Double.NaN;
+                    time = -1;
+                    speed = Float.NaN;
+                    bearing = Float.NaN;
+                    accuracy = Float.NaN;
+                }
+            } else if (event == XmlPullParser.TEXT && inPoint && tag != null) {
+                String value = parser.getText().trim();
+                if (value.length() == 0) {
+                    continue;
+                }
+                if (tag.equals("ele")) {
+                    altitude = Double.parseDouble(value);
+                } else if (tag.equals("time")) {
+                    time = parseIsoTime(value);
+                } else if (tag.equals("speed")) {
+                    speed = Float.parseFloat(value);
+                } else if (tag.equals("course")) {
+                    bearing = Float.parseFloat(value);
+                } else if (tag.equals("hdop")) {
+                    accuracy = Float.parseFloat(value) * HDOP_ACCURACY;
+                }
+            } else if (event == XmlPullParser.END_TAG) {
+                String name = parser.getName();
+                if (inPoint && (name.equals("trkpt") || name.equals("rtept") || name.equals("wpt"))) {
+                    inPoint = false;
+                    // Untimed points are spaced one second apart.
+                    add(time >= 0 ? time : mSize * 1000L, latitude, longitude, altitude,
+                            accuracy, speed, bearing);
+                }
+                tag = null;
+            }
+        }
+    }
+
+    /**
+     * Parses an ISO 8601 UTC or offset time, such as 2016-05-01T10:00:00.250Z.
+     */
+    static long parseIsoTime(String value) throws ParseException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long time = format.parse(value.substring(0, Math.min(19, value.length()))).getTime();
+
+        int i = 19;
+        if (i < value.length() && value.charAt(i) == '.') {
+            int start = ++i;
+            while (i < value.length() && Character.isDigit(value.charAt(i))) {
+                i++;
+            }
+            String fraction = (value.substring(start, i) + "000").substring(0, 3);
+            time += Integer.parseInt(fraction);
+        }
+        if (i < value.length() && (value.charAt(i) == '+' || value.charAt(i) == '-')) {
+            String offset = value.substring(i + 1).replace(":", "");
+            if (offset.length() < 2) {
+                throw new ParseException("Truncated offset in " + value, i);
+            }
+            long minutes = Integer.parseInt(offset.substring(0, 2)) * 60
+                    + (offset.length() >= 4 ? Integer.parseInt(offset.substring(2, 4)) : 0);
+            time -= (value.charAt(i) == '+' ? 1 : -1) * minutes * 60000;
+        }
+        return time;
+    }
+
+    // endregion
+
+    // region NMEA
+
+    /**
+     * RMC sentences give the fixes, the GGA sentence with the same time adds
+     * altitude and HDOP.
+     */
+    private void parseNmea(String text) {
+        String ggaTime = null;
+        double altitude = Double.NaN;
+        float accuracy = Float.NaN;
+
+        String[] lines = text.split("\r?\n");
+        for (int l = 0; l < lines.length; l++) {
+            mLine = l + 1;
+            String line = lines[l].trim();
+            int checksum = line.indexOf('*');
+            if (checksum >= 0) {
+                line = line.substring(0, checksum);
+            }
+            if (line.length() < 6 || line.charAt(0) != '$') {
+                continue;
+            }
+            String[] fields = line.split(",", -1);
+            if (fields[0].length() != 6) {
+                // Not a $ttsss sentence address, such as proprietary $P sentences.
+                continue;
+            }
+            String type = fields[0].substring(3);
+            if ((type.equals("GGA") || type.equals("RMC")) && fields.length <= 9) {
+                throw invalid("truncated " + type + " sentence");
+            }
+            if (type.equals("GGA")) {
+                ggaTime = fields[1];
+                accuracy = fields[8].length() > 0 ? Float.parseFloat(fields[8]) * HDOP_ACCURACY : Float.NaN;
+                altitude = fields[9].length() > 0 ? Double.parseDouble(fields[9]) : Double.NaN;
+            } else if (type.equals("RMC") && fields[2].equals("A")) {
+                if (fields[1].length() < 6 || fields[9].length() != 6) {
+                    throw invalid("truncated RMC time or date");
+                }
+                boolean sameTime = fields[1].equals(ggaTime);
+                add(nmeaTime(fields[1], fields[9]),
+                        nmeaCoordinate(fields[3], fields[4]),
+                        nmeaCoordinate(fields[5], fields[6]),
+                        sameTime ? altitude : Double.NaN,
+                        sameTime ? accuracy : Float.NaN,
+                        fields[7].length() > 0 ? (float) (Double.parseDouble(fields[7]) * KNOTS) : Float.NaN,
+                        fields[8].length() > 0 ? Float.parseFloat(fields[8]) : Float.NaN);
+            }
+        }
+    }
+
+    // ddmm.mmmm or dddmm.mmmm, negative towards S and W.
+    private static double nmeaCoordinate(String value, String hemisphere) {
+        double raw = Double.parseDouble(value);
+        double degrees = Math.floor(raw / 100);
+        double coordinate = degrees + (raw - degrees * 100) / 60;
+        return hemisphere.equals("S") || hemisphere.equals("W") ? -coordinate : coordinate;
+    }
+
+    // hhmmss.ss and ddmmyy, in UTC.
+    private static long nmeaTime(String time, String date) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.US);
+        calendar.clear();
+        calendar.set(2000 + Integer.parseInt(date.substring(4, 6)),
+                Integer.parseInt(date.substring(2, 4)) - 1,
+                Integer.parseInt(date.substring(0, 2)),
+                Integer.parseInt(time.substring(0, 2)),
+                Integer.parseInt(time.substring(2, 4)),
+                Integer.parseInt(time.substring(4, 6)));
+        long millis = calendar.getTimeInMillis();
+        if (time.length() > 7) {
+            millis += Math.round(Double.parseDouble("0" + time.substring(6)) * 1000);
+        }
+        return millis;
+    }
+
+    // endregion
+
+    // region CSV
+
+    /**
+     * Columns are time, latitude, longitude, altitude, accuracy, speed and
+     * heading, in this order unless a header line names them. Time is epoch
+     * milliseconds or ISO 8601.
+     */
+    private void parseCsv(String text) throws ParseException {
+        String[] lines = text.split("\r?\n");
+        int[] columns = { 0, 1, 2, 3, 4, 5, 6 };
+        int start = 0;
+
+        String first = lines[0].toLowerCase(Locale.US);
+        if (first.contains("lat")) {
+            Arrays.fill(columns, -1);
+            String[] names = first.split(",");
+            for (int i = 0; i < names.length; i++) {
+                int column = csvColumn(names[i].trim());
+                if (column >= 0) {
+                    columns[column] = i;
+                }
+            }
+            if (columns[1] < 0 || columns[2] < 0) {
+                throw new IllegalArgumentException("The CSV header has no latitude or longitude column");
+            }
+            start = 1;
+        }
+
+        for (int l = start; l < lines.length; l++) {
+            String line = lines[l].trim();
+            if (line.length() == 0 || line.startsWith("#")) {
+                continue;
+            }
+            mLine = l + 1;
+            String[] fields = line.split(",", -1);
+            String time = csvField(fields, columns[0]);
+            String latitude = csvField(fields, columns[1]);
+            String longitude = csvField(fields, columns[2]);
+            if (latitude == null || longitude == null) {
+                throw invalid("missing latitude or longitude");
+            }
+            add(time == null ? mSize * 1000L
+                            : Character.isDigit(time.charAt(time.length() - 1)) && time.indexOf('T') < 0
+                            ? Long.parseLong(time) : parseIsoTime(time),
+                    Double.parseDouble(latitude),
+                    Double.parseDouble(longitude),
+                    csvDouble(fields, columns[3]),
+                    (float) csvDouble(fields, columns[4]),
+                    (float) csvDouble(fields, columns[5]),
+                    (float) csvDouble(fields, columns[6]));
+        }
+    }
+
+    private static int csvColumn(String name) {
+        if (name.equals("time") || name.equals("timestamp")) {
+            return 0;
+        } else if (name.equals("lat") || name.equals("latitude")) {
+            return 1;
+        } else if (name.equals("lon") || name.equals("lng") || name.equals("longitude")) {
+            return 2;
+        } else if (name.equals("alt") || name.equals("altitude") || name.equals("ele")) {
+            return 3;
+        } else if (name.equals("acc") || name.equals("accuracy")) {
+            return 4;
+        } else if (name.equals("speed") || name.equals("velocity")) {
+            return 5;
+        } else if (name.equals("bearing") || name.equals("heading") || name.equals("course")) {
+            return 6;
+        }
+        return -1;
+    }
+
+    private static String csvField(String[] fields, int column) {
+        if (column < 0 || column >= fields.length) {
+            return null;
+        }
+        String value = fields[column].trim();
+        return value.length() == 0 ? null : value;
+    }
+
+    private static double csvDouble(String[] fields, int column) {
+        String value = csvField(fields, column);
+        return value == null ? Double.NaN : Double.parseDouble(value);
+    }
+
+    // endregion
+}
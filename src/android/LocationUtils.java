@@ -21,6 +21,12 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import android.location.Location;
+import android.location.LocationManager;
+import android.os.Bundle;
+import android.os.SystemClock;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * Defines app-wide constants and utilities
@@ -38,6 +44,20 @@ public final class LocationUtils {
     // Create an empty string for initializing strings
     public static final String EMPTY_STRING = "";
 
+    // Mean earth radius in meters, used by the haversine distance.
+    public static final double EARTH_RADIUS = 6371008.8;
+
+    // Compact format: little-endian doubles in this order, NaN for missing values.
+    // latitude, longitude, altitude, accuracy, heading, velocity, timestamp, provider
+    public static final int RECORD_FIELDS = 8;
+    public static final int RECORD_SIZE = RECORD_FIELDS * 8;
+
+    // Provider codes of the compact format, the index matches PROVIDERS in GPSLocation.js.
+    private static final String[] PROVIDERS = { null, "fused", LocationManager.GPS_PROVIDER,
+            LocationManager.NETWORK_PROVIDER, LocationManager.PASSIVE_PROVIDER, TraceReplayEngine.PROVIDER,
+            DeadReckoningSensors.PROVIDER };
+    public static final int PROVIDER_COUNT = PROVIDERS.length;
+
 
     public static JSONObject returnLocationJSON(Location loc) {
         JSONObject o = new JSONObject();
@@ -53,6 +73,15 @@ public final class LocationUtils {
             o.put("velocity", loc.getSpeed());
             o.put("timestamp", loc.getTime());
             o.put("provider", loc.getProvider());
+            Bundle extras = loc.getExtras();
+            if (extras != null && extras.containsKey(MapMatchStage.EXTRA_EDGE_ID)) {
+                JSONObject match = new JSONObject();
+                match.put("edgeId", extras.getString(MapMatchStage.EXTRA_EDGE_ID));
+                match.put("rawLatitude", extras.getDouble(MapMatchStage.EXTRA_RAW_LATITUDE));
+                match.put("rawLongitude", extras.getDouble(MapMatchStage.EXTRA_RAW_LONGITUDE));
+                match.put("distance", extras.getDouble(MapMatchStage.EXTRA_DISTANCE));
+                o.put("match", match);
+            }
         } catch (JSONException e) {
             e.printStackTrace();
         }
@@ -60,4 +89,54 @@ public final class LocationUtils {
         return o;
     }
 
+    /**
+     * Age of a fix in milliseconds, measured on the monotonic elapsed realtime
+     * clock so wall clock changes cannot make a stale fix look fresh.
+     */
+    public static long getAgeMillis(Location loc) {
+        return (SystemClock.elapsedRealtimeNanos() - loc.getElapsedRealtimeNanos()) / 1000000;
+    }
+
+    /**
+     * Great-circle distance in meters between two points, using the haversine
+     * formula on primitives only.
+     */
+    public static double distanceBetween(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double sinLat = Math.sin(dLat / 2);
+        double sinLng = Math.sin(dLng / 2);
+        double a = sinLat * sinLat
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLng * sinLng;
+        return 2 * EARTH_RADIUS * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    public static ByteBuffer allocateRecords(int count) {
+        return ByteBuffer.allocate(count * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public static void writeLocation(ByteBuffer buffer, Location loc) {
+        buffer.putDouble(loc.getLatitude());
+        buffer.putDouble(loc.getLongitude());
+        buffer.putDouble(loc.hasAltitude() ? loc.getAltitude() : Double.NaN);
+        buffer.putDouble(loc.getAccuracy());
+        buffer.putDouble(loc.hasBearing() && loc.hasSpeed() ? loc.getBearing() : Double.NaN);
+        buffer.putDouble(loc.getSpeed());
+        buffer.putDouble(loc.getTime());
+        buffer.putDouble(providerCode(loc.getProvider()));
+    }
+
+    public static int providerCode(String provider) {
+        for (int i = 1; i < PROVIDERS.length; i++) {
+            if (PROVIDERS[i].equals(provider)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    public static String providerName(int code) {
+        return PROVIDERS[code];
+    }
+
 }
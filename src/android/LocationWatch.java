@@ -0,0 +1,222 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import com.google.android.gms.location.LocationRequest;
+
+import org.apache.cordova.CallbackContext;
+import org.json.JSONObject;
+
+import android.location.Location;
+import android.os.SystemClock;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A single watch registered from JavaScript, together with the location
+ * options it asked for.
+ */
+public class LocationWatch {
+
+    public static final long DEFAULT_INTERVAL = 5000;
+    public static final int DEFAULT_PRIORITY = LocationRequest.PRIORITY_HIGH_ACCURACY;
+
+    // Delivery policies: send every fix, only the newest, or a bounded queue dropping the oldest.
+    public static final int DELIVERY_ALL = 0;
+    public static final int DELIVERY_LATEST = 1;
+    public static final int DELIVERY_BOUNDED = 2;
+    public static final int DEFAULT_QUEUE_SIZE = 10;
+
+    public final String id;
+    public final CallbackContext callbackContext;
+
+    public long interval = DEFAULT_INTERVAL;
+    public long fastestInterval = DEFAULT_INTERVAL;
+    public int priority = DEFAULT_PRIORITY;
+    public float smallestDisplacement = 0;
+    // Let AdaptiveSampler choose interval and priority from the device speed.
+    public boolean adaptive = false;
+    // Also receive positions estimated from motion sensors between fixes, every estimateInterval ms.
+    public boolean deadReckoning = false;
+    public long estimateInterval = DeadReckoningSensors.DEFAULT_INTERVAL;
+
+    // Flush window of a batched watch in milliseconds, 0 delivers every fix immediately.
+    public long batchInterval = 0;
+    // Elapsed realtime when the first fix entered the empty batch, the flush deadline counts from it.
+    public long batchStartedAt;
+    public final List<LocationPayload> batch = new ArrayList<LocationPayload>();
+    public Runnable flushTask;
+
+    // Longest wait in milliseconds between fixes before a TIMEOUT is reported, 0 waits forever.
+    public long timeout = 0;
+    public Runnable timeoutTask;
+
+    // Per-watch gates, evaluated against the last fix delivered to this watch. 0 disables a gate.
+    public double minDistance = 0;
+    public float maxAccuracy = 0;
+    public long minTime = 0;
+
+    // Read by getStats from another thread, only the location thread writes them.
+    public final long createdAt = SystemClock.elapsedRealtime();
+    public volatile long deliveredCount = 0;
+    public volatile long filteredCount = 0;
+    // Dead reckoning estimates sent, apart from the real fixes in deliveredCount.
+    public volatile long estimatedCount = 0;
+
+    private boolean mHasDelivered = false;
+    private double mLastLatitude;
+    private double mLastLongitude;
+    private long mLastElapsedMillis;
+
+    // Deliver fixes as packed binary records instead of JSON, see LocationUtils.writeLocation.
+    public boolean compact = false;
+
+    // Except with DELIVERY_ALL, at most window results are sent before JavaScript acknowledges
+    // them, the others wait in the queue. The queue is guarded by the watch itself.
+    public int delivery = DELIVERY_ALL;
+    public int window = 1;
+    public int queueSize = DEFAULT_QUEUE_SIZE;
+    private int mInFlight = 0;
+    private final ArrayDeque<LocationPayload> mQueue = new ArrayDeque<LocationPayload>();
+    public volatile long droppedCount = 0;
+
+    public LocationWatch(String id, CallbackContext callbackContext, JSONObject options) {
+        this.id = id;
+        this.callbackContext = callbackContext;
+
+        if (options != null) {
+            interval = options.optLong("interval", DEFAULT_INTERVAL);
+            fastestInterval = Math.min(options.optLong("fastestInterval", interval), interval);
+            if (options.has("priority")) {
+                priority = options.optInt("priority", DEFAULT_PRIORITY);
+            } else if (!options.optBoolean("enableHighAccuracy", true)) {
+                priority = LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY;
+            }
+            smallestDisplacement = (float) options.optDouble("smallestDisplacement", 0);
+            adaptive = options.optBoolean("adaptive", false);
+            deadReckoning = options.optBoolean("deadReckoning", false);
+            estimateInterval = Math.max(1, options.optLong("estimateInterval", DeadReckoningSensors.DEFAULT_INTERVAL));
+            batchInterval = Math.max(0, options.optLong("batchInterval", 0));
+            compact = "compact".equals(options.optString("format"));
+            timeout = Math.max(0, options.optLong("timeout", 0));
+            minDistance = Math.max(0, options.optDouble("minDistance", 0));
+            maxAccuracy = (float) Math.max(0, options.optDouble("maxAccuracy", 0));
+            minTime = Math.max(0, options.optLong("minTime", 0));
+            String policy = options.optString("delivery");
+            if (policy.equals("latest")) {
+                delivery = DELIVERY_LATEST;
+            } else if (policy.equals("bounded")) {
+                delivery = DELIVERY_BOUNDED;
+            }
+            window = Math.max(1, options.optInt("maxPending", 1));
+            queueSize = delivery == DELIVERY_LATEST ? 1
+                    : Math.max(1, options.optInt("queueSize", DEFAULT_QUEUE_SIZE));
+        }
+    }
+
+    /**
+     * Whether a fix passes this watch's gates. Only primitives are compared,
+     * so rejected fixes cost no allocation and are never serialized.
+     */
+    public boolean accepts(Location loc) {
+        if (maxAccuracy > 0 && (!loc.hasAccuracy() || loc.getAccuracy() > maxAccuracy)) {
+            return false;
+        }
+        if (!mHasDelivered) {
+            return true;
+        }
+        if (minTime > 0 && elapsedMillis(loc) - mLastElapsedMillis < minTime) {
+            return false;
+        }
+        return minDistance <= 0 || LocationUtils.distanceBetween(mLastLatitude, mLastLongitude,
+                loc.getLatitude(), loc.getLongitude()) >= minDistance;
+    }
+
+    /**
+     * Records a fix as delivered, the next gates are evaluated against it.
+     */
+    public void delivered(Location loc) {
+        mHasDelivered = true;
+        mLastLatitude = loc.getLatitude();
+        mLastLongitude = loc.getLongitude();
+        mLastElapsedMillis = elapsedMillis(loc);
+    }
+
+    private static long elapsedMillis(Location loc) {
+        return loc.getElapsedRealtimeNanos() / 1000000;
+    }
+
+    /**
+     * Applies the delivery policy to a fix. Callers hold the watch lock, so
+     * sends keep their order with the ones triggered by acknowledgements.
+     *
+     * @return the payload if it can be sent now, null if it was queued or dropped.
+     */
+    public LocationPayload offer(LocationPayload payload, LocationStats stats) {
+        if (delivery == DELIVERY_ALL) {
+            // Never acknowledged, nothing to count.
+            return payload;
+        }
+        if (mInFlight < window && mQueue.isEmpty()) {
+            mInFlight++;
+            return payload;
+        }
+        if (mQueue.size() >= queueSize) {
+            mQueue.poll();
+            droppedCount++;
+            stats.recordDropped();
+        }
+        mQueue.add(payload);
+        return null;
+    }
+
+    /**
+     * Records results acknowledged by JavaScript. Callers hold the watch lock.
+     *
+     * @return the queued payloads that can now be sent, oldest first.
+     */
+    public List<LocationPayload> acknowledge(int count) {
+        mInFlight = Math.max(0, mInFlight - count);
+        if (mQueue.isEmpty() || mInFlight >= window) {
+            return Collections.emptyList();
+        }
+        List<LocationPayload> ready = new ArrayList<LocationPayload>();
+        while (mInFlight < window && !mQueue.isEmpty()) {
+            ready.add(mQueue.poll());
+            mInFlight++;
+        }
+        return ready;
+    }
+
+    public synchronized int getInFlight() {
+        return mInFlight;
+    }
+
+    /**
+     * A batch is due once its first fix waited for the flush window. Fixes
+     * arriving later are not needed to flush it, flushTask runs at the
+     * deadline.
+     */
+    public boolean isBatchDue(long now) {
+        return !batch.isEmpty() && now - batchStartedAt >= batchInterval;
+    }
+}
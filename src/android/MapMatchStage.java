@@ -0,0 +1,199 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.location.Location;
+import android.os.Bundle;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Snaps fixes to a road graph with an incremental hidden Markov model. The
+ * candidates of a fix are the closest positions on the edges around it. Each
+ * one scores its distance to the fix, plus the best score of the previous
+ * candidates, penalized by how much the distance along the network between
+ * them differs from the straight distance between the fixes. Routes come
+ * from a Dijkstra search bounded where that penalty becomes prohibitive, so
+ * they may cross any number of streets. The best candidate is written into
+ * the fix, and the raw position and the edge id go to its extras.
+ *
+ * Candidates, scores and the route search live in preallocated arrays, so
+ * matching allocates nothing per fix, except for the extras: one Bundle per
+ * matched fix, with three boxed doubles. They are the exception on purpose.
+ * A matched fix may be serialized long after the next ones were matched, in
+ * a watch batch or by a geofence, route or trip event, so its match has to
+ * travel with the Location rather than in fields of the stage. A fix with no
+ * edge within maxDistance passes unchanged and restarts the chain.
+ */
+public class MapMatchStage implements LocationStage {
+
+    public static final String EXTRA_EDGE_ID = "matchEdgeId";
+    public static final String EXTRA_RAW_LATITUDE = "matchRawLatitude";
+    public static final String EXTRA_RAW_LONGITUDE = "matchRawLongitude";
+    public static final String EXTRA_DISTANCE = "matchDistance";
+
+    // Search radius around each fix, in meters.
+    public static final double DEFAULT_MAX_DISTANCE = 50;
+    // Scale in meters of the difference between route and straight distances, larger values allow detours.
+    public static final double DEFAULT_BETA = 10;
+    public static final int DEFAULT_MAX_CANDIDATES = 8;
+    // Past this gap in milliseconds the previous candidates say nothing and the chain restarts.
+    public static final long DEFAULT_MAX_GAP = 60000;
+    // Floor of the GPS noise in meters, reported accuracies below it are optimistic.
+    private static final double MIN_SIGMA = 4;
+    // Transitions penalized more than this are dropped, which bounds the route searches to straight + k * beta.
+    private static final double MAX_TRANSITION_PENALTY = 20;
+
+    private final RoadGraph mGraph;
+    private final double mMaxDistance;
+    private final double mSigma;
+    private final double mBeta;
+    private final long mMaxGap;
+
+    private RoadGraph.Candidates mPrevious;
+    private RoadGraph.Candidates mCurrent;
+    private double[] mPreviousScores;
+    private double[] mCurrentScores;
+    private final double[] mTransitions;
+    private final RoadGraph.Search mSearch;
+    private boolean mHasPrevious;
+    private double mPreviousX;
+    private double mPreviousY;
+    private long mLastElapsedNanos;
+
+    /**
+     * @param options graph (absolute path of the GeoJSON road extract),
+     *                maxDistance, sigma, beta, maxCandidates and maxGap.
+     */
+    public MapMatchStage(JSONObject options) throws JSONException {
+        String path = options.getString("graph");
+        try {
+            mGraph = RoadGraph.load(new File(path));
+        } catch (IOException e) {
+            throw new JSONException("Unable to read road graph " + path + ": " + e.getMessage());
+        }
+        mMaxDistance = options.optDouble("maxDistance", DEFAULT_MAX_DISTANCE);
+        mSigma = Math.max(0, options.optDouble("sigma", 0));
+        mBeta = options.optDouble("beta", DEFAULT_BETA);
+        mMaxGap = options.optLong("maxGap", DEFAULT_MAX_GAP);
+        int capacity = Math.max(1, options.optInt("maxCandidates", DEFAULT_MAX_CANDIDATES));
+        mPrevious = new RoadGraph.Candidates(capacity);
+        mCurrent = new RoadGraph.Candidates(capacity);
+        mPreviousScores = new double[capacity];
+        mCurrentScores = new double[capacity];
+        mTransitions = new double[capacity];
+        mSearch = new RoadGraph.Search(mGraph);
+    }
+
+    @Override
+    public boolean process(Location location) {
+        double x = mGraph.toX(location.getLongitude());
+        double y = mGraph.toY(location.getLatitude());
+        long elapsedNanos = location.getElapsedRealtimeNanos();
+        RoadGraph.Candidates current = mCurrent;
+        int count = mGraph.findCandidates(x, y, mMaxDistance, current);
+        if (count == 0) {
+            mHasPrevious = false;
+            return true;
+        }
+
+        double sigma = mSigma > 0 ? mSigma : Math.max(location.getAccuracy(), MIN_SIGMA);
+        boolean chained = mHasPrevious && (elapsedNanos - mLastElapsedNanos) / 1000000 <= mMaxGap;
+        double straight = chained ? Math.hypot(x - mPreviousX, y - mPreviousY) : 0;
+        if (chained) {
+            // One search per previous candidate reaches every current one.
+            for (int j = 0; j < count; j++) {
+                mTransitions[j] = Double.NEGATIVE_INFINITY;
+            }
+            for (int i = 0; i < mPrevious.count; i++) {
+                mGraph.search(mPrevious.edge[i], mPrevious.along[i],
+                        straight + MAX_TRANSITION_PENALTY * mBeta, mSearch);
+                for (int j = 0; j < count; j++) {
+                    double route = mGraph.routeDistance(mSearch, current.edge[j], current.along[j]);
+                    if (route != Double.POSITIVE_INFINITY) {
+                        mTransitions[j] = Math.max(mTransitions[j],
+                                mPreviousScores[i] - Math.abs(route - straight) / mBeta);
+                    }
+                }
+            }
+        }
+        double bestScore = Double.NEGATIVE_INFINITY;
+        int best = 0;
+        for (int j = 0; j < count; j++) {
+            double residual = current.distance[j] / sigma;
+            double score = -0.5 * residual * residual;
+            if (chained) {
+                score += mTransitions[j];
+            }
+            mCurrentScores[j] = score;
+            if (score > bestScore) {
+                bestScore = score;
+                best = j;
+            }
+        }
+
+        if (bestScore == Double.NEGATIVE_INFINITY) {
+            // No candidate is reachable from the previous ones, start a new chain from this fix.
+            for (int j = 0; j < count; j++) {
+                double residual = current.distance[j] / sigma;
+                mCurrentScores[j] = -0.5 * residual * residual;
+                if (j == 0 || mCurrentScores[j] > bestScore) {
+                    bestScore = mCurrentScores[j];
+                    best = j;
+                }
+            }
+        }
+        // Keep the scores relative to the best one, so they never drift out of range.
+        for (int j = 0; j < count; j++) {
+            mCurrentScores[j] -= bestScore;
+        }
+
+        Bundle extras = location.getExtras();
+        if (extras == null) {
+            location.setExtras(new Bundle());
+            extras = location.getExtras();
+        }
+        extras.putString(EXTRA_EDGE_ID, mGraph.getEdgeId(current.edge[best]));
+        extras.putDouble(EXTRA_RAW_LATITUDE, location.getLatitude());
+        extras.putDouble(EXTRA_RAW_LONGITUDE, location.getLongitude());
+        extras.putDouble(EXTRA_DISTANCE, current.distance[best]);
+        location.setLatitude(mGraph.toLatitude(current.y[best]));
+        location.setLongitude(mGraph.toLongitude(current.x[best]));
+
+        mCurrent = mPrevious;
+        mPrevious = current;
+        double[] scores = mPreviousScores;
+        mPreviousScores = mCurrentScores;
+        mCurrentScores = scores;
+        mHasPrevious = true;
+        mPreviousX = x;
+        mPreviousY = y;
+        mLastElapsedNanos = elapsedNanos;
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        mHasPrevious = false;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import org.json.JSONObject;
+
+import android.location.Location;
+
+/**
+ * Drops fixes implying an impossible jump from the last accepted fix. The
+ * accuracy radii of both fixes are granted before the speed is checked.
+ */
+public class OutlierRejectionStage implements LocationStage {
+
+    public static final double DEFAULT_MAX_SPEED = 70;
+    public static final int DEFAULT_MAX_REJECTIONS = 5;
+
+    private final double mMaxSpeed;
+    // After this many rejections in a row, the reference fix is assumed to be the outlier.
+    private final int mMaxRejections;
+
+    private boolean mHasLast;
+    private double mLastLatitude;
+    private double mLastLongitude;
+    private float mLastAccuracy;
+    private long mLastElapsedNanos;
+    private int mRejections;
+
+    public OutlierRejectionStage(JSONObject options) {
+        mMaxSpeed = options.optDouble("maxSpeed", DEFAULT_MAX_SPEED);
+        mMaxRejections = options.optInt("maxRejections", DEFAULT_MAX_REJECTIONS);
+    }
+
+    @Override
+    public boolean process(Location location) {
+        if (mHasLast && mRejections < mMaxRejections) {
+            double seconds = (location.getElapsedRealtimeNanos() - mLastElapsedNanos) / 1e9;
+            double distance = LocationUtils.distanceBetween(mLastLatitude, mLastLongitude,
+                    location.getLatitude(), location.getLongitude())
+                    - mLastAccuracy - location.getAccuracy();
+            if (distance > 0 && (seconds <= 0 || distance / seconds > mMaxSpeed)) {
+                mRejections++;
+                return false;
+            }
+        }
+        mHasLast = true;
+        mLastLatitude = location.getLatitude();
+        mLastLongitude = location.getLongitude();
+        mLastAccuracy = location.getAccuracy();
+        mLastElapsedNanos = location.getElapsedRealtimeNanos();
+        mRejections = 0;
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        mHasLast = false;
+        mRejections = 0;
+    }
+}
@@ -0,0 +1,651 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import org.json.JSONException;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A road network loaded from a GeoJSON extract, indexed for map matching.
+ * LineStrings are split at every vertex they share with another line, or
+ * with themselves, so that each crossing is a node. Each piece is an edge.
+ *
+ * Vertices are projected once on a plane tangent at the center of the
+ * extract and kept in flat arrays, and edge segments are listed in a uniform
+ * grid in compressed rows. Lookups only read these arrays, and route
+ * searches work in a caller-owned Search, so they allocate nothing. The
+ * graph is immutable once loaded.
+ */
+public class RoadGraph {
+
+    // Cells are at least this many meters wide, and grow on large extracts to bound the grid.
+    private static final double MIN_CELL_METERS = 50;
+    private static final long MAX_CELLS = 4000000;
+
+    private final double mOriginLatitude;
+    private final double mOriginLongitude;
+    private final double mMetersPerDegreeLatitude;
+    private final double mMetersPerDegreeLongitude;
+
+    // Projected vertices of every edge, edge after edge.
+    private final double[] mX;
+    private final double[] mY;
+    // Distance of each vertex from the start of its edge, in meters.
+    private final double[] mAlong;
+    // Edge of the segment starting at each vertex, -1 on the last vertex of an edge.
+    private final int[] mSegmentEdge;
+
+    private final int[] mEdgeFirstVertex;
+    private final int[] mEdgeStartNode;
+    private final int[] mEdgeEndNode;
+    private final String[] mEdgeIds;
+
+    // Edges incident to each node, in compressed rows.
+    private final int[] mNodeFirstEdge;
+    private final int[] mNodeEdges;
+
+    private final double mMinX;
+    private final double mMinY;
+    private final double mCellSize;
+    private final int mColumns;
+    private final int mRows;
+    // Segments listed in each cell, in compressed rows.
+    private final int[] mCellFirstSegment;
+    private final int[] mCellSegments;
+
+    /**
+     * Candidate positions of one fix on the graph, at most one per edge, kept
+     * in preallocated arrays so a lookup can reuse them.
+     */
+    public static class Candidates {
+        public final int[] edge;
+        public final double[] along;
+        public final double[] x;
+        public final double[] y;
+        public final double[] distance;
+        public int count;
+
+        public Candidates(int capacity) {
+            edge = new int[capacity];
+            along = new double[capacity];
+            x = new double[capacity];
+            y = new double[capacity];
+            distance = new double[capacity];
+        }
+
+        /**
+         * Keeps the closest position per edge and, once full, the closest edges.
+         */
+        void offer(int e, double a, double px, double py, double d) {
+            int slot = -1;
+            for (int i = 0; i < count; i++) {
+                if (edge[i] == e) {
+                    if (d >= distance[i]) {
+                        return;
+                    }
+                    slot = i;
+                    break;
+                }
+            }
+            if (slot < 0) {
+                if (count < edge.length) {
+                    slot = count++;
+                } else {
+                    slot = 0;
+                    for (int i = 1; i < count; i++) {
+                        if (distance[i] > distance[slot]) {
+                            slot = i;
+                        }
+                    }
+                    if (d >= distance[slot]) {
+                        return;
+                    }
+                }
+            }
+            edge[slot] = e;
+            along[slot] = a;
+            x[slot] = px;
+            y[slot] = py;
+            distance[slot] = d;
+        }
+    }
+
+    /**
+     * State of a bounded shortest path search from one position, sized for
+     * one graph and reused from search to search. Node distances are only
+     * valid when stamped with the current search.
+     */
+    public static class Search {
+        private final double[] mDistance;
+        private final int[] mStamp;
+        // Binary heap of the nodes reached but not settled, and the slot of each in it, -1 once settled.
+        private final int[] mHeap;
+        private final int[] mSlot;
+        private int mSize;
+        private int mCurrent;
+
+        private int mFromEdge;
+        private double mFromAlong;
+        private double mMaxDistance;
+
+        public Search(RoadGraph graph) {
+            int nodes = graph.mNodeFirstEdge.length - 1;
+            mDistance = new double[nodes];
+            mStamp = new int[nodes];
+            mHeap = new int[nodes];
+            mSlot = new int[nodes];
+        }
+
+        private void begin(int fromEdge, double fromAlong, double maxDistance) {
+            if (++mCurrent == 0) {
+                Arrays.fill(mStamp, 0);
+                mCurrent = 1;
+            }
+            mSize = 0;
+            mFromEdge = fromEdge;
+            mFromAlong = fromAlong;
+            mMaxDistance = maxDistance;
+        }
+
+        private double distance(int node) {
+            return mStamp[node] == mCurrent ? mDistance[node] : Double.POSITIVE_INFINITY;
+        }
+
+        private void reach(int node, double distance) {
+            if (distance > mMaxDistance) {
+                return;
+            }
+            if (mStamp[node] != mCurrent) {
+                mStamp[node] = mCurrent;
+                mDistance[node] = distance;
+                mSlot[node] = mSize;
+                mHeap[mSize++] = node;
+            } else if (mSlot[node] >= 0 && distance < mDistance[node]) {
+                mDistance[node] = distance;
+            } else {
+                return;
+            }
+            int slot = mSlot[node];
+            while (slot > 0 && mDistance[mHeap[(slot - 1) / 2]] > distance) {
+                move(mHeap[(slot - 1) / 2], slot);
+                slot = (slot - 1) / 2;
+            }
+            move(node, slot);
+        }
+
+        private int pop() {
+            int node = mHeap[0];
+            mSlot[node] = -1;
+            int last = mHeap[--mSize];
+            if (mSize > 0) {
+                double distance = mDistance[last];
+                int slot = 0;
+                while (true) {
+                    int child = slot * 2 + 1;
+                    if (child >= mSize) {
+                        break;
+                    }
+                    if (child + 1 < mSize && mDistance[mHeap[child + 1]] < mDistance[mHeap[child]]) {
+                        child++;
+                    }
+                    if (mDistance[mHeap[child]] >= distance) {
+                        break;
+                    }
+                    move(mHeap[child], slot);
+                    slot = child;
+                }
+                move(last, slot);
+            }
+            return node;
+        }
+
+        private void move(int node, int slot) {
+            mHeap[slot] = node;
+            mSlot[node] = slot;
+        }
+    }
+
+    /**
+     * Loads a GeoJSON FeatureCollection of LineString or MultiLineString
+     * features, streaming the file rather than holding it. The "id"
+     * property, else the feature id, names the edges of a feature.
+     *
+     * @throws JSONException if the file is not such a collection or holds no line.
+     */
+    public static RoadGraph load(File file) throws IOException, JSONException {
+        List<double[]> lines = new ArrayList<double[]>();
+        List<String> ids = new ArrayList<String>();
+        JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("features")) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginArray();
+                for (int i = 0; reader.hasNext(); i++) {
+                    readFeature(reader, i, lines, ids);
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        } catch (IllegalStateException e) {
+            throw new JSONException("Invalid road graph: " + e.getMessage());
+        } catch (NumberFormatException e) {
+            throw new JSONException("Invalid road graph: " + e.getMessage());
+        } finally {
+            reader.close();
+        }
+        return new RoadGraph(lines, ids);
+    }
+
+    private static void readFeature(JsonReader reader, int index, List<double[]> lines, List<String> ids)
+            throws IOException {
+        String id = null;
+        String featureId = null;
+        String type = null;
+        List<double[]> coordinates = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (name.equals("id")) {
+                featureId = reader.nextString();
+            } else if (name.equals("properties")) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("id") && reader.peek() != JsonToken.NULL) {
+                        id = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if (name.equals("geometry")) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String key = reader.nextName();
+                    if (key.equals("type")) {
+                        type = reader.nextString();
+                    } else if (key.equals("coordinates")) {
+                        coordinates = readLines(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        // The members may come in any order, so the geometry type is only checked here.
+        if (coordinates == null || !("LineString".equals(type) || "MultiLineString".equals(type))) {
+            return;
+        }
+        for (double[] line : coordinates) {
+            lines.add(line);
+            ids.add(id != null ? id : featureId != null ? featureId : String.valueOf(index));
+        }
+    }
+
+    /**
+     * Reads the coordinates of a LineString, or of the parts of a
+     * MultiLineString, as longitude and latitude pairs. Lines of fewer than
+     * two points are dropped, altitudes are skipped.
+     */
+    private static List<double[]> readLines(JsonReader reader) throws IOException {
+        List<double[]> lines = new ArrayList<double[]>();
+        reader.beginArray();
+        double[] points = new double[16];
+        int count = 0;
+        boolean nested = false;
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                // A coordinate of a Point.
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            if (reader.hasNext() && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                nested = true;
+                count = 0;
+                while (reader.hasNext()) {
+                    points = readPoint(reader, points, count++);
+                }
+                addLine(lines, points, count);
+            } else if (reader.hasNext()) {
+                points = readPosition(reader, points, count++);
+            }
+            reader.endArray();
+        }
+        reader.endArray();
+        if (!nested) {
+            addLine(lines, points, count);
+        }
+        return lines;
+    }
+
+    private static double[] readPoint(JsonReader reader, double[] points, int index) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return points;
+        }
+        reader.beginArray();
+        points = readPosition(reader, points, index);
+        reader.endArray();
+        return points;
+    }
+
+    // Reads the longitude and latitude of an open position array, up to its end.
+    private static double[] readPosition(JsonReader reader, double[] points, int index) throws IOException {
+        if (points.length < index * 2 + 2) {
+            points = Arrays.copyOf(points, points.length * 2);
+        }
+        // Deeper arrays, of polygons, are skipped: their features are dropped anyway.
+        if (reader.peek() == JsonToken.NUMBER) {
+            points[index * 2] = reader.nextDouble();
+            points[index * 2 + 1] = reader.nextDouble();
+        }
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+        return points;
+    }
+
+    private static void addLine(List<double[]> lines, double[] points, int count) {
+        if (count >= 2) {
+            lines.add(Arrays.copyOf(points, count * 2));
+        }
+    }
+
+    /**
+     * @param lines longitude and latitude pairs of each line.
+     * @param ids   the id of each line.
+     * @throws JSONException if there is no line.
+     */
+    public RoadGraph(List<double[]> lines, List<String> ids) throws JSONException {
+        if (lines.isEmpty()) {
+            throw new JSONException("The road graph has no line");
+        }
+
+        // Vertices seen more than once, or ending a line, are nodes.
+        Map<Long, Integer> seen = new HashMap<Long, Integer>();
+        int vertexCount = 0;
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLng = Double.MAX_VALUE, maxLng = -Double.MAX_VALUE;
+        for (double[] line : lines) {
+            int count = line.length / 2;
+            for (int v = 0; v < count; v++) {
+                Long key = key(line, v);
+                Integer times = seen.get(key);
+                seen.put(key, v == 0 || v == count - 1 ? 2 : times == null ? 1 : times + 1);
+                minLng = Math.min(minLng, line[v * 2]);
+                maxLng = Math.max(maxLng, line[v * 2]);
+                minLat = Math.min(minLat, line[v * 2 + 1]);
+                maxLat = Math.max(maxLat, line[v * 2 + 1]);
+            }
+        }
+        int edgeCount = 0;
+        for (double[] line : lines) {
+            int count = line.length / 2;
+            int pieces = 0;
+            for (int v = 1; v < count; v++) {
+                if (v == count - 1 || seen.get(key(line, v)) > 1) {
+                    pieces++;
+                }
+            }
+            edgeCount += pieces;
+            // Split points belong to both pieces.
+            vertexCount += count + pieces - 1;
+        }
+
+        mOriginLatitude = (minLat + maxLat) / 2;
+        mOriginLongitude = (minLng + maxLng) / 2;
+        mMetersPerDegreeLatitude = Math.toRadians(LocationUtils.EARTH_RADIUS);
+        mMetersPerDegreeLongitude = mMetersPerDegreeLatitude * Math.cos(Math.toRadians(mOriginLatitude));
+
+        mX = new double[vertexCount];
+        mY = new double[vertexCount];
+        mAlong = new double[vertexCount];
+        mSegmentEdge = new int[vertexCount];
+        mEdgeFirstVertex = new int[edgeCount + 1];
+        mEdgeStartNode = new int[edgeCount];
+        mEdgeEndNode = new int[edgeCount];
+        mEdgeIds = new String[edgeCount];
+
+        Map<Long, Integer> nodes = new HashMap<Long, Integer>();
+        int vertex = 0;
+        int edge = 0;
+        for (int l = 0; l < lines.size(); l++) {
+            double[] line = lines.get(l);
+            int count = line.length / 2;
+            int first = 0;
+            for (int v = 1; v < count; v++) {
+                if (v < count - 1 && seen.get(key(line, v)) == 1) {
+                    continue;
+                }
+                mEdgeFirstVertex[edge] = vertex;
+                mEdgeIds[edge] = ids.get(l);
+                for (int p = first; p <= v; p++, vertex++) {
+                    mX[vertex] = (line[p * 2] - mOriginLongitude) * mMetersPerDegreeLongitude;
+                    mY[vertex] = (line[p * 2 + 1] - mOriginLatitude) * mMetersPerDegreeLatitude;
+                    mAlong[vertex] = p == first ? 0 : mAlong[vertex - 1]
+                            + Math.hypot(mX[vertex] - mX[vertex - 1], mY[vertex] - mY[vertex - 1]);
+                    mSegmentEdge[vertex] = p == v ? -1 : edge;
+                }
+                mEdgeStartNode[edge] = node(nodes, key(line, first));
+                mEdgeEndNode[edge] = node(nodes, key(line, v));
+                edge++;
+                first = v;
+            }
+        }
+        mEdgeFirstVertex[edgeCount] = vertex;
+
+        mNodeFirstEdge = new int[nodes.size() + 1];
+        mNodeEdges = new int[edgeCount * 2];
+        for (int e = 0; e < edgeCount; e++) {
+            mNodeFirstEdge[mEdgeStartNode[e] + 1]++;
+            mNodeFirstEdge[mEdgeEndNode[e] + 1]++;
+        }
+        for (int n = 0; n < nodes.size(); n++) {
+            mNodeFirstEdge[n + 1] += mNodeFirstEdge[n];
+        }
+        int[] fill = new int[nodes.size()];
+        for (int e = 0; e < edgeCount; e++) {
+            mNodeEdges[mNodeFirstEdge[mEdgeStartNode[e]] + fill[mEdgeStartNode[e]]++] = e;
+            mNodeEdges[mNodeFirstEdge[mEdgeEndNode[e]] + fill[mEdgeEndNode[e]]++] = e;
+        }
+
+        mMinX = (minLng - mOriginLongitude) * mMetersPerDegreeLongitude;
+        mMinY = (minLat - mOriginLatitude) * mMetersPerDegreeLatitude;
+        double width = (maxLng - minLng) * mMetersPerDegreeLongitude;
+        double height = (maxLat - minLat) * mMetersPerDegreeLatitude;
+        mCellSize = Math.max(MIN_CELL_METERS, Math.sqrt(width * height / MAX_CELLS));
+        mColumns = (int) (width / mCellSize) + 1;
+        mRows = (int) (height / mCellSize) + 1;
+        mCellFirstSegment = new int[mColumns * mRows + 1];
+        indexSegments(null);
+        for (int c = 0; c < mColumns * mRows; c++) {
+            mCellFirstSegment[c + 1] += mCellFirstSegment[c];
+        }
+        mCellSegments = new int[mCellFirstSegment[mColumns * mRows]];
+        indexSegments(new int[mColumns * mRows]);
+    }
+
+    // Vertices closer than about a centimeter are the same point.
+    private static long key(double[] line, int vertex) {
+        return (Math.round(line[vertex * 2 + 1] * 1e7) << 32) ^ (Math.round(line[vertex * 2] * 1e7) & 0xffffffffL);
+    }
+
+    private static int node(Map<Long, Integer> nodes, long key) {
+        Integer node = nodes.get(key);
+        if (node == null) {
+            node = nodes.size();
+            nodes.put(key, node);
+        }
+        return node;
+    }
+
+    /**
+     * Walks every segment in steps of half a cell. The first pass, without
+     * fill, counts the segments of each cell, the second one lists them.
+     */
+    private void indexSegments(int[] fill) {
+        for (int i = 0; i < mSegmentEdge.length; i++) {
+            if (mSegmentEdge[i] < 0) {
+                continue;
+            }
+            double length = mAlong[i + 1] - mAlong[i];
+            int steps = (int) Math.ceil(length / (mCellSize / 2)) + 1;
+            int lastCell = -1;
+            for (int s = 0; s <= steps; s++) {
+                double t = (double) s / steps;
+                int cell = cell(mX[i] + (mX[i + 1] - mX[i]) * t, mY[i] + (mY[i + 1] - mY[i]) * t);
+                if (cell == lastCell) {
+                    continue;
+                }
+                lastCell = cell;
+                if (fill == null) {
+                    mCellFirstSegment[cell + 1]++;
+                } else {
+                    mCellSegments[mCellFirstSegment[cell] + fill[cell]++] = i;
+                }
+            }
+        }
+    }
+
+    private int cell(double x, double y) {
+        int column = Math.max(0, Math.min(mColumns - 1, (int) ((x - mMinX) / mCellSize)));
+        int row = Math.max(0, Math.min(mRows - 1, (int) ((y - mMinY) / mCellSize)));
+        return row * mColumns + column;
+    }
+
+    public double toX(double longitude) {
+        return (longitude - mOriginLongitude) * mMetersPerDegreeLongitude;
+    }
+
+    public double toY(double latitude) {
+        return (latitude - mOriginLatitude) * mMetersPerDegreeLatitude;
+    }
+
+    public double toLongitude(double x) {
+        return mOriginLongitude + x / mMetersPerDegreeLongitude;
+    }
+
+    public double toLatitude(double y) {
+        return mOriginLatitude + y / mMetersPerDegreeLatitude;
+    }
+
+    public String getEdgeId(int edge) {
+        return mEdgeIds[edge];
+    }
+
+    public double getEdgeLength(int edge) {
+        return mAlong[mEdgeFirstVertex[edge + 1] - 1];
+    }
+
+    /**
+     * Fills out with the closest position of each edge within radius meters
+     * of the projected point (x, y).
+     *
+     * @return the number of candidates found.
+     */
+    public int findCandidates(double x, double y, double radius, Candidates out) {
+        out.count = 0;
+        if (x < mMinX - radius || y < mMinY - radius
+                || x > mMinX + mColumns * mCellSize + radius || y > mMinY + mRows * mCellSize + radius) {
+            return 0;
+        }
+        int firstColumn = Math.max(0, (int) Math.floor((x - radius - mMinX) / mCellSize));
+        int lastColumn = Math.min(mColumns - 1, (int) Math.floor((x + radius - mMinX) / mCellSize));
+        int firstRow = Math.max(0, (int) Math.floor((y - radius - mMinY) / mCellSize));
+        int lastRow = Math.min(mRows - 1, (int) Math.floor((y + radius - mMinY) / mCellSize));
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int cell = row * mColumns + column;
+                for (int s = mCellFirstSegment[cell]; s < mCellFirstSegment[cell + 1]; s++) {
+                    int i = mCellSegments[s];
+                    double dx = mX[i + 1] - mX[i];
+                    double dy = mY[i + 1] - mY[i];
+                    double lengthSquared = dx * dx + dy * dy;
+                    double t = lengthSquared == 0 ? 0
+                            : Math.max(0, Math.min(1, ((x - mX[i]) * dx + (y - mY[i]) * dy) / lengthSquared));
+                    double px = mX[i] + dx * t;
+                    double py = mY[i] + dy * t;
+                    double distance = Math.sqrt((x - px) * (x - px) + (y - py) * (y - py));
+                    if (distance <= radius) {
+                        out.offer(mSegmentEdge[i], mAlong[i] + (mAlong[i + 1] - mAlong[i]) * t, px, py, distance);
+                    }
+                }
+            }
+        }
+        return out.count;
+    }
+
+    /**
+     * Runs a shortest path search along the network from a position on an
+     * edge, settling every node up to maxDistance meters away, for
+     * routeDistance to read.
+     */
+    public void search(int fromEdge, double fromAlong, double maxDistance, Search search) {
+        search.begin(fromEdge, fromAlong, maxDistance);
+        search.reach(mEdgeStartNode[fromEdge], fromAlong);
+        search.reach(mEdgeEndNode[fromEdge], getEdgeLength(fromEdge) - fromAlong);
+        while (search.mSize > 0) {
+            int node = search.pop();
+            double distance = search.mDistance[node];
+            for (int n = mNodeFirstEdge[node]; n < mNodeFirstEdge[node + 1]; n++) {
+                int edge = mNodeEdges[n];
+                int other = mEdgeStartNode[edge] == node ? mEdgeEndNode[edge] : mEdgeStartNode[edge];
+                search.reach(other, distance + getEdgeLength(edge));
+            }
+        }
+    }
+
+    /**
+     * Shortest distance along the network from the origin of the last
+     * search to a position on an edge.
+     *
+     * @return the distance in meters, or infinity if it exceeds the bound of the search.
+     */
+    public double routeDistance(Search search, int toEdge, double toAlong) {
+        double best = Double.POSITIVE_INFINITY;
+        if (toEdge == search.mFromEdge) {
+            best = Math.abs(toAlong - search.mFromAlong);
+        }
+        best = Math.min(best, search.distance(mEdgeStartNode[toEdge]) + toAlong);
+        best = Math.min(best, search.distance(mEdgeEndNode[toEdge]) + getEdgeLength(toEdge) - toAlong);
+        return best <= search.mMaxDistance ? best : Double.POSITIVE_INFINITY;
+    }
+}
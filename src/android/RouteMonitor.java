@@ -0,0 +1,274 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.location.Location;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Follows the device along a dispatched route. Each fix is projected on the
+ * nearest route segment, found through a grid of segments, which gives its
+ * distance along and across the route. Only offRoute, onRoute and
+ * milestone events are sent to JavaScript.
+ */
+public class RouteMonitor implements LocationConsumer {
+
+    // Internal watch keeping location updates running while a route is followed.
+    public static final String WATCH_ID = "route";
+
+    // About 555 m of latitude.
+    private static final double CELL_SIZE = 0.005;
+    private static final double CELL_METERS = Math.toRadians(CELL_SIZE) * LocationUtils.EARTH_RADIUS;
+
+    public static final double DEFAULT_OFF_ROUTE_DISTANCE = 50;
+
+    /**
+     * A route geometry with its segment grid, and the state of its progress.
+     * The state is only touched on the location thread.
+     */
+    private static class Route {
+        final double[] latitudes;
+        final double[] longitudes;
+        // Distance along the route of each vertex, in meters.
+        final double[] along;
+        final Map<Long, int[]> cells;
+        final CallbackContext callbackContext;
+
+        final double offRouteDistance;
+        final double onRouteDistance;
+        final double milestoneInterval;
+
+        boolean offRoute;
+        double progress;
+        double nextMilestone;
+        // Sequence of the last fix each segment was tested against.
+        final long[] testedAt;
+        long sequence;
+
+        Route(JSONArray points, JSONObject options, CallbackContext callbackContext) throws JSONException {
+            if (points == null || points.length() < 2) {
+                throw new JSONException("A route needs at least 2 points");
+            }
+            int count = points.length();
+            latitudes = new double[count];
+            longitudes = new double[count];
+            along = new double[count];
+            for (int i = 0; i < count; i++) {
+                JSONArray point = points.getJSONArray(i);
+                latitudes[i] = point.getDouble(0);
+                longitudes[i] = point.getDouble(1);
+                if (i > 0) {
+                    along[i] = along[i - 1] + LocationUtils.distanceBetween(latitudes[i - 1],
+                            longitudes[i - 1], latitudes[i], longitudes[i]);
+                }
+            }
+            this.callbackContext = callbackContext;
+            offRouteDistance = options == null ? DEFAULT_OFF_ROUTE_DISTANCE
+                    : options.optDouble("offRouteDistance", DEFAULT_OFF_ROUTE_DISTANCE);
+            onRouteDistance = options == null ? offRouteDistance / 2
+                    : Math.min(options.optDouble("onRouteDistance", offRouteDistance / 2), offRouteDistance);
+            milestoneInterval = options == null ? 0 : Math.max(0, options.optDouble("milestoneInterval", 0));
+            nextMilestone = milestoneInterval > 0 ? milestoneInterval : Double.MAX_VALUE;
+            testedAt = new long[count - 1];
+            cells = buildCells();
+        }
+
+        /**
+         * Walks every segment in steps of half a cell, so each cell it crosses
+         * lists it, however long and diagonal it is.
+         */
+        private Map<Long, int[]> buildCells() {
+            Map<Long, List<Integer>> lists = new HashMap<Long, List<Integer>>();
+            for (int i = 0; i < testedAt.length; i++) {
+                int steps = (int) Math.ceil((along[i + 1] - along[i]) / (CELL_METERS / 2)) + 1;
+                long lastKey = 0;
+                for (int s = 0; s <= steps; s++) {
+                    double t = (double) s / steps;
+                    double lat = latitudes[i] + (latitudes[i + 1] - latitudes[i]) * t;
+                    double lng = longitudes[i] + (longitudes[i + 1] - longitudes[i]) * t;
+                    long key = key(cell(lat), cell(lng));
+                    if (s > 0 && key == lastKey) {
+                        continue;
+                    }
+                    lastKey = key;
+                    List<Integer> list = lists.get(key);
+                    if (list == null) {
+                        list = new ArrayList<Integer>(2);
+                        lists.put(key, list);
+                    }
+                    if (list.isEmpty() || list.get(list.size() - 1) != i) {
+                        list.add(i);
+                    }
+                }
+            }
+            Map<Long, int[]> cells = new HashMap<Long, int[]>(lists.size() * 2);
+            for (Map.Entry<Long, List<Integer>> entry : lists.entrySet()) {
+                List<Integer> list = entry.getValue();
+                int[] segments = new int[list.size()];
+                for (int i = 0; i < segments.length; i++) {
+                    segments[i] = list.get(i);
+                }
+                cells.put(entry.getKey(), segments);
+            }
+            return cells;
+        }
+
+        double length() {
+            return along[along.length - 1];
+        }
+    }
+
+    private volatile Route mRoute;
+
+    private static long cell(double degrees) {
+        return (long) Math.floor(degrees / CELL_SIZE);
+    }
+
+    private static long key(long row, long column) {
+        return (row << 32) ^ (column & 0xffffffffL);
+    }
+
+    /**
+     * Follows a new route, given as [[latitude, longitude], ...]. Events go to
+     * the given callback.
+     */
+    public void setRoute(JSONArray points, JSONObject options, CallbackContext callbackContext)
+            throws JSONException {
+        mRoute = new Route(points, options, callbackContext);
+    }
+
+    public void clearRoute() {
+        mRoute = null;
+    }
+
+    public boolean hasRoute() {
+        return mRoute != null;
+    }
+
+    @Override
+    public void onLocation(Location location) {
+        Route route = mRoute;
+        if (route == null) {
+            return;
+        }
+        double lat = location.getLatitude();
+        double lng = location.getLongitude();
+        long sequence = ++route.sequence;
+
+        // Segments further than twice the off-route distance are not worth projecting on.
+        double radius = route.offRouteDistance * 2;
+        double metersPerDegreeLat = Math.toRadians(1) * LocationUtils.EARTH_RADIUS;
+        double metersPerDegreeLng = metersPerDegreeLat * Math.cos(Math.toRadians(lat));
+        long rows = (long) Math.ceil(radius / CELL_METERS);
+        long columns = (long) Math.ceil(radius / Math.max(CELL_METERS * Math.cos(Math.toRadians(lat)), 1));
+        long row = cell(lat);
+        long column = cell(lng);
+
+        double bestAcross = Double.MAX_VALUE;
+        double bestAlong = 0;
+        for (long r = row - rows; r <= row + rows; r++) {
+            for (long c = column - columns; c <= column + columns; c++) {
+                int[] segments = route.cells.get(key(r, c));
+                if (segments == null) {
+                    continue;
+                }
+                for (int i : segments) {
+                    if (route.testedAt[i] == sequence) {
+                        continue;
+                    }
+                    route.testedAt[i] = sequence;
+
+                    // Project on the segment in a local plane centered on the fix.
+                    double ax = (route.longitudes[i] - lng) * metersPerDegreeLng;
+                    double ay = (route.latitudes[i] - lat) * metersPerDegreeLat;
+                    double bx = (route.longitudes[i + 1] - lng) * metersPerDegreeLng;
+                    double by = (route.latitudes[i + 1] - lat) * metersPerDegreeLat;
+                    double dx = bx - ax;
+                    double dy = by - ay;
+                    double lengthSquared = dx * dx + dy * dy;
+                    double t = lengthSquared == 0 ? 0
+                            : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared));
+                    double px = ax + dx * t;
+                    double py = ay + dy * t;
+                    double across = Math.sqrt(px * px + py * py);
+                    double along = route.along[i] + (route.along[i + 1] - route.along[i]) * t;
+                    // On overlapping legs, stay on the one closest to the current progress.
+                    if (across < bestAcross - 1 || (across < bestAcross + 1
+                            && Math.abs(along - route.progress) < Math.abs(bestAlong - route.progress))) {
+                        bestAcross = across;
+                        bestAlong = along;
+                    }
+                }
+            }
+        }
+
+        boolean found = bestAcross != Double.MAX_VALUE;
+        if (!route.offRoute && (!found || bestAcross > route.offRouteDistance)) {
+            route.offRoute = true;
+            report(route, "offRoute", location, found, bestAlong, bestAcross, Double.NaN);
+        } else if (route.offRoute && found && bestAcross <= route.onRouteDistance) {
+            route.offRoute = false;
+            report(route, "onRoute", location, true, bestAlong, bestAcross, Double.NaN);
+        }
+
+        if (found && !route.offRoute) {
+            route.progress = bestAlong;
+            if (bestAlong >= route.nextMilestone) {
+                // Only the last milestone passed since the previous fix is reported.
+                double milestone = Math.floor(bestAlong / route.milestoneInterval) * route.milestoneInterval;
+                route.nextMilestone = milestone + route.milestoneInterval;
+                report(route, "milestone", location, true, bestAlong, bestAcross, milestone);
+            }
+        }
+    }
+
+    private void report(Route route, String type, Location location, boolean found,
+            double along, double across, double milestone) {
+        if (route.callbackContext == null) {
+            return;
+        }
+        JSONObject o = new JSONObject();
+        try {
+            o.put("type", type);
+            // Unknown when no segment is within twice the off-route distance.
+            o.put("along", found ? along : JSONObject.NULL);
+            o.put("across", found ? across : JSONObject.NULL);
+            o.put("remaining", found ? route.length() - along : JSONObject.NULL);
+            if (!Double.isNaN(milestone)) {
+                o.put("milestone", milestone);
+            }
+            o.put("position", LocationUtils.returnLocationJSON(location));
+        } catch (JSONException e) {
+            return;
+        }
+        PluginResult result = new PluginResult(PluginResult.Status.OK, o);
+        result.setKeepCallback(true);
+        route.callbackContext.sendPluginResult(result);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Runs every location timeout of the plugin on one looper, instead of a
+ * thread per request. Each task is its own deadline and is cancelled on its
+ * own, so answering one request leaves the others armed.
+ */
+public class TimeoutScheduler {
+
+    private final Handler mHandler;
+
+    public TimeoutScheduler(Looper looper) {
+        mHandler = new Handler(looper);
+    }
+
+    /**
+     * (Re)arms a timeout, replacing any deadline the task already had.
+     */
+    public void schedule(Runnable task, long timeout) {
+        mHandler.removeCallbacks(task);
+        mHandler.postDelayed(task, timeout);
+    }
+
+    public void cancel(Runnable task) {
+        mHandler.removeCallbacks(task);
+    }
+
+    public void cancelAll() {
+        mHandler.removeCallbacksAndMessages(null);
+    }
+}
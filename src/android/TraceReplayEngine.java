@@ -0,0 +1,204 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import com.google.android.gms.location.LocationRequest;
+
+import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Engine replaying a recorded LocationTrace, for reproducing field bugs and
+ * load testing without a device fix. Fixes go through the same pipeline and
+ * dispatch as real ones.
+ *
+ * Elapsed realtime follows the trace clock, so speeds seen by the pipeline
+ * and the watch gates stay those of the recording whatever the replay speed.
+ */
+public class TraceReplayEngine implements LocationEngine {
+
+    public static final String PROVIDER = "replay";
+
+    // Fixes handed over at once when they are due together, or with an unbounded speed.
+    private static final int MAX_BATCH = 100;
+
+    private final Callback mCallback;
+    private final Handler mHandler;
+    private final LocationTrace mTrace;
+    // Replay speed factor, 1 is real time and 0 or less is as fast as possible.
+    private final double mSpeed;
+    private final boolean mLoop;
+
+    private volatile boolean mConnected;
+    private volatile Location mLastLocation;
+    private boolean mUpdating;
+    private boolean mSingleUpdate;
+
+    private int mIndex;
+    private boolean mRunning;
+    // Realtime and trace time at which the replay (re)started.
+    private long mStartedAt;
+    private long mTraceStartedAt;
+    // Offset mapping trace times onto the elapsed realtime clock.
+    private long mElapsedOffset;
+
+    private final Runnable mTick = new Runnable() {
+        @Override
+        public void run() {
+            tick();
+        }
+    };
+
+    public TraceReplayEngine(Callback callback, Looper looper, LocationTrace trace,
+            double speed, boolean loop) {
+        mCallback = callback;
+        mHandler = new Handler(looper);
+        mTrace = trace;
+        mSpeed = speed;
+        mLoop = loop;
+        mElapsedOffset = SystemClock.elapsedRealtime() - trace.getTime(0);
+    }
+
+    @Override
+    public void connect() {
+        mConnected = true;
+        mCallback.onConnected();
+    }
+
+    @Override
+    public synchronized void disconnect() {
+        mConnected = false;
+        mUpdating = false;
+        mSingleUpdate = false;
+        pause();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return mConnected;
+    }
+
+    @Override
+    public Location getLastLocation() {
+        return mLastLocation;
+    }
+
+    /**
+     * Starts the replay, the request interval is ignored: fixes come at the
+     * pace of the trace.
+     */
+    @Override
+    public synchronized void requestUpdates(LocationRequest request) {
+        mUpdating = true;
+        resume();
+    }
+
+    @Override
+    public synchronized void removeUpdates() {
+        mUpdating = false;
+        if (!mSingleUpdate) {
+            pause();
+        }
+    }
+
+    @Override
+    public synchronized void requestSingleUpdate() {
+        mSingleUpdate = true;
+        resume();
+    }
+
+    @Override
+    public synchronized void removeSingleUpdate() {
+        mSingleUpdate = false;
+        if (!mUpdating) {
+            pause();
+        }
+    }
+
+    @Override
+    public void checkLocationSettings(LocationRequest request) {
+        mCallback.onSettingsResult(null);
+    }
+
+    private void resume() {
+        if (!mRunning && mIndex < mTrace.size()) {
+            mRunning = true;
+            mStartedAt = SystemClock.elapsedRealtime();
+            mTraceStartedAt = mTrace.getTime(mIndex);
+            // Fixes replayed after a pause are fresh, the elapsed clock never goes back.
+            mElapsedOffset = Math.max(mElapsedOffset, mStartedAt - mTraceStartedAt);
+            mHandler.post(mTick);
+        }
+    }
+
+    private void pause() {
+        mRunning = false;
+        mHandler.removeCallbacks(mTick);
+    }
+
+    private void tick() {
+        List<Location> due;
+        boolean single;
+        synchronized (this) {
+            if (!mRunning) {
+                return;
+            }
+            long traceNow = mSpeed > 0
+                    ? mTraceStartedAt + (long) ((SystemClock.elapsedRealtime() - mStartedAt) * mSpeed)
+                    : Long.MAX_VALUE;
+            due = new ArrayList<Location>();
+            while (mIndex < mTrace.size() && due.size() < MAX_BATCH && mTrace.getTime(mIndex) <= traceNow) {
+                long elapsed = mTrace.getTime(mIndex) + mElapsedOffset;
+                due.add(mTrace.getLocation(mIndex, PROVIDER, elapsed * 1000000));
+                mIndex++;
+            }
+            if (mIndex >= mTrace.size() && mLoop) {
+                // Keep the elapsed clock increasing across laps.
+                mElapsedOffset += mTrace.getTime(mTrace.size() - 1) - mTrace.getTime(0) + 1000;
+                mIndex = 0;
+                mStartedAt = SystemClock.elapsedRealtime();
+                mTraceStartedAt = mTrace.getTime(0);
+            }
+            single = mSingleUpdate;
+            if (mIndex < mTrace.size()) {
+                long delay = mSpeed > 0 && due.size() < MAX_BATCH
+                        ? (long) ((mTrace.getTime(mIndex) - traceNow) / mSpeed) : 0;
+                mHandler.postDelayed(mTick, Math.max(0, delay));
+            } else {
+                mRunning = false;
+            }
+        }
+
+        if (due.isEmpty()) {
+            return;
+        }
+        mLastLocation = due.get(due.size() - 1);
+        if (single) {
+            mCallback.onSingleLocation(mLastLocation);
+        }
+        if (mUpdating) {
+            mCallback.onLocations(due);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Streams a time range of a TrackStore to a file in GPX, GeoJSON or the
+ * compact delta format. Records are encoded into one fixed-size chunk that is
+ * written through a FileChannel whenever it fills up, so memory stays flat
+ * whatever the length of the track.
+ *
+ * The delta format starts with the ASCII magic "GPSD" and a version byte,
+ * followed by one record per fix until the end of the file:
+ *
+ * - a flags byte: provider code in bits 0-2, altitude present in bit 3,
+ *   bearing present in bit 4,
+ * - time in milliseconds, latitude and longitude in 1e-7 degrees, each as a
+ *   zigzag varint of the difference with the previous fix,
+ * - if present, altitude in decimeters as a zigzag varint of the difference
+ *   with the previous altitude,
+ * - accuracy in decimeters and speed in cm/s as varints,
+ * - if present, bearing in hundredths of a degree as a varint.
+ */
+public class TrackExporter implements TrackStore.RecordVisitor {
+
+    public static final String FORMAT_GPX = "gpx";
+    public static final String FORMAT_GEOJSON = "geojson";
+    public static final String FORMAT_DELTA = "delta";
+
+    public static final int DELTA_VERSION = 1;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // Longest encoding of one fix in any format. The chunk is flushed before it could overflow.
+    private static final int MAX_RECORD_BYTES = 512;
+
+    private static final int FLAG_ALTITUDE = 1 << 3;
+    private static final int FLAG_BEARING = 1 << 4;
+
+    private final String mFormat;
+    private final FileChannel mChannel;
+    private final ByteBuffer mChunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+    private final StringBuilder mText = new StringBuilder(MAX_RECORD_BYTES);
+    private final SimpleDateFormat mDateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+    private final Date mDate = new Date();
+
+    // GeoJSON writes coordinates in a first pass and times in a second one.
+    private boolean mTimesPass = false;
+    private boolean mFirst = true;
+
+    private long mLastTime;
+    private long mLastLatitude;
+    private long mLastLongitude;
+    private long mLastAltitude;
+
+    private TrackExporter(String format, FileChannel channel) {
+        mFormat = format;
+        mChannel = channel;
+        mDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    /**
+     * Writes every fix with from <= time <= to to the file. The file is
+     * written under a temporary name and renamed once complete, so a partial
+     * export never replaces a previous one.
+     *
+     * @return the number of fixes exported.
+     * @throws IllegalArgumentException if the format is unknown.
+     */
+    public static int export(TrackStore store, long from, long to, String format, File file) throws IOException {
+        if (!FORMAT_GPX.equals(format) && !FORMAT_GEOJSON.equals(format) && !FORMAT_DELTA.equals(format)) {
+            throw new IllegalArgumentException("Unknown export format: " + format);
+        }
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        File partial = new File(file.getPath() + ".part");
+        FileOutputStream out = new FileOutputStream(partial);
+        int count;
+        try {
+            TrackExporter exporter = new TrackExporter(format, out.getChannel());
+            count = exporter.write(store, from, to);
+            out.getChannel().force(false);
+        } finally {
+            out.close();
+        }
+        if (!partial.renameTo(file)) {
+            partial.delete();
+            throw new IOException("Unable to write " + file);
+        }
+        return count;
+    }
+
+    private int write(TrackStore store, long from, long to) throws IOException {
+        // Located once, so the two GeoJSON passes cover the same fixes while the track grows.
+        TrackStore.Snapshot records = store.snapshot(from, to);
+        int count;
+        if (FORMAT_GPX.equals(mFormat)) {
+            text("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<gpx version=\"1.1\" creator=\"cordova-plugin-gpslocation\""
+                    + " xmlns=\"http://www.topografix.com/GPX/1/1\">\n<trk><trkseg>\n");
+            count = records.forEach(this);
+            text("</trkseg></trk>\n</gpx>\n");
+        } else if (FORMAT_GEOJSON.equals(mFormat)) {
+            text("{\"type\":\"Feature\",\"geometry\":{\"type\":\"LineString\",\"coordinates\":[");
+            count = records.forEach(this);
+            text("]},\"properties\":{\"coordTimes\":[");
+            mTimesPass = true;
+            mFirst = true;
+            records.forEach(this);
+            text("]}}\n");
+        } else {
+            mChunk.put((byte) 'G').put((byte) 'P').put((byte) 'S').put((byte) 'D').put((byte) DELTA_VERSION);
+            count = records.forEach(this);
+        }
+        flush();
+        return count;
+    }
+
+    @Override
+    public void visit(long time, double latitude, double longitude, float altitude, float accuracy,
+            float bearing, float speed, int provider) throws IOException {
+        if (mChunk.remaining() < MAX_RECORD_BYTES) {
+            flush();
+        }
+        if (FORMAT_DELTA.equals(mFormat)) {
+            writeDelta(time, latitude, longitude, altitude, accuracy, bearing, speed, provider);
+            return;
+        }
+
+        mText.setLength(0);
+        if (FORMAT_GPX.equals(mFormat)) {
+            mText.append("<trkpt lat=\"");
+            appendFixed(mText, latitude, 7);
+            mText.append("\" lon=\"");
+            appendFixed(mText, longitude, 7);
+            mText.append("\">");
+            if (!Float.isNaN(altitude)) {
+                mText.append("<ele>");
+                appendFixed(mText, altitude, 1);
+                mText.append("</ele>");
+            }
+            mText.append("<time>");
+            appendTime(time);
+            mText.append("</time>");
+            String providerName = LocationUtils.providerName(provider);
+            if (providerName != null) {
+                mText.append("<src>").append(providerName).append("</src>");
+            }
+            mText.append("</trkpt>\n");
+        } else {
+            if (!mFirst) {
+                mText.append(',');
+            }
+            if (mTimesPass) {
+                mText.append('"');
+                appendTime(time);
+                mText.append('"');
+            } else {
+                mText.append('[');
+                appendFixed(mText, longitude, 7);
+                mText.append(',');
+                appendFixed(mText, latitude, 7);
+                if (!Float.isNaN(altitude)) {
+                    mText.append(',');
+                    appendFixed(mText, altitude, 1);
+                }
+                mText.append(']');
+            }
+        }
+        mFirst = false;
+        text(mText);
+    }
+
+    private void writeDelta(long time, double latitude, double longitude, float altitude, float accuracy,
+            float bearing, float speed, int provider) {
+        long lat = Math.round(latitude * 1e7);
+        long lng = Math.round(longitude * 1e7);
+        int flags = provider & 0x7;
+        if (!Float.isNaN(altitude)) {
+            flags |= FLAG_ALTITUDE;
+        }
+        if (!Float.isNaN(bearing)) {
+            flags |= FLAG_BEARING;
+        }
+        mChunk.put((byte) flags);
+        putSigned(time - mLastTime);
+        putSigned(lat - mLastLatitude);
+        putSigned(lng - mLastLongitude);
+        mLastTime = time;
+        mLastLatitude = lat;
+        mLastLongitude = lng;
+        if ((flags & FLAG_ALTITUDE) != 0) {
+            long alt = Math.round(altitude * 10.0);
+            putSigned(alt - mLastAltitude);
+            mLastAltitude = alt;
+        }
+        putUnsigned(Math.max(0, Math.round(accuracy * 10.0)));
+        putUnsigned(Math.max(0, Math.round(speed * 100.0)));
+        if ((flags & FLAG_BEARING) != 0) {
+            putUnsigned(Math.round(bearing * 100.0));
+        }
+    }
+
+    private void putSigned(long value) {
+        putUnsigned((value << 1) ^ (value >> 63));
+    }
+
+    private void putUnsigned(long value) {
+        while ((value & ~0x7FL) != 0) {
+            mChunk.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        mChunk.put((byte) value);
+    }
+
+    private void appendTime(long time) {
+        mDate.setTime(time);
+        mText.append(mDateFormat.format(mDate));
+    }
+
+    /**
+     * Appends a number with a fixed count of decimals. Unlike Double.toString,
+     * it never switches to exponent notation, which GPX and GeoJSON readers
+     * do not all accept.
+     */
+    private static void appendFixed(StringBuilder text, double value, int decimals) {
+        long scale = 1;
+        for (int i = 0; i < decimals; i++) {
+            scale *= 10;
+        }
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            text.append('-');
+        }
+        text.append(scaled / scale);
+        if (decimals > 0) {
+            text.append('.');
+            long fraction = scaled % scale;
+            for (long digit = scale / 10; digit > 1 && fraction < digit; digit /= 10) {
+                text.append('0');
+            }
+            text.append(fraction);
+        }
+    }
+
+    // Every character written is ASCII, so each one is a single byte in UTF-8.
+    private void text(CharSequence text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            if (!mChunk.hasRemaining()) {
+                flush();
+            }
+            mChunk.put((byte) text.charAt(i));
+        }
+    }
+
+    private void flush() throws IOException {
+        mChunk.flip();
+        while (mChunk.hasRemaining()) {
+            mChannel.write(mChunk);
+        }
+        mChunk.clear();
+    }
+}
@@ -0,0 +1,325 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import android.location.Location;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only log of fixes on disk. Fixes are fixed-size records written to
+ * memory-mapped segment files. A full segment is rotated, and the oldest
+ * segments are deleted so the log stays within maxSegments. The log survives
+ * WebView reloads and a time range is read back in one pass.
+ */
+public class TrackStore implements LocationConsumer {
+
+    private static final String TAG = "GPSLocationTrack";
+    private static final String SUFFIX = ".trk";
+
+    // time (long), latitude, longitude (double), altitude, accuracy, bearing, speed (float),
+    // provider code (int) and padding. A zero time marks the unwritten tail of a segment.
+    public static final int RECORD_SIZE = 48;
+
+    public static final int DEFAULT_SEGMENT_RECORDS = 4096;
+    public static final int DEFAULT_MAX_SEGMENTS = 64;
+
+    private final File mDirectory;
+    private final int mSegmentRecords;
+    private final int mMaxSegments;
+
+    // Segment sequence numbers, oldest first. The last one is open for appending.
+    private final List<Long> mSegments = new ArrayList<Long>();
+    private MappedByteBuffer mCurrent;
+    private long mLastTime;
+
+    public TrackStore(File directory, int segmentRecords, int maxSegments) throws IOException {
+        mDirectory = directory;
+        mSegmentRecords = segmentRecords;
+        mMaxSegments = Math.max(2, maxSegments);
+
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Unable to create " + mDirectory);
+        }
+        String[] names = mDirectory.list();
+        if (names != null) {
+            Arrays.sort(names);
+            for (String name : names) {
+                if (name.endsWith(SUFFIX)) {
+                    mSegments.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+                }
+            }
+        }
+        if (mSegments.isEmpty()) {
+            openSegment(0);
+        } else {
+            reopenLastSegment();
+        }
+    }
+
+    @Override
+    public void onLocation(Location location) {
+        try {
+            append(location);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to record fix: " + e.getMessage());
+        }
+    }
+
+    public synchronized void append(Location location) throws IOException {
+        long time = location.getTime();
+        if (time <= mLastTime) {
+            // Range reads binary search each segment, so records must stay in time order.
+            return;
+        }
+        if (mCurrent == null) {
+            throw new IOException("Track store is closed");
+        }
+        if (!mCurrent.hasRemaining()) {
+            rotate();
+        }
+        mCurrent.putLong(time);
+        mCurrent.putDouble(location.getLatitude());
+        mCurrent.putDouble(location.getLongitude());
+        mCurrent.putFloat(location.hasAltitude() ? (float) location.getAltitude() : Float.NaN);
+        mCurrent.putFloat(location.getAccuracy());
+        mCurrent.putFloat(location.hasBearing() && location.hasSpeed() ? location.getBearing() : Float.NaN);
+        mCurrent.putFloat(location.getSpeed());
+        mCurrent.putInt(LocationUtils.providerCode(location.getProvider()));
+        mCurrent.putInt(0);
+        mLastTime = time;
+    }
+
+    /**
+     * Receives the fixes of a range one by one, with their fields as stored.
+     * Missing altitude and bearing are NaN.
+     */
+    public interface RecordVisitor {
+
+        void visit(long time, double latitude, double longitude, float altitude, float accuracy,
+                float bearing, float speed, int provider) throws IOException;
+    }
+
+    /**
+     * Records of one segment within a time range, end excluded.
+     */
+    private static class Range {
+        final ByteBuffer segment;
+        final int start;
+        final int end;
+
+        Range(ByteBuffer segment, int start, int end) {
+            this.segment = segment;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Locates every record with from <= time <= to. Mappings stay valid after
+     * the lock is released, even if their segment is rotated out, so callers
+     * can walk the ranges without blocking appends.
+     */
+    private synchronized List<Range> ranges(long from, long to) throws IOException {
+        List<Range> ranges = new ArrayList<Range>();
+        for (int i = 0; i < mSegments.size(); i++) {
+            ByteBuffer segment = i == mSegments.size() - 1 && mCurrent != null
+                    ? mCurrent.duplicate().order(ByteOrder.LITTLE_ENDIAN) : map(mSegments.get(i), false);
+            int count = countRecords(segment);
+            if (count == 0 || timeAt(segment, 0) > to || timeAt(segment, count - 1) < from) {
+                continue;
+            }
+            int start = firstIndexAtOrAfter(segment, count, from);
+            // to defaults to Long.MAX_VALUE, where to + 1 would wrap around.
+            int end = to == Long.MAX_VALUE ? count : firstIndexAtOrAfter(segment, count, to + 1);
+            if (end > start) {
+                ranges.add(new Range(segment, start, end));
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * The records of a time range as located once. Fixes appended later are
+     * not part of it, so every walk over it sees the same records.
+     */
+    public static class Snapshot {
+
+        private final List<Range> mRanges;
+
+        Snapshot(List<Range> ranges) {
+            mRanges = ranges;
+        }
+
+        /**
+         * Streams the fixes to the visitor, in time order, without loading
+         * them in memory.
+         *
+         * @return the number of fixes visited.
+         */
+        public int forEach(RecordVisitor visitor) throws IOException {
+            int visited = 0;
+            for (Range range : mRanges) {
+                ByteBuffer segment = range.segment;
+                for (int index = range.start; index < range.end; index++) {
+                    int offset = index * RECORD_SIZE;
+                    visitor.visit(segment.getLong(offset), segment.getDouble(offset + 8),
+                            segment.getDouble(offset + 16), segment.getFloat(offset + 24),
+                            segment.getFloat(offset + 28), segment.getFloat(offset + 32),
+                            segment.getFloat(offset + 36), segment.getInt(offset + 40));
+                    visited++;
+                }
+            }
+            return visited;
+        }
+    }
+
+    /**
+     * Freezes the fixes with from <= time <= to, for visitors needing
+     * several passes over the same records.
+     */
+    public Snapshot snapshot(long from, long to) throws IOException {
+        return new Snapshot(ranges(from, to));
+    }
+
+    /**
+     * Reads every fix with from <= time <= to, in the compact format of
+     * LocationUtils.writeLocation.
+     */
+    public byte[] read(long from, long to) throws IOException {
+        List<Range> ranges = ranges(from, to);
+        int total = 0;
+        for (Range range : ranges) {
+            total += range.end - range.start;
+        }
+
+        ByteBuffer out = LocationUtils.allocateRecords(total);
+        for (Range range : ranges) {
+            ByteBuffer segment = range.segment;
+            for (int index = range.start; index < range.end; index++) {
+                int offset = index * RECORD_SIZE;
+                out.putDouble(segment.getDouble(offset + 8));
+                out.putDouble(segment.getDouble(offset + 16));
+                out.putDouble(segment.getFloat(offset + 24));
+                out.putDouble(segment.getFloat(offset + 28));
+                out.putDouble(segment.getFloat(offset + 32));
+                out.putDouble(segment.getFloat(offset + 36));
+                out.putDouble(segment.getLong(offset));
+                out.putDouble(segment.getInt(offset + 40));
+            }
+        }
+        return out.array();
+    }
+
+    public synchronized void close() {
+        if (mCurrent != null) {
+            mCurrent.force();
+            mCurrent = null;
+        }
+    }
+
+    private void rotate() throws IOException {
+        mCurrent.force();
+        openSegment(mSegments.get(mSegments.size() - 1) + 1);
+        while (mSegments.size() > mMaxSegments) {
+            File oldest = segmentFile(mSegments.remove(0));
+            if (!oldest.delete()) {
+                Log.w(TAG, "Unable to delete " + oldest);
+            }
+        }
+    }
+
+    private void openSegment(long sequence) throws IOException {
+        mSegments.add(sequence);
+        mCurrent = map(sequence, true);
+    }
+
+    private void reopenLastSegment() throws IOException {
+        long sequence = mSegments.get(mSegments.size() - 1);
+        mCurrent = map(sequence, true);
+        int count = countRecords(mCurrent);
+        if (count > 0) {
+            mLastTime = timeAt(mCurrent, count - 1);
+        }
+        mCurrent.position(count * RECORD_SIZE);
+    }
+
+    private MappedByteBuffer map(long sequence, boolean writable) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(segmentFile(sequence), writable ? "rw" : "r");
+        try {
+            FileChannel channel = file.getChannel();
+            long size = writable ? (long) mSegmentRecords * RECORD_SIZE : channel.size();
+            MappedByteBuffer buffer = channel.map(
+                    writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        } finally {
+            // The mapping stays valid once the file is closed.
+            file.close();
+        }
+    }
+
+    private File segmentFile(long sequence) {
+        return new File(mDirectory, String.format("%010d%s", sequence, SUFFIX));
+    }
+
+    // Records are written in order, so the first zero time ends the segment.
+    private static int countRecords(ByteBuffer segment) {
+        int capacity = segment.capacity() / RECORD_SIZE;
+        int low = 0;
+        int high = capacity;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timeAt(segment, mid) != 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int firstIndexAtOrAfter(ByteBuffer segment, int count, long time) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timeAt(segment, mid) < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long timeAt(ByteBuffer segment, int index) {
+        return segment.getLong(index * RECORD_SIZE);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.location.Location;
+
+/**
+ * Splits the fix stream into trips and stops. A stop starts once fixes stay
+ * within stopRadius of an anchor fix for stopTime, and ends with the first
+ * fix outside it. Only stopStart events, carrying the trip leg just
+ * completed, and stopEnd events are sent to JavaScript. State is kept in
+ * primitives and only touched on the location thread.
+ */
+public class TripSegmenter implements LocationConsumer {
+
+    // Internal watch keeping location updates running while trips are segmented.
+    public static final String WATCH_ID = "trips";
+
+    public static final double DEFAULT_STOP_RADIUS = 50;
+    public static final long DEFAULT_STOP_TIME = 3 * 60 * 1000;
+
+    private final CallbackContext mCallbackContext;
+    private final double mStopRadius;
+    private final long mStopTime;
+    // Fixes less accurate than this are ignored, 0 keeps them all.
+    private final float mMaxAccuracy;
+
+    private boolean mStarted = false;
+    private boolean mStopped = false;
+
+    private double mLastLatitude;
+    private double mLastLongitude;
+
+    // First fix of the current candidate stop, times in elapsed and wall clock milliseconds.
+    private double mAnchorLatitude;
+    private double mAnchorLongitude;
+    private long mAnchorElapsed;
+    private long mAnchorTime;
+    // Trip distance when the anchor was set, the jitter around a stop is not part of the trip.
+    private double mAnchorDistance;
+
+    private long mTripElapsed;
+    private long mTripTime;
+    private double mTripDistance;
+
+    public TripSegmenter(JSONObject options, CallbackContext callbackContext) {
+        mCallbackContext = callbackContext;
+        mStopRadius = options == null ? DEFAULT_STOP_RADIUS
+                : options.optDouble("stopRadius", DEFAULT_STOP_RADIUS);
+        mStopTime = options == null ? DEFAULT_STOP_TIME
+                : options.optLong("stopTime", DEFAULT_STOP_TIME);
+        mMaxAccuracy = options == null ? 0 : (float) options.optDouble("maxAccuracy", 0);
+    }
+
+    @Override
+    public void onLocation(Location location) {
+        if (mMaxAccuracy > 0 && (!location.hasAccuracy() || location.getAccuracy() > mMaxAccuracy)) {
+            return;
+        }
+        double lat = location.getLatitude();
+        double lng = location.getLongitude();
+        long elapsed = location.getElapsedRealtimeNanos() / 1000000;
+
+        if (!mStarted) {
+            mStarted = true;
+            startTrip(location, elapsed);
+            return;
+        }
+
+        if (!mStopped) {
+            mTripDistance += LocationUtils.distanceBetween(mLastLatitude, mLastLongitude, lat, lng);
+        }
+        mLastLatitude = lat;
+        mLastLongitude = lng;
+
+        if (LocationUtils.distanceBetween(mAnchorLatitude, mAnchorLongitude, lat, lng) <= mStopRadius) {
+            if (!mStopped && elapsed - mAnchorElapsed >= mStopTime) {
+                mStopped = true;
+                // The trip ended when the device reached the stop.
+                report("stopStart", location, mAnchorTime, mTripTime, mAnchorElapsed - mTripElapsed,
+                        mAnchorDistance);
+            }
+        } else if (mStopped) {
+            mStopped = false;
+            report("stopEnd", location, mAnchorTime, 0, elapsed - mAnchorElapsed, 0);
+            startTrip(location, elapsed);
+        } else {
+            setAnchor(location, elapsed);
+        }
+    }
+
+    private void startTrip(Location location, long elapsed) {
+        mTripElapsed = elapsed;
+        mTripTime = location.getTime();
+        mTripDistance = 0;
+        mLastLatitude = location.getLatitude();
+        mLastLongitude = location.getLongitude();
+        setAnchor(location, elapsed);
+    }
+
+    private void setAnchor(Location location, long elapsed) {
+        mAnchorLatitude = location.getLatitude();
+        mAnchorLongitude = location.getLongitude();
+        mAnchorElapsed = elapsed;
+        mAnchorTime = location.getTime();
+        mAnchorDistance = mTripDistance;
+    }
+
+    /**
+     * stopStart carries the trip leg that just ended, stopEnd the duration of
+     * the stop.
+     */
+    private void report(String type, Location location, long stopTime, long tripTime,
+            long duration, double distance) {
+        if (mCallbackContext == null) {
+            return;
+        }
+        JSONObject o = new JSONObject();
+        try {
+            o.put("type", type);
+            o.put("stopTime", stopTime);
+            if (type.equals("stopStart")) {
+                JSONObject trip = new JSONObject();
+                trip.put("start", tripTime);
+                trip.put("end", stopTime);
+                trip.put("duration", duration);
+                trip.put("distance", distance);
+                o.put("trip", trip);
+            } else {
+                o.put("duration", duration);
+            }
+            o.put("position", LocationUtils.returnLocationJSON(location));
+        } catch (JSONException e) {
+            return;
+        }
+        PluginResult result = new PluginResult(PluginResult.Status.OK, o);
+        result.setKeepCallback(true);
+        mCallbackContext.sendPluginResult(result);
+    }
+}
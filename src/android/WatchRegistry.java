@@ -0,0 +1,85 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package fr.louisbl.cordova.gpslocation;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The active watches, changed from the plugin's execute() thread and iterated
+ * from the location thread. Writers publish a fresh array snapshot, so the
+ * fix fan-out iterates without locking and never sees a half-applied change.
+ */
+public class WatchRegistry {
+
+    private static final LocationWatch[] EMPTY = new LocationWatch[0];
+
+    private final ConcurrentHashMap<String, LocationWatch> mWatches =
+            new ConcurrentHashMap<String, LocationWatch>();
+    private volatile LocationWatch[] mSnapshot = EMPTY;
+
+    /**
+     * Registers a watch and returns the one it replaced, if any.
+     */
+    public synchronized LocationWatch put(LocationWatch watch) {
+        LocationWatch previous = mWatches.put(watch.id, watch);
+        publish();
+        return previous;
+    }
+
+    public synchronized LocationWatch remove(String id) {
+        LocationWatch watch = mWatches.remove(id);
+        if (watch != null) {
+            publish();
+        }
+        return watch;
+    }
+
+    /**
+     * Removes every watch and returns them.
+     */
+    public synchronized LocationWatch[] clear() {
+        LocationWatch[] removed = mSnapshot;
+        mWatches.clear();
+        mSnapshot = EMPTY;
+        return removed;
+    }
+
+    public LocationWatch get(String id) {
+        return mWatches.get(id);
+    }
+
+    public boolean contains(LocationWatch watch) {
+        return mWatches.get(watch.id) == watch;
+    }
+
+    /**
+     * The watches as of the last change. Callers must not modify the array.
+     */
+    public LocationWatch[] snapshot() {
+        return mSnapshot;
+    }
+
+    public int size() {
+        return mSnapshot.length;
+    }
+
+    private void publish() {
+        mSnapshot = mWatches.values().toArray(new LocationWatch[mWatches.size()]);
+    }
+}
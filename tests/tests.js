@@ -49,6 +49,21 @@ exports.defineAutoTests = function () {
 			expect(typeof GPSLocation.clearWatch == 'function').toBe(true);
 		});
 
+		it("geolocation.spec.9 should contain a setPipeline function", function () {
+			expect(typeof GPSLocation.setPipeline).toBeDefined();
+			expect(typeof GPSLocation.setPipeline == 'function').toBe(true);
+		});
+
+		it("geolocation.spec.10 should contain a getTrack function", function () {
+			expect(typeof GPSLocation.getTrack).toBeDefined();
+			expect(typeof GPSLocation.getTrack == 'function').toBe(true);
+		});
+
+		it("geolocation.spec.11 should contain a getStats function", function () {
+			expect(typeof GPSLocation.getStats).toBeDefined();
+			expect(typeof GPSLocation.getStats == 'function').toBe(true);
+		});
+
 	});
 
 	describe('getCurrentPosition method', function () {
@@ -26,10 +26,45 @@ var argscheck = require('cordova/argscheck'),
 	PositionError = require('./PositionError'),
 	Position = require('./Position');
 
-var timers = {}; // list of timers in use
+var timers = {}; // watchers in use, by watch id
+// Native watches shared by the watchers asking for the same native options, keyed by those options.
+var watchGroups = {};
+
+// Compact format, see LocationUtils.writeLocation: little-endian doubles, NaN for missing values.
+var RECORD_FIELDS = 8;
+var RECORD_SIZE = RECORD_FIELDS * 8;
+var PROVIDERS = [undefined, 'fused', 'gps', 'network', 'passive', 'replay', 'deadReckoning'];
+
+var nullIfNaN = function (value) {
+	return isNaN(value) ? null : value;
+};
+
+var positionsFromCompactLocations = function (buffer) {
+	var view = new DataView(buffer),
+		positions = [];
+	for (var offset = 0; offset + RECORD_SIZE <= buffer.byteLength; offset += RECORD_SIZE) {
+		positions.push(new Position(
+			{
+				latitude: view.getFloat64(offset, true),
+				longitude: view.getFloat64(offset + 8, true),
+				altitude: nullIfNaN(view.getFloat64(offset + 16, true)),
+				accuracy: view.getFloat64(offset + 24, true),
+				heading: nullIfNaN(view.getFloat64(offset + 32, true)),
+				velocity: view.getFloat64(offset + 40, true),
+				altitudeAccuracy: undefined
+			},
+			new Date(view.getFloat64(offset + 48, true)),
+			PROVIDERS[view.getFloat64(offset + 56, true)]
+		));
+	}
+	return positions;
+};
 
 var positionFromNativeLocation = function(nativeLocation){
-	return new Position(
+	if (nativeLocation instanceof ArrayBuffer) {
+		return positionsFromCompactLocations(nativeLocation)[0];
+	}
+	var position = new Position(
 		{
 			latitude: nativeLocation.latitude,
 			longitude: nativeLocation.longitude,
@@ -42,6 +77,11 @@ var positionFromNativeLocation = function(nativeLocation){
 		(nativeLocation.timestamp === undefined ? new Date() : ((nativeLocation.timestamp instanceof Date) ? nativeLocation.timestamp : new Date(nativeLocation.timestamp))),
 		nativeLocation.provider
 	);
+	// Set by the mapMatch pipeline stage: the matched edge and the raw fix before snapping.
+	if (nativeLocation.match) {
+		position.match = nativeLocation.match;
+	}
+	return position;
 }
 
 
@@ -63,22 +103,190 @@ function parseParameters(options) {
 				opt.timeout = options.timeout;
 			}
 		}
+		if (options.desiredAccuracy !== undefined && !isNaN(options.desiredAccuracy) && options.desiredAccuracy > 0) {
+			opt.desiredAccuracy = options.desiredAccuracy;
+		}
+		if (options.enableHighAccuracy !== undefined) {
+			opt.enableHighAccuracy = !!options.enableHighAccuracy;
+		}
+		if (options.interval !== undefined && !isNaN(options.interval) && options.interval >= 0) {
+			opt.interval = options.interval;
+		}
+		if (options.fastestInterval !== undefined && !isNaN(options.fastestInterval) && options.fastestInterval >= 0) {
+			opt.fastestInterval = options.fastestInterval;
+		}
+		if (options.priority !== undefined && !isNaN(options.priority)) {
+			opt.priority = options.priority;
+		}
+		if (options.smallestDisplacement !== undefined && !isNaN(options.smallestDisplacement) && options.smallestDisplacement >= 0) {
+			opt.smallestDisplacement = options.smallestDisplacement;
+		}
+		if (options.batchInterval !== undefined && !isNaN(options.batchInterval) && options.batchInterval > 0) {
+			opt.batchInterval = options.batchInterval;
+		}
+		['minDistance', 'maxAccuracy', 'minTime'].forEach(function (key) {
+			if (options[key] !== undefined && !isNaN(options[key]) && options[key] > 0) {
+				opt[key] = options[key];
+			}
+		});
+		if (options.adaptive !== undefined) {
+			opt.adaptive = !!options.adaptive;
+		}
+		if (options.deadReckoning !== undefined) {
+			opt.deadReckoning = !!options.deadReckoning;
+		}
+		if (options.estimateInterval !== undefined && !isNaN(options.estimateInterval) && options.estimateInterval > 0) {
+			opt.estimateInterval = options.estimateInterval;
+		}
+		if (options.format === 'compact') {
+			opt.format = options.format;
+		}
+		if (options.delivery === 'latest' || options.delivery === 'bounded') {
+			opt.delivery = options.delivery;
+		}
+		['maxPending', 'queueSize'].forEach(function (key) {
+			if (options[key] !== undefined && !isNaN(options[key]) && options[key] >= 1) {
+				opt[key] = options[key];
+			}
+		});
+		if (typeof options.batchCallback === 'function') {
+			opt.batchCallback = options.batchCallback;
+		}
 	}
 
 	return opt;
 }
 
-// Returns a timeout failure, closed over a specified timeout value and error callback.
-function createTimeout(errorCallback, timeout) {
-	var t = setTimeout(function () {
-		clearTimeout(t);
-		t = null;
-		errorCallback({
-			code: PositionError.TIMEOUT,
-			message: "Position retrieval timed out."
+// Returns the subset of the options that shape a native watch: its location request, its
+// format and delivery, and its minDistance, maxAccuracy, minTime and timeout, all applied
+// natively. Only watchers asking for exactly the same options share one native watch.
+function nativeWatchOptions(options) {
+	var native = {
+		timeout: nativeTimeout(options.timeout)
+	};
+	['enableHighAccuracy', 'interval', 'fastestInterval', 'priority', 'smallestDisplacement', 'batchInterval', 'format', 'minDistance', 'maxAccuracy', 'minTime', 'adaptive', 'delivery', 'maxPending', 'queueSize', 'deadReckoning', 'estimateInterval'].forEach(function (key) {
+		if (options[key] !== undefined) {
+			native[key] = options[key];
+		}
+	});
+	return native;
+}
+
+// Timeouts are enforced natively, Infinity is sent as 0 which means no deadline.
+function nativeTimeout(timeout) {
+	return timeout === Infinity ? 0 : timeout;
+}
+
+// Wraps an optional error callback so it receives a PositionError.
+function positionErrorCallback(errorCallback) {
+	return errorCallback && function (e) {
+		errorCallback(new PositionError(e.code, e.message));
+	};
+}
+
+// Native events carry their fix as a native location, exposed as a Position.
+function eventFromNative(e) {
+	if (e.position) {
+		e.position = positionFromNativeLocation(e.position);
+	}
+	return e;
+}
+
+function timeOf(date) {
+	return (date instanceof Date) ? date.getTime() : date;
+}
+
+// Calls fn for every watcher of a group, on a copy so watchers may clear themselves meanwhile.
+function forEachWatcher(group, fn) {
+	Object.keys(group.watchers).forEach(function (id) {
+		var watcher = group.watchers[id];
+		if (watcher) {
+			fn(watcher);
+		}
+	});
+}
+
+// Tells native the results of a group were processed, so it may send the ones it held back.
+// Acknowledgements are coalesced to one bridge call per task.
+function acknowledge(group) {
+	group.unacknowledged++;
+	if (group.unacknowledged === 1) {
+		setTimeout(function () {
+			var count = group.unacknowledged;
+			group.unacknowledged = 0;
+			if (watchGroups[group.key] === group) {
+				exec(null, null, "GPSLocation", "ack", [group.id, count]);
+			}
+		}, 0);
+	}
+}
+
+// Opens the native watch shared by every watcher with the given native options. Each fix is
+// received and decoded once, then handed to all of them.
+function createWatchGroup(key, native, options) {
+	var group = {
+		key: key,
+		id: utils.createUUID(),
+		watchers: {},
+		count: 0,
+		lastPosition: null,
+		initialRequest: null,
+		// Results received since the last acknowledgement, see LocationWatch.offer.
+		unacknowledged: 0,
+		batched: !!native.batchInterval
+	};
+	watchGroups[key] = group;
+
+	var deliver = function (pos) {
+		group.lastPosition = pos;
+		GPSLocation.lastPosition = pos;
+		forEachWatcher(group, function (watcher) {
+			watcher.successCallback(pos);
+		});
+	};
+
+	// The native watch reports a TIMEOUT whenever no fix arrived within options.timeout.
+	var fail = function (e) {
+		var err = new PositionError(e.code, e.message);
+		forEachWatcher(group, function (watcher) {
+			if (watcher.errorCallback) {
+				watcher.errorCallback(err);
+			}
 		});
-	}, timeout);
-	return t;
+	};
+
+	// Tell device to get a position ASAP, once for the whole group.
+	group.initialRequest = GPSLocation.getCurrentPosition(deliver, fail, options);
+
+	// Background buffer flushes are multipart results with a true second part.
+	var win = function (p, flush) {
+		// Batched watches and background buffer flushes carry several fixes in one payload.
+		if (Array.isArray(p) || flush === true || (p instanceof ArrayBuffer && (options.batchInterval || p.byteLength > RECORD_SIZE))) {
+			var positions = Array.isArray(p) ? p.map(positionFromNativeLocation) : positionsFromCompactLocations(p);
+			if (positions.length === 0) {
+				return;
+			}
+			group.lastPosition = positions[positions.length - 1];
+			GPSLocation.lastPosition = group.lastPosition;
+			forEachWatcher(group, function (watcher) {
+				if (watcher.batchCallback) {
+					watcher.batchCallback(positions);
+				} else {
+					positions.forEach(function (pos) {
+						watcher.successCallback(pos);
+					});
+				}
+			});
+			return;
+		}
+		deliver(positionFromNativeLocation(p));
+		if (native.delivery) {
+			acknowledge(group);
+		}
+	};
+
+	exec(win, fail, "GPSLocation", "addWatch", [group.id, native]);
+	return group;
 }
 
 var GPSLocation = {
@@ -94,14 +302,13 @@ var GPSLocation = {
 		argscheck.checkArgs('fFO', 'GPSLocation.getCurrentPosition', arguments);
 		options = parseParameters(options);
 
-		// Timer var that will fire an error callback if no position is retrieved from native
-		// before the "timeout" param provided expires
+		// Pending flag of the native request, cleared once it failed or was cancelled
+		// by clearWatch. The "timeout" param itself is enforced natively.
 		var timeoutTimer = {
 			timer: null
 		};
 
 		var win = function (p) {
-			clearTimeout(timeoutTimer.timer);
 			if (!(timeoutTimer.timer)) {
 				// Timeout already happened, or native fired error callback for
 				// this geo request.
@@ -115,7 +322,6 @@ var GPSLocation = {
 		var fail = function (e) {
 			// If a fail is received enable network locations again
 			exec(function(status){ console.log(status) }, function(){}, "GPSLocation", "listenToNetworkLocations", []);
-			clearTimeout(timeoutTimer.timer);
 			timeoutTimer.timer = null;
 			var err = new PositionError(e.code, e.message);
 			if (errorCallback) {
@@ -125,7 +331,8 @@ var GPSLocation = {
 
 		// Check our cached position, if its timestamp difference with current time is less than the maximumAge, then just
 		// fire the success callback with the cached position.
-		if (GPSLocation.lastPosition && options.maximumAge && (((new Date()).getTime() - GPSLocation.lastPosition.timestamp.getTime()) <= options.maximumAge)) {
+		if (GPSLocation.lastPosition && options.maximumAge && (((new Date()).getTime() - GPSLocation.lastPosition.timestamp.getTime()) <= options.maximumAge)
+				&& (!options.desiredAccuracy || GPSLocation.lastPosition.coords.accuracy <= options.desiredAccuracy)) {
 			successCallback(GPSLocation.lastPosition);
 			// If the cached position check failed and the timeout was set to 0, error out with a TIMEOUT error object.
 		} else if (options.timeout === 0) {
@@ -135,18 +342,10 @@ var GPSLocation = {
 			});
 			// Otherwise we have to call into native to retrieve a position.
 		} else {
-			if (options.timeout !== Infinity) {
-				// If the timeout value was not set to Infinity (default), then
-				// set up a timeout function that will fire the error callback
-				// if no successful position was retrieved before timeout expired.
-				timeoutTimer.timer = createTimeout(fail, options.timeout);
-			} else {
-				// This is here so the check in the win function doesn't mess stuff up
-				// may seem weird but this guarantees timeoutTimer is
-				// always truthy before we call into native
-				timeoutTimer.timer = true;
-			}
-			exec(win, fail, "GPSLocation", "getLocation", [options.maximumAge]);
+			// This guarantees timeoutTimer is always truthy before we call into native,
+			// which answers with a TIMEOUT error once the timeout expires.
+			timeoutTimer.timer = true;
+			exec(win, fail, "GPSLocation", "getLocation", [options.maximumAge, nativeTimeout(options.timeout), options.desiredAccuracy || 0]);
 		}
 		return timeoutTimer;
 	},
@@ -164,29 +363,29 @@ var GPSLocation = {
 		options = parseParameters(options);
 
 		var id = utils.createUUID();
+		var native = nativeWatchOptions(options);
+		var key = JSON.stringify(native);
+		var group = watchGroups[key] || createWatchGroup(key, native, options);
 
-		// Tell device to get a position ASAP, and also retrieve a reference to the timeout timer generated in getCurrentPosition
-		timers[id] = GPSLocation.getCurrentPosition(successCallback, errorCallback, options);
-
-		var fail = function (e) {
-			clearTimeout(timers[id].timer);
-			var err = new PositionError(e.code, e.message);
-			if (errorCallback) {
-				errorCallback(err);
-			}
-		};
-
-		var win = function (p) {
-			clearTimeout(timers[id].timer);
-			if (options.timeout !== Infinity) {
-				timers[id].timer = createTimeout(fail, options.timeout);
-			}
-			var pos = positionFromNativeLocation(p);
-			GPSLocation.lastPosition = pos;
-			successCallback(pos);
+		var watcher = {
+			group: group,
+			successCallback: successCallback,
+			errorCallback: errorCallback,
+			batchCallback: options.batchCallback
 		};
+		group.watchers[id] = watcher;
+		group.count++;
+		timers[id] = watcher;
 
-		exec(win, fail, "GPSLocation", "addWatch", [id]);
+		// A watcher joining a running group starts from its last position instead of asking native again.
+		if (group.lastPosition) {
+			var lastPosition = group.lastPosition;
+			setTimeout(function () {
+				if (timers[id] === watcher) {
+					successCallback(lastPosition);
+				}
+			}, 0);
+		}
 
 		return id;
 	},
@@ -196,10 +395,24 @@ var GPSLocation = {
 	 * @param {String} id       The ID of the watch returned from #watchPosition
 	 */
 	clearWatch: function (id) {
-		if (id && timers[id] !== undefined) {
-			clearTimeout(timers[id].timer);
-			timers[id].timer = false;
-			exec(null, null, "GPSLocation", "clearWatch", [id]);
+		var watcher = id && timers[id];
+		if (!watcher) {
+			return;
+		}
+		delete timers[id];
+		var group = watcher.group;
+		group.count--;
+		// The native watch is released with its last watcher. A batched one sends its
+		// pending fixes on clearWatch, so that watcher stays in the group to receive them.
+		if (group.count === 0) {
+			delete watchGroups[group.key];
+			group.initialRequest.timer = false;
+			if (!group.batched) {
+				delete group.watchers[id];
+			}
+			exec(null, null, "GPSLocation", "clearWatch", [group.id]);
+		} else {
+			delete group.watchers[id];
 		}
 	},
 	/**
@@ -218,6 +431,211 @@ var GPSLocation = {
 			cordova.fireDocumentEvent("gpsoff");
 		}
 		exec(successCallback, errorCallback, "GPSLocation", "addGPSWatch", []);
+	},
+	/**
+	 * Configures the native processing stages every watched fix goes through, in order.
+	 * An empty array disables processing.
+	 *
+	 * @param {Array} stages                The stage options, e.g. [{ type: 'outlier', maxSpeed: 50 }, { type: 'kalman' }]
+	 * @param {Function} successCallback    The function to call once the stages are in place. (OPTIONAL)
+	 * @param {Function} errorCallback      The function to call when a stage is invalid. (OPTIONAL)
+	 */
+	setPipeline: function (stages, successCallback, errorCallback) {
+		argscheck.checkArgs('aFF', 'GPSLocation.setPipeline', arguments);
+		exec(successCallback, positionErrorCallback(errorCallback), "GPSLocation", "setPipeline", [stages]);
+	},
+	/**
+	 * Starts recording every processed fix into the native track store, which
+	 * survives WebView reloads.
+	 *
+	 * @param {Object} options              segmentRecords and maxSegments bounding the store. (OPTIONAL)
+	 * @param {Function} successCallback    The function to call once recording started. (OPTIONAL)
+	 * @param {Function} errorCallback      The function to call when the store cannot be opened. (OPTIONAL)
+	 */
+	startTrack: function (options, successCallback, errorCallback) {
+		argscheck.checkArgs('OFF', 'GPSLocation.startTrack', arguments);
+		exec(successCallback, positionErrorCallback(errorCallback), "GPSLocation", "startTrack", [options || {}]);
+	},
+	/**
+	 * Stops recording fixes. The recorded track stays readable.
+	 */
+	stopTrack: function (successCallback, errorCallback) {
+		argscheck.checkArgs('FF', 'GPSLocation.stopTrack', arguments);
+		exec(successCallback, positionErrorCallback(errorCallback), "GPSLocation", "stopTrack", []);
+	},
+	/**
+	 * Reads the recorded positions between two times in one bulk read.
+	 *
+	 * @param {Date|Number} from            Start of the range, inclusive.
+	 * @param {Date|Number} to              End of the range, inclusive.
+	 * @param {Function} successCallback    The function to call with the array of Position objects
+	 * @param {Function} errorCallback      The function to call when the track cannot be read. (OPTIONAL)
+	 */
+	getTrack: function (from, to, successCallback, errorCallback) {
+		argscheck.checkArgs('**fF', 'GPSLocation.getTrack', arguments);
+		var win = function (buffer) {
+			successCallback(positionsFromCompactLocations(buffer));
+		};
+		exec(win, positionErrorCallback(errorCallback), "GPSLocation", "getTrack", [timeOf(from), timeOf(to)]);
+	},
+	/**
+	 * Writes the recorded positions between two times to a file, streamed natively in chunks.
+	 * Only the path of the file crosses the bridge.
+	 *
+	 * @param {Date|Number} from            Start of the range, inclusive.
+	 * @param {Date|Number} to              End of the range, inclusive.
+	 * @param {Object} options              format ('gpx', 'geojson' or 'delta') and fileName. (OPTIONAL)
+	 * @param {Function} successCallback    The function to call with the absolute path of the file.
+	 * @param {Function} errorCallback      The function to call when the track cannot be exported. (OPTIONAL)
+	 */
+	exportTrack: function (from, to, options, successCallback, errorCallback) {
+		argscheck.checkArgs('**OfF', 'GPSLocation.exportTrack', arguments);
+		exec(successCallback, positionErrorCallback(errorCallback), "GPSLocation", "exportTrack", [timeOf(from), timeOf(to), options || {}]);
+	},
+	/**
+	 * Enables or disables background tracking. While enabled, the location subscription survives
+	 * the app going to the background and WebView reloads, and fixes are buffered natively until a
+	 * watch can receive them again, then flushed as one batch.
+	 *
+	 * @param {Boolean} enabled             Whether background tracking is on.
+	 * @param {Object} options              Watch options of the background subscription, plus bufferSize,
+	 *                                      notificationTitle and notificationText. (OPTIONAL)
+	 * @param {Function} successCallback    The function to call once the mode is applied. (OPTIONAL)
+	 * @param {Function} errorCallback      The function to call on error. (OPTIONAL)
+	 */
+	setBackgroundMode: function (enabled, options, successCallback, errorCallback) {
+		argscheck.checkArgs('*OFF', 'GPSLocation.setBackgroundMode', arguments);
+		exec(successCallback, positionErrorCallback(errorCallback), "GPSLocation", "setBackgroundMode", [!!enabled, options || {}]);
+	},
+	/**
+	 * Reads the native runtime counters: fixes received per provider, filtered and delivered fixes,
+	 * serialization and sendPluginResult times, fix age at delivery, time to first fix, connection
+	 * suspensions and per-watch rates.
+	 *
+	 * @param {Function} successCallback    The function to call with the stats object.
+	 * @param {Function} errorCallback      The function to call on error. (OPTIONAL)
+	 * @param {Boolean} reset               Whether to reset the counters once read. (OPTIONAL)
+	 */
+	getStats: function (successCallback, errorCallback, reset) {
+		argscheck.checkArgs('fF*', 'GPSLocation.getStats', arguments);
+		exec(successCallback, positionErrorCallback(errorCallback), "GPSLocation", "getStats", [!!reset]);
+	},
+	/**
+	 * Replays a recorded trace in place of the device location, through the whole native pipeline.
+	 *
+	 * @param {String} trace                GPX, NMEA or CSV text.
+	 * @param {Object} options              format ('gpx', 'nmea' or 'csv', guessed by default), speed
+	 *                                      (replay speed factor, 0 for as fast as possible) and loop. (OPTIONAL)
+	 * @param {Function} successCallback    The function to call with the number of fixes in the trace. (OPTIONAL)
+	 * @param {Function} errorCallback      The function to call if the trace cannot be parsed. (OPTIONAL)
+	 */
+	startReplay: function (trace, options, successCallback, errorCallback) {
+		argscheck.checkArgs('sOFF', 'GPSLocation.startReplay', arguments);
+		exec(successCallback, positionErrorCallback(errorCallback), "GPSLocation", "startReplay", [trace, options || {}]);
+	},
+	/**
+	 * Stops a replay and goes back to the device location.
+	 *
+	 * @param {Function} successCallback    The function to call once stopped. (OPTIONAL)
+	 * @param {Function} errorCallback      The function to call on error. (OPTIONAL)
+	 */
+	stopReplay: function (successCallback, errorCallback) {
+		argscheck.checkArgs('FF', 'GPSLocation.stopReplay', arguments);
+		exec(successCallback, positionErrorCallback(errorCallback), "GPSLocation", "stopReplay", []);
+	},
+	/**
+	 * Adds geofences tested natively against every fix. Only transitions are reported, as
+	 * { id, transition: 'enter' | 'exit' | 'dwell', position }.
+	 *
+	 * @param {Array} fences                Circles { id, latitude, longitude, radius } or polygons
+	 *                                      { id, polygon: [[latitude, longitude], ...] }, with an optional dwellTime.
+	 * @param {Function} transitionCallback The function to call on each transition.
+	 * @param {Function} errorCallback      The function to call if a fence is invalid. (OPTIONAL)
+	 * @param {Object} options              Location request options used while fences are registered. (OPTIONAL)
+	 */
+	addGeofences: function (fences, transitionCallback, errorCallback, options) {
+		argscheck.checkArgs('afFO', 'GPSLocation.addGeofences', arguments);
+		var win = function (e) {
+			transitionCallback(eventFromNative(e));
+		};
+		exec(win, positionErrorCallback(errorCallback), "GPSLocation", "addGeofences", [fences, nativeWatchOptions(parseParameters(options))]);
+	},
+	/**
+	 * Removes geofences, all of them when ids is null. Removed fences report no exit.
+	 *
+	 * @param {Array} ids                   Identifiers of the fences to remove. (OPTIONAL)
+	 * @param {Function} successCallback    The function to call once removed. (OPTIONAL)
+	 * @param {Function} errorCallback      The function to call on error. (OPTIONAL)
+	 */
+	removeGeofences: function (ids, successCallback, errorCallback) {
+		argscheck.checkArgs('AFF', 'GPSLocation.removeGeofences', arguments);
+		exec(successCallback, positionErrorCallback(errorCallback), "GPSLocation", "removeGeofences", [ids || null]);
+	},
+	/**
+	 * Follows a route natively. Only route events are reported, as { type: 'offRoute' | 'onRoute' |
+	 * 'milestone', along, across, remaining, milestone, position }, distances in meters.
+	 *
+	 * @param {Array} points                The route as [[latitude, longitude], ...].
+	 * @param {Function} eventCallback      The function to call on each route event.
+	 * @param {Function} errorCallback      The function to call if the route is invalid. (OPTIONAL)
+	 * @param {Object} options              offRouteDistance, onRouteDistance and milestoneInterval, plus
+	 *                                      location request options used while following the route. (OPTIONAL)
+	 */
+	setRoute: function (points, eventCallback, errorCallback, options) {
+		argscheck.checkArgs('afFO', 'GPSLocation.setRoute', arguments);
+		var win = function (e) {
+			eventCallback(eventFromNative(e));
+		};
+		var native = nativeWatchOptions(parseParameters(options));
+		['offRouteDistance', 'onRouteDistance', 'milestoneInterval'].forEach(function (key) {
+			if (options && options[key] !== undefined) {
+				native[key] = options[key];
+			}
+		});
+		exec(win, positionErrorCallback(errorCallback), "GPSLocation", "setRoute", [points, native]);
+	},
+	/**
+	 * Stops following the route.
+	 *
+	 * @param {Function} successCallback    The function to call once cleared. (OPTIONAL)
+	 * @param {Function} errorCallback      The function to call on error. (OPTIONAL)
+	 */
+	clearRoute: function (successCallback, errorCallback) {
+		argscheck.checkArgs('FF', 'GPSLocation.clearRoute', arguments);
+		exec(successCallback, positionErrorCallback(errorCallback), "GPSLocation", "clearRoute", []);
+	},
+	/**
+	 * Segments the location stream into trips and stops natively. Only segment events are reported:
+	 * { type: 'stopStart', stopTime, trip: { start, end, duration, distance }, position } when a stop
+	 * starts, and { type: 'stopEnd', stopTime, duration, position } when it ends.
+	 *
+	 * @param {Function} eventCallback      The function to call on each segment event.
+	 * @param {Function} errorCallback      The function to call on error. (OPTIONAL)
+	 * @param {Object} options              stopRadius, stopTime and maxAccuracy, plus location request
+	 *                                      options used meanwhile. (OPTIONAL)
+	 */
+	startTrips: function (eventCallback, errorCallback, options) {
+		argscheck.checkArgs('fFO', 'GPSLocation.startTrips', arguments);
+		var win = function (e) {
+			eventCallback(eventFromNative(e));
+		};
+		var native = nativeWatchOptions(parseParameters(options));
+		['stopRadius', 'stopTime', 'maxAccuracy'].forEach(function (key) {
+			if (options && options[key] !== undefined) {
+				native[key] = options[key];
+			}
+		});
+		exec(win, positionErrorCallback(errorCallback), "GPSLocation", "startTrips", [native]);
+	},
+	/**
+	 * Stops the trip segmentation.
+	 *
+	 * @param {Function} successCallback    The function to call once stopped. (OPTIONAL)
+	 * @param {Function} errorCallback      The function to call on error. (OPTIONAL)
+	 */
+	stopTrips: function (successCallback, errorCallback) {
+		argscheck.checkArgs('FF', 'GPSLocation.stopTrips', arguments);
+		exec(successCallback, positionErrorCallback(errorCallback), "GPSLocation", "stopTrips", []);
 	}
 };
 